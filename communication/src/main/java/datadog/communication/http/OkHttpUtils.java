@@ -20,6 +20,8 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -102,6 +104,40 @@ public final class OkHttpUtils {
     return new ByteBufferRequestBody(buffers);
   }
 
+  /**
+   * Compresses the body with gzip as it is written, so the compressed body is never held in
+   * memory. The length of the compressed body is unknown, so it is sent in chunks.
+   */
+  public static RequestBody gzippedRequestBodyOf(RequestBody body) {
+    return new GzipRequestBody(body);
+  }
+
+  private static final class GzipRequestBody extends RequestBody {
+
+    private final RequestBody body;
+
+    private GzipRequestBody(RequestBody body) {
+      this.body = body;
+    }
+
+    @Override
+    public long contentLength() {
+      return -1;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return body.contentType();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+      body.writeTo(gzipSink);
+      gzipSink.close();
+    }
+  }
+
   private static final class ByteBufferRequestBody extends RequestBody {
 
     private static final MediaType MSGPACK = MediaType.get("application/msgpack");
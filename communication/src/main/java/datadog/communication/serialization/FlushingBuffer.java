@@ -20,6 +20,11 @@ public final class FlushingBuffer implements StreamingBuffer {
     return buffer.capacity();
   }
 
+  /** @return the number of bytes taken by complete messages */
+  public int size() {
+    return mark;
+  }
+
   @Override
   public boolean isDirty() {
     return mark > 0;
@@ -114,6 +114,9 @@ public class ExcludeFilter {
     SKIP_TYPE_PREFIXES
         .get(ExcludeType.FORK_JOIN_TASK)
         .add("java.util.concurrent.ConcurrentHashMap");
+    // Virtual threads resubmit their internal continuation each time they are unparked; context
+    // is propagated once per virtual thread instead of on every mount
+    SKIP_TYPE_PREFIXES.get(ExcludeType.RUNNABLE).add("java.lang.VirtualThread");
     // Exclude Runnables in the Google code ConcurrentLinkedHashMap
     SKIP_TYPE_PREFIXES
         .get(ExcludeType.RUNNABLE)
@@ -46,6 +46,18 @@ class ExcludeFilterTest extends DDSpecification {
     type << ExcludeFilter.ExcludeType.values()
   }
 
+  def "test virtual thread continuations are excluded from runnable wrapping"() {
+    expect:
+    ExcludeFilter.exclude(RUNNABLE, name)
+
+    where:
+    name << [
+      'java.lang.VirtualThread',
+      'java.lang.VirtualThread$VThreadContinuation$1',
+      'java.lang.VirtualThread$$Lambda$14/0x0000000801001a00'
+    ]
+  }
+
   static class One {}
 
   static class Another {}
@@ -89,6 +89,7 @@ public final class DDRediscoveryStrategy implements RedefinitionStrategy.Discove
   static boolean shouldRetransformBootstrapClass(final String name) {
     switch (name) {
       case "java.lang.Throwable":
+      case "java.lang.VirtualThread":
       case "java.net.HttpURLConnection":
       case "java.net.URL":
       case "sun.net.www.http.HttpClient":
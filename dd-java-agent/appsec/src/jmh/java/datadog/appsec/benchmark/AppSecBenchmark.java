@@ -16,6 +16,8 @@ import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.HttpUrl;
@@ -50,6 +52,7 @@ public class AppSecBenchmark {
   private URIDataAdapter uri;
   private String ip = "0.0.0.0";
   private int port = 5555;
+  private Object orderBody = new Order(20);
 
   @Setup(Level.Trial)
   public void setUp() throws URISyntaxException {
@@ -109,6 +112,48 @@ public class AppSecBenchmark {
     normalRequest();
   }
 
+  private void requestWithBody(Object body) {
+    RequestContext<Object> context =
+        new Context(gw.getCallback(EVENTS.requestStarted()).get().getResult());
+    gw.getCallback(EVENTS.requestMethodUriRaw()).apply(context, "POST", uri);
+    gw.getCallback(EVENTS.requestClientSocketAddress()).apply(context, ip, port);
+    gw.getCallback(EVENTS.requestHeader()).accept(context, "User-Agent", "Mozilla/5.0");
+    gw.getCallback(EVENTS.requestHeaderDone()).apply(context);
+    gw.getCallback(EVENTS.requestBodyProcessed()).apply(context, body);
+    gw.getCallback(EVENTS.requestEnded()).apply(context, null);
+  }
+
+  @Benchmark
+  public void requestWithObjectBody() {
+    requestWithBody(orderBody);
+  }
+
+  @SuppressWarnings("unused")
+  static class Item {
+    private final String sku;
+    private final int quantity;
+    private final double price;
+
+    Item(String sku, int quantity, double price) {
+      this.sku = sku;
+      this.quantity = quantity;
+      this.price = price;
+    }
+  }
+
+  @SuppressWarnings("unused")
+  static class Order {
+    private final String customer = "jane.doe@example.com";
+    private final String comment = "please leave at the door";
+    private final List<Item> items = new ArrayList<>();
+
+    Order(int numItems) {
+      for (int i = 0; i < numItems; i++) {
+        items.add(new Item("sku-" + i, i + 1, 9.99 * i));
+      }
+    }
+  }
+
   static class StubOkHttpClient extends OkHttpClient {
     @Override
     public Call newCall(final Request request) {
@@ -8,10 +8,16 @@ import com.datadog.appsec.event.DataListener;
 import com.datadog.appsec.event.EventDispatcher;
 import com.datadog.appsec.event.OrderedCallback;
 import com.datadog.appsec.event.data.Address;
+import com.datadog.appsec.event.data.CaseInsensitiveMap;
 import com.datadog.appsec.event.data.DataBundle;
 import com.datadog.appsec.event.data.KnownAddresses;
+import com.datadog.appsec.event.data.MapDataBundle;
+import com.datadog.appsec.event.data.StringKVPair;
 import com.datadog.appsec.gateway.AppSecRequestContext;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -102,4 +108,113 @@ public class EventDispatcherBenchmark {
   public void getDataSubscribers(DispatcherState state) {
     state.run();
   }
+
+  /**
+   * Publishes data the way GatewayBridge does over a request, with listeners subscribed to all
+   * known addresses.
+   */
+  @State(Scope.Benchmark)
+  public static class LifecycleState {
+    @Param({"5", "50"})
+    int numSubscribers;
+
+    static final Address<?>[] REQUEST_ADDRESSES = {
+      KnownAddresses.HEADERS_NO_COOKIES,
+      KnownAddresses.REQUEST_COOKIES,
+      KnownAddresses.REQUEST_SCHEME,
+      KnownAddresses.REQUEST_METHOD,
+      KnownAddresses.REQUEST_URI_RAW,
+      KnownAddresses.REQUEST_QUERY,
+      KnownAddresses.REQUEST_CLIENT_IP,
+      KnownAddresses.REQUEST_CLIENT_PORT
+    };
+
+    static final Address<?>[] RESPONSE_ADDRESSES = {
+      KnownAddresses.RESPONSE_STATUS, KnownAddresses.RESPONSE_HEADERS_NO_COOKIES
+    };
+
+    EventDispatcher dispatcher = new EventDispatcher();
+    DataBundle requestData =
+        new MapDataBundle.Builder(MapDataBundle.Builder.CAPACITY_6_10)
+            .add(KnownAddresses.HEADERS_NO_COOKIES, new CaseInsensitiveMap<List<String>>())
+            .add(KnownAddresses.REQUEST_COOKIES, Collections.<StringKVPair>emptyList())
+            .add(KnownAddresses.REQUEST_SCHEME, "http")
+            .add(KnownAddresses.REQUEST_METHOD, "POST")
+            .add(KnownAddresses.REQUEST_URI_RAW, "/test?a=b")
+            .add(KnownAddresses.REQUEST_QUERY, Collections.<String, List<String>>emptyMap())
+            .add(KnownAddresses.REQUEST_CLIENT_IP, "0.0.0.0")
+            .add(KnownAddresses.REQUEST_CLIENT_PORT, 5555)
+            .build();
+    DataBundle pathParams =
+        MapDataBundle.of(
+            KnownAddresses.REQUEST_PATH_PARAMS, Collections.<String, Object>singletonMap("a", "b"));
+    DataBundle rawBody = MapDataBundle.of(KnownAddresses.REQUEST_BODY_RAW, "{\"a\":\"b\"}");
+    DataBundle body =
+        MapDataBundle.of(
+            KnownAddresses.REQUEST_BODY_OBJECT, Collections.<String, Object>singletonMap("a", "b"));
+    DataBundle responseData =
+        MapDataBundle.of(
+            KnownAddresses.RESPONSE_STATUS,
+            "200",
+            KnownAddresses.RESPONSE_HEADERS_NO_COOKIES,
+            Collections.<String, List<String>>emptyMap());
+
+    @Setup
+    public void create() throws IllegalAccessException {
+      List<Address<?>> allAddresses = new ArrayList<>();
+      for (Field field : KnownAddresses.class.getFields()) {
+        if (field.getType() == Address.class) {
+          allAddresses.add((Address<?>) field.get(null));
+        }
+      }
+
+      EventDispatcher.DataSubscriptionSet subsSet = new EventDispatcher.DataSubscriptionSet();
+      for (int i = 0; i < numSubscribers; i++) {
+        final OrderedCallback.Priority priority =
+            DispatcherState.PRIORITY_VALUES[i % DispatcherState.PRIORITY_VALUES.length];
+        // every listener is interested in a different half of the addresses
+        List<Address<?>> addresses = new ArrayList<>();
+        for (int j = 0; j < allAddresses.size(); j++) {
+          if (((i + j) & 1) == 0) {
+            addresses.add(allAddresses.get(j));
+          }
+        }
+        subsSet.addSubscription(
+            addresses,
+            new DataListener() {
+              @Override
+              public void onDataAvailable(
+                  ChangeableFlow flow, AppSecRequestContext context, DataBundle dataBundle) {}
+
+              @Override
+              public Priority getPriority() {
+                return priority;
+              }
+            });
+      }
+      dispatcher.subscribeDataAvailable(subsSet);
+    }
+
+    void run() {
+      AppSecRequestContext ctx = new AppSecRequestContext();
+      dispatcher.publishDataEvent(
+          dispatcher.getDataSubscribers(REQUEST_ADDRESSES), ctx, requestData, false);
+      dispatcher.publishDataEvent(
+          dispatcher.getDataSubscribers(KnownAddresses.REQUEST_PATH_PARAMS),
+          ctx,
+          pathParams,
+          false);
+      dispatcher.publishDataEvent(
+          dispatcher.getDataSubscribers(KnownAddresses.REQUEST_BODY_RAW), ctx, rawBody, false);
+      dispatcher.publishDataEvent(
+          dispatcher.getDataSubscribers(KnownAddresses.REQUEST_BODY_OBJECT), ctx, body, false);
+      dispatcher.publishDataEvent(
+          dispatcher.getDataSubscribers(RESPONSE_ADDRESSES), ctx, responseData, false);
+    }
+  }
+
+  @Benchmark
+  public void requestLifecycle(LifecycleState state) {
+    state.run();
+  }
 }
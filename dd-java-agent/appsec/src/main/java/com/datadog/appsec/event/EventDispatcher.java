@@ -8,11 +8,11 @@ import com.datadog.appsec.event.data.KnownAddresses;
 import com.datadog.appsec.gateway.AppSecRequestContext;
 import datadog.trace.api.gateway.Flow;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,18 +21,36 @@ import org.slf4j.LoggerFactory;
 
 public class EventDispatcher implements EventProducerService {
   private static final Logger log = LoggerFactory.getLogger(EventDispatcher.class);
-  private static final char[] EMPTY_CHAR_ARRAY = new char[0];
+  private static final DataListener[] EMPTY_LISTENERS = new DataListener[0];
+  private static final long[] EMPTY_MASK = new long[0];
+  private static final DataSubscriberInfoImpl NO_SUBSCRIBERS =
+      new DataSubscriberInfoImpl(EMPTY_LISTENERS);
 
   private List<List<EventListener>> eventListeners; // index: eventType.serial
 
-  // indexes are the ids we successively attribute to listeners
-  // we support up to 2^16 listeners in total
-  // The listeners are ordered by priority (from highest to lowest)
-  private List<DataListener> dataListenersIdx;
-  // index: address.serial; values: ordered array of listener idx
-  private List<char[]> dataListenerSubs;
+  // replaced as a whole on each subscription, so publishing sees a consistent view
+  private volatile DataRouting dataRouting;
   private Set<Address<?>> allSubscribedAddresses;
 
+  /**
+   * Data listeners indexed by address. Listener indexes follow priority (from highest to lowest),
+   * so the listeners of any set of addresses can be resolved by or'ing per-address bitmasks of
+   * listener indexes and reading the set bits in order.
+   */
+  private static final class DataRouting {
+    final DataListener[] listeners;
+    // index: address.serial
+    final long[][] masks;
+    // index: address.serial; precomputed answer for a single address
+    final DataSubscriberInfoImpl[] subscribers;
+
+    DataRouting(DataListener[] listeners, long[][] masks, DataSubscriberInfoImpl[] subscribers) {
+      this.listeners = listeners;
+      this.masks = masks;
+      this.subscribers = subscribers;
+    }
+  }
+
   public EventDispatcher() {
     KnownAddresses.HEADERS_NO_COOKIES.getKey(); // force class initialization
 
@@ -43,10 +61,11 @@ public class EventDispatcher implements EventProducerService {
     }
 
     final int addressCount = Address.instanceCount();
-    dataListenerSubs = new ArrayList<>(addressCount);
-    for (int i = 0; i < addressCount; i++) {
-      dataListenerSubs.add(EMPTY_CHAR_ARRAY);
-    }
+    long[][] masks = new long[addressCount][];
+    DataSubscriberInfoImpl[] subscribers = new DataSubscriberInfoImpl[addressCount];
+    Arrays.fill(masks, EMPTY_MASK);
+    Arrays.fill(subscribers, NO_SUBSCRIBERS);
+    dataRouting = new DataRouting(EMPTY_LISTENERS, masks, subscribers);
   }
 
   public static class EventSubscriptionSet {
@@ -75,7 +94,7 @@ public class EventDispatcher implements EventProducerService {
   }
 
   public static class DataSubscriptionSet {
-    private final Map<DataListener, Integer> indexes = new HashMap<>();
+    private final Map<DataListener, Integer> indexes = new LinkedHashMap<>();
     // index: addr.serial
     private final List<List<DataListener>> addrSubs;
     private final Set<Address<?>> allAddresses = new HashSet<>();
@@ -112,25 +131,28 @@ public class EventDispatcher implements EventProducerService {
       subSet.indexes.put(listener, i); // update index on subSet argument directly
     }
 
+    DataListener[] listeners = newDataListenersIdx.toArray(EMPTY_LISTENERS);
     int addressCount = Address.instanceCount();
-    ArrayList<char[]> newDataListenerSubs = new ArrayList<>(addressCount);
+    long[][] masks = new long[addressCount][];
+    DataSubscriberInfoImpl[] subscribers = new DataSubscriberInfoImpl[addressCount];
 
     for (int addrSerial = 0; addrSerial < addressCount; addrSerial++) {
       List<DataListener> listenersList = subSet.addrSubs.get(addrSerial);
-      listenersList.sort(OrderedCallback.CallbackPriorityComparator.INSTANCE);
-
-      // convert list of listeners to char array of their indexes + priority
-      char[] newArray = new char[listenersList.size()];
-      for (int i = 0; i < newArray.length; i++) {
-        DataListener listener = listenersList.get(i);
-        newArray[i] = (char) subSet.indexes.get(listener).intValue();
+      if (listenersList.isEmpty()) {
+        masks[addrSerial] = EMPTY_MASK;
+        subscribers[addrSerial] = NO_SUBSCRIBERS;
+        continue;
       }
-
-      newDataListenerSubs.add(newArray);
+      long[] mask = new long[wordsFor(numListeners)];
+      for (DataListener listener : listenersList) {
+        int idx = subSet.indexes.get(listener);
+        mask[idx >> 6] |= 1L << idx;
+      }
+      masks[addrSerial] = mask;
+      subscribers[addrSerial] = new DataSubscriberInfoImpl(resolve(listeners, mask));
     }
 
-    dataListenersIdx = newDataListenersIdx;
-    dataListenerSubs = newDataListenerSubs;
+    dataRouting = new DataRouting(listeners, masks, subscribers);
     allSubscribedAddresses = subSet.allAddresses;
   }
 
@@ -148,31 +170,50 @@ public class EventDispatcher implements EventProducerService {
 
   @Override
   public DataSubscriberInfo getDataSubscribers(Address<?>... newAddresses) {
+    DataRouting routing = this.dataRouting;
     if (newAddresses.length == 1) {
       // fast path
-      Address<?> addr = newAddresses[0];
-      char[] ids = dataListenerSubs.get(addr.getSerial());
-      return new DataSubscriberInfoImpl(ids);
-    } else {
-      // calculate union of listeners
-      int numDataListeners = dataListenersIdx.size();
-      BitSet bitSet = new BitSet(numDataListeners);
-      for (Address<?> addr : newAddresses) {
-        char[] subs = dataListenerSubs.get(addr.getSerial());
-        for (int sub : subs) {
-          bitSet.set(sub);
+      return routing.subscribers[newAddresses[0].getSerial()];
+    }
+    // calculate union of listeners
+    long[] union = null;
+    for (Address<?> addr : newAddresses) {
+      long[] mask = routing.masks[addr.getSerial()];
+      if (mask.length == 0) {
+        continue;
+      }
+      if (union == null) {
+        union = mask.clone();
+      } else {
+        for (int i = 0; i < mask.length; i++) {
+          union[i] |= mask[i];
         }
       }
-      char[] subsIds = new char[bitSet.cardinality()];
+    }
+    if (union == null) {
+      return NO_SUBSCRIBERS;
+    }
+    return new DataSubscriberInfoImpl(resolve(routing.listeners, union));
+  }
 
-      // Copy bits into the array
-      for (int bit = bitSet.nextSetBit(0), i = 0; bit >= 0; bit = bitSet.nextSetBit(bit + 1)) {
-        // operate on index i here
-        subsIds[i++] = (char) bit;
-      }
+  private static int wordsFor(int numListeners) {
+    return (numListeners + 63) >>> 6;
+  }
 
-      return new DataSubscriberInfoImpl(subsIds);
+  /** @return the listeners whose indexes are set in the mask, in priority order */
+  private static DataListener[] resolve(DataListener[] listeners, long[] mask) {
+    int count = 0;
+    for (long word : mask) {
+      count += Long.bitCount(word);
+    }
+    DataListener[] resolved = new DataListener[count];
+    int i = 0;
+    for (int w = 0; w < mask.length; w++) {
+      for (long word = mask[w]; word != 0; word &= word - 1) {
+        resolved[i++] = listeners[(w << 6) + Long.numberOfTrailingZeros(word)];
+      }
     }
+    return resolved;
   }
 
   @Override
@@ -185,9 +226,9 @@ public class EventDispatcher implements EventProducerService {
       ctx.addAll(newData);
     }
     ChangeableFlow flow = new ChangeableFlow();
-    for (int idx : ((DataSubscriberInfoImpl) subscribers).listenerIndices) {
+    for (DataListener listener : ((DataSubscriberInfoImpl) subscribers).listeners) {
       try {
-        dataListenersIdx.get(idx).onDataAvailable(flow, ctx, newData);
+        listener.onDataAvailable(flow, ctx, newData);
       } catch (RuntimeException rte) {
         log.warn("AppSec callback exception", rte);
       }
@@ -217,15 +258,15 @@ public class EventDispatcher implements EventProducerService {
   }
 
   private static class DataSubscriberInfoImpl implements DataSubscriberInfo {
-    final char[] listenerIndices;
+    final DataListener[] listeners;
 
-    private DataSubscriberInfoImpl(char[] listenerIndices) {
-      this.listenerIndices = listenerIndices;
+    private DataSubscriberInfoImpl(DataListener[] listeners) {
+      this.listeners = listeners;
     }
 
     @Override
     public boolean isEmpty() {
-      return listenerIndices.length == 0;
+      return listeners.length == 0;
     }
   }
 }
@@ -1,5 +1,9 @@
 package com.datadog.appsec.event.data;
 
+import datadog.trace.api.GenericClassValue;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -95,39 +99,91 @@ public final class ObjectIntrospection {
     }
 
     // else general objects
-    Map<String, Object> newMap = new HashMap<>();
-    List<Field[]> allFields = new ArrayList<>();
-    for (Class<?> classToLook = clazz;
-        classToLook != null && classToLook != Object.class;
-        classToLook = classToLook.getSuperclass()) {
-      allFields.add(classToLook.getDeclaredFields());
+    return FIELD_CONVERTERS.get(clazz).convert(obj, depth, elemsLeft);
+  }
+
+  private static final ClassValue<FieldsConverter> FIELD_CONVERTERS =
+      GenericClassValue.of(FieldsConverter::forClass);
+
+  /**
+   * Converts objects of one class into maps of their instance fields. The fields to visit and
+   * their getters are looked up once per class, so converting further instances of the same type
+   * needs no reflection.
+   */
+  static final class FieldsConverter {
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType(Object.class, Object.class);
+
+    private final String[] names;
+    private final MethodHandle[] getters;
+    // set when a getter could not be looked up; conversion reports it like a failed field read
+    private final RuntimeException error;
+
+    private FieldsConverter(String[] names, MethodHandle[] getters, RuntimeException error) {
+      this.names = names;
+      this.getters = getters;
+      this.error = error;
     }
 
-    outer:
-    for (Field[] fields : allFields) {
-      for (Field f : fields) {
-        if (elemsLeft[0] <= 0) {
-          break outer;
-        }
-        if (Modifier.isStatic(f.getModifiers())) {
-          continue;
-        }
-        if (f.getType().getName().equals("groovy.lang.MetaClass")) {
-          continue;
-        }
-        String name = f.getName();
-        if (name.equals("this$0")) {
-          continue;
+    static FieldsConverter forClass(Class<?> clazz) {
+      List<String> names = new ArrayList<>();
+      List<MethodHandle> getters = new ArrayList<>();
+      RuntimeException error = null;
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      outer:
+      for (Class<?> classToLook = clazz;
+          classToLook != null && classToLook != Object.class;
+          classToLook = classToLook.getSuperclass()) {
+        for (Field f : classToLook.getDeclaredFields()) {
+          if (Modifier.isStatic(f.getModifiers())) {
+            continue;
+          }
+          if (f.getType().getName().equals("groovy.lang.MetaClass")) {
+            continue;
+          }
+          String name = f.getName();
+          if (name.equals("this$0")) {
+            continue;
+          }
+          try {
+            f.setAccessible(true);
+            getters.add(lookup.unreflectGetter(f).asType(GETTER_TYPE));
+            names.add(name);
+          } catch (IllegalAccessException e) {
+            error = new UndeclaredThrowableException(e);
+            break outer;
+          } catch (RuntimeException e) {
+            error = e;
+            break outer;
+          }
         }
-        f.setAccessible(true);
-        try {
-          newMap.put(f.getName(), guardedConversion(f.get(obj), depth + 1, elemsLeft));
-        } catch (IllegalAccessException e) {
-          throw new UndeclaredThrowableException(e);
+      }
+      return new FieldsConverter(
+          names.toArray(new String[0]), getters.toArray(new MethodHandle[0]), error);
+    }
+
+    Object convert(Object obj, int depth, int[] elemsLeft) {
+      Map<String, Object> newMap = new HashMap<>((int) Math.ceil(getters.length / .75));
+      for (int i = 0; i < getters.length; i++) {
+        if (elemsLeft[0] <= 0) {
+          return newMap;
         }
+        newMap.put(names[i], guardedConversion(get(getters[i], obj), depth + 1, elemsLeft));
+      }
+      if (null != error && elemsLeft[0] > 0) {
+        throw error;
       }
+      return newMap;
     }
 
-    return newMap;
+    private static Object get(MethodHandle getter, Object obj) {
+      try {
+        return (Object) getter.invokeExact(obj);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new UndeclaredThrowableException(t);
+      }
+    }
   }
 }
@@ -45,7 +45,8 @@ public class AppSecRequestContext implements DataBundle, Closeable {
               "accept-language"));
 
   private final ConcurrentHashMap<Address<?>, Object> persistentData = new ConcurrentHashMap<>();
-  private Collection<AppSecEvent100> collectedEvents; // guarded by this
+  // events as reported, so that events built lazily are not built on the request thread
+  private List<Collection<AppSecEvent100>> collectedEvents; // guarded by this
 
   // assume these will always be written and read by the same thread
   private String scheme;
@@ -325,15 +326,17 @@ public class AppSecRequestContext implements DataBundle, Closeable {
   }
 
   public void reportEvents(Collection<AppSecEvent100> events, TraceSegment traceSegment) {
-    for (AppSecEvent100 event : events) {
-      StandardizedLogging.attackDetected(log, event);
+    if (log.isDebugEnabled()) {
+      for (AppSecEvent100 event : events) {
+        StandardizedLogging.attackDetected(log, event);
+      }
     }
     synchronized (this) {
       if (this.collectedEvents == null) {
-        this.collectedEvents = new ArrayList<>();
+        this.collectedEvents = new ArrayList<>(2);
       }
       try {
-        this.collectedEvents.addAll(events);
+        this.collectedEvents.add(events);
       } catch (UnsupportedOperationException e) {
         throw new IllegalStateException("Events cannot be added anymore");
       }
@@ -341,15 +344,72 @@ public class AppSecRequestContext implements DataBundle, Closeable {
   }
 
   Collection<AppSecEvent100> transferCollectedEvents() {
-    Collection<AppSecEvent100> events;
+    List<Collection<AppSecEvent100>> collectedEvents;
     synchronized (this) {
-      events = this.collectedEvents;
+      collectedEvents = this.collectedEvents;
       this.collectedEvents = Collections.emptyList();
     }
-    if (events != null) {
-      return events;
-    } else {
+    if (collectedEvents == null || collectedEvents.isEmpty()) {
       return Collections.emptyList();
     }
+    if (collectedEvents.size() == 1) {
+      return collectedEvents.get(0);
+    }
+    return new CombinedEvents(collectedEvents);
+  }
+
+  /**
+   * Events reported separately, read without copying them so that events which are built lazily
+   * are only built when the trace is serialized.
+   */
+  private static final class CombinedEvents extends AbstractCollection<AppSecEvent100> {
+    private final List<Collection<AppSecEvent100>> batches;
+
+    CombinedEvents(List<Collection<AppSecEvent100>> batches) {
+      this.batches = batches;
+    }
+
+    @Override
+    public Iterator<AppSecEvent100> iterator() {
+      final Iterator<Collection<AppSecEvent100>> remaining = batches.iterator();
+      return new Iterator<AppSecEvent100>() {
+        private Iterator<AppSecEvent100> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+          while (!current.hasNext() && remaining.hasNext()) {
+            current = remaining.next().iterator();
+          }
+          return current.hasNext();
+        }
+
+        @Override
+        public AppSecEvent100 next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return current.next();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (Collection<AppSecEvent100> batch : batches) {
+        size += batch.size();
+      }
+      return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      for (Collection<AppSecEvent100> batch : batches) {
+        if (!batch.isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 }
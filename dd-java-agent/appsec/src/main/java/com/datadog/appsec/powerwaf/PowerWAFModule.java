@@ -21,14 +21,8 @@ import io.sqreen.powerwaf.Powerwaf;
 import io.sqreen.powerwaf.PowerwafContext;
 import io.sqreen.powerwaf.exception.AbstractPowerwafException;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -51,15 +45,10 @@ public class PowerWAFModule implements AppSecModule {
            * traditionally powerwaf has had problems with too large budgets */
           ((long) Integer.MAX_VALUE) * 1000,
           ((long) Integer.MAX_VALUE) * 1000);
-  private static final Class<?> PROXY_CLASS =
-      Proxy.getProxyClass(PowerWAFModule.class.getClassLoader(), Set.class);
-  private static final Constructor<?> PROXY_CLASS_CONSTRUCTOR;
   private static final Set<EventType> EVENTS_OF_INTEREST;
 
   private static final JsonAdapter<List<PowerWAFResultData>> RES_JSON_ADAPTER;
 
-  private static final Map<String, RuleInfo> rulesInfoMap = new ConcurrentHashMap<>();
-
   private static class RuleInfo {
     final String name;
     final String type;
@@ -74,21 +63,23 @@ public class PowerWAFModule implements AppSecModule {
 
   private static class CtxAndAddresses {
     final Collection<Address<?>> addressesOfInterest;
+    final boolean[] addressMask;
     final PowerwafContext ctx;
+    // rules of this configuration, by id; never modified after construction
+    final Map<String, RuleInfo> rulesInfo;
 
-    private CtxAndAddresses(Collection<Address<?>> addressesOfInterest, PowerwafContext ctx) {
+    private CtxAndAddresses(
+        Collection<Address<?>> addressesOfInterest,
+        PowerwafContext ctx,
+        Map<String, RuleInfo> rulesInfo) {
       this.addressesOfInterest = addressesOfInterest;
+      this.addressMask = DataBundleMapWrapper.addressMask(addressesOfInterest);
       this.ctx = ctx;
+      this.rulesInfo = rulesInfo;
     }
   }
 
   static {
-    try {
-      PROXY_CLASS_CONSTRUCTOR = PROXY_CLASS.getConstructor(InvocationHandler.class);
-    } catch (NoSuchMethodException e) {
-      throw new UndeclaredThrowableException(e);
-    }
-
     EVENTS_OF_INTEREST = new HashSet<>();
     EVENTS_OF_INTEREST.add(EventType.REQUEST_START);
     EVENTS_OF_INTEREST.add(EventType.REQUEST_END);
@@ -131,11 +122,9 @@ public class PowerWAFModule implements AppSecModule {
         String uniqueId = UUID.randomUUID().toString();
         PowerwafContext context = Powerwaf.createContext(uniqueId, config.getRawConfig());
         Collection<Address<?>> addresses = getUsedAddresses(context);
-        newContextAndAddresses = new CtxAndAddresses(addresses, context);
-
-        rulesInfoMap.clear();
-        config.getRules().forEach(e -> rulesInfoMap.put(e.getId(), new RuleInfo(e)));
-
+        Map<String, RuleInfo> rulesInfo = new HashMap<>();
+        config.getRules().forEach(e -> rulesInfo.put(e.getId(), new RuleInfo(e)));
+        newContextAndAddresses = new CtxAndAddresses(addresses, context, rulesInfo);
       } catch (RuntimeException | AbstractPowerwafException e) {
         throw new AppSecModuleActivationException("Error creating WAF rules", e);
       }
@@ -157,11 +146,9 @@ public class PowerWAFModule implements AppSecModule {
 
   @Override
   public String getInfo() {
-    return "powerwaf(libddwaf: "
-        + Powerwaf.LIB_VERSION
-        + ") loaded "
-        + rulesInfoMap.size()
-        + " rules";
+    CtxAndAddresses ctxAndAddr = ctxAndAddresses.get();
+    int numRules = ctxAndAddr != null ? ctxAndAddr.rulesInfo.size() : 0;
+    return "powerwaf(libddwaf: " + Powerwaf.LIB_VERSION + ") loaded " + numRules + " rules";
   }
 
   @Override
@@ -251,8 +238,7 @@ public class PowerWAFModule implements AppSecModule {
         flow.setAction(new Flow.Action.Throw(new RuntimeException("WAF wants to block")));
 
         reqCtx.setBlocked(actionWithData.action == Powerwaf.Action.BLOCK);
-        Collection<AppSecEvent100> events = buildEvents(actionWithData);
-        reqCtx.reportEvents(events, null);
+        reqCtx.reportEvents(new DeferredEvents(actionWithData.data, ctxAndAddr.rulesInfo), null);
       }
     }
 
@@ -277,35 +263,130 @@ public class PowerWAFModule implements AppSecModule {
         additive = ctxAndAddr.ctx.openAdditive();
         reqCtx.setAdditive(additive);
       }
-      return additive.run(
-          new DataBundleMapWrapper(ctxAndAddr.addressesOfInterest, newData), LIMITS);
+      return additive.run(new DataBundleMapWrapper(ctxAndAddr.addressMask, newData), LIMITS);
     }
   }
 
   private Powerwaf.ActionWithData runPowerwafTransient(
       DataBundle bundle, CtxAndAddresses ctxAndAddr) throws AbstractPowerwafException {
     return ctxAndAddr.ctx.runRules(
-        new DataBundleMapWrapper(ctxAndAddr.addressesOfInterest, bundle), LIMITS);
+        new DataBundleMapWrapper(ctxAndAddr.addressMask, bundle), LIMITS);
+  }
+
+  /**
+   * The events of one WAF match, built from the raw WAF result when first read. That normally
+   * happens when the span is serialized, so the request thread neither parses the WAF result nor
+   * builds the events, and nothing is built at all for traces dropped by the rate limiter.
+   *
+   * <p>Checking whether there are events does not build them: the raw result is scanned for the
+   * ids of rules of the configuration, since results for unknown rules yield no event.
+   */
+  static final class DeferredEvents extends AbstractCollection<AppSecEvent100> {
+    private final String wafResult;
+    private final Map<String, RuleInfo> rulesInfo;
+    private Collection<AppSecEvent100> events; // guarded by this
+
+    DeferredEvents(String wafResult, Map<String, RuleInfo> rulesInfo) {
+      this.wafResult = wafResult;
+      this.rulesInfo = rulesInfo;
+    }
+
+    private synchronized Collection<AppSecEvent100> events() {
+      if (events == null) {
+        try {
+          events = buildEvents(wafResult, rulesInfo);
+        } catch (RuntimeException e) {
+          // this usually runs on the writer thread, which must not fail on our account
+          log.warn("Error building AppSec events from WAF result", e);
+          events = emptyList();
+        }
+      }
+      return events;
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<AppSecEvent100> iterator() {
+      return events().iterator();
+    }
+
+    @Override
+    public int size() {
+      return events().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      synchronized (this) {
+        if (events != null) {
+          return events.isEmpty();
+        }
+      }
+      return !mentionsKnownRule(wafResult, rulesInfo);
+    }
   }
 
-  private Collection<AppSecEvent100> buildEvents(Powerwaf.ActionWithData actionWithData) {
+  /**
+   * Looks for the id of a rule of the configuration in a raw WAF result without parsing it. Rule
+   * ids are the only values of {@code "id"} keys in WAF results, and quotes in matched values are
+   * escaped, so they are never mistaken for one.
+   */
+  static boolean mentionsKnownRule(String wafResult, Map<String, RuleInfo> rulesInfo) {
+    if (wafResult == null || rulesInfo.isEmpty()) {
+      return false;
+    }
+    int length = wafResult.length();
+    int from = 0;
+    int key;
+    while ((key = wafResult.indexOf("\"id\"", from)) >= 0) {
+      from = key + 4;
+      int i = skipWhitespace(wafResult, from);
+      if (i >= length || wafResult.charAt(i) != ':') {
+        continue;
+      }
+      i = skipWhitespace(wafResult, i + 1);
+      if (i >= length || wafResult.charAt(i) != '"') {
+        continue;
+      }
+      int end = wafResult.indexOf('"', i + 1);
+      if (end < 0) {
+        return false;
+      }
+      if (rulesInfo.containsKey(wafResult.substring(i + 1, end))) {
+        return true;
+      }
+      from = end + 1;
+    }
+    return false;
+  }
+
+  private static int skipWhitespace(String s, int i) {
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static Collection<AppSecEvent100> buildEvents(
+      String wafResult, Map<String, RuleInfo> rulesInfo) {
     Collection<PowerWAFResultData> listResults;
     try {
-      listResults = RES_JSON_ADAPTER.fromJson(actionWithData.data);
+      listResults = RES_JSON_ADAPTER.fromJson(wafResult);
     } catch (IOException e) {
       throw new UndeclaredThrowableException(e);
     }
 
     if (listResults != null && !listResults.isEmpty()) {
       return listResults.stream()
-          .map(this::buildEvent)
+          .map(result -> buildEvent(result, rulesInfo))
           .filter(Objects::nonNull)
           .collect(Collectors.toList());
     }
     return emptyList();
   }
 
-  private AppSecEvent100 buildEvent(PowerWAFResultData wafResult) {
+  private static AppSecEvent100 buildEvent(
+      PowerWAFResultData wafResult, Map<String, RuleInfo> rulesInfo) {
 
     if (wafResult == null || wafResult.rule == null || wafResult.rule_matches == null) {
       log.warn("WAF result is empty: {}", wafResult);
@@ -337,7 +418,11 @@ public class PowerWAFModule implements AppSecModule {
       ruleMatchList.add(ruleMatch);
     }
 
-    RuleInfo ruleInfo = rulesInfoMap.get(wafResult.rule.id);
+    RuleInfo ruleInfo = rulesInfo.get(wafResult.rule.id);
+    if (ruleInfo == null) {
+      log.warn("WAF result for unknown rule: {}", wafResult.rule.id);
+      return null;
+    }
 
     return new AppSecEvent100.AppSecEvent100Builder()
         .withRule(
@@ -355,64 +440,75 @@ public class PowerWAFModule implements AppSecModule {
   }
 
   private static final class DataBundleMapWrapper implements Map<String, Object> {
-    private final Collection<Address<?>> addressesOfInterest;
+    private final boolean[] addressMask;
     private final DataBundle dataBundle;
 
-    private DataBundleMapWrapper(
-        Collection<Address<?>> addressesOfInterest, DataBundle dataBundle) {
-      this.addressesOfInterest = addressesOfInterest;
+    DataBundleMapWrapper(Collection<Address<?>> addressesOfInterest, DataBundle dataBundle) {
+      this(addressMask(addressesOfInterest), dataBundle);
+    }
+
+    private DataBundleMapWrapper(boolean[] addressMask, DataBundle dataBundle) {
+      this.addressMask = addressMask;
       this.dataBundle = dataBundle;
     }
 
+    /** Flags the addresses of interest by serial, so filtering an entry is an array lookup. */
+    static boolean[] addressMask(Collection<Address<?>> addressesOfInterest) {
+      boolean[] mask = new boolean[Address.instanceCount()];
+      for (Address<?> address : addressesOfInterest) {
+        mask[address.getSerial()] = true;
+      }
+      return mask;
+    }
+
+    private boolean isOfInterest(Address<?> address) {
+      int serial = address.getSerial();
+      return serial < addressMask.length && addressMask[serial];
+    }
+
     // powerwaf only calls entrySet().iterator() and size()
     @Nonnull
     @Override
     public Set<Entry<String, Object>> entrySet() {
-      try {
-        return (Set<Entry<String, Object>>)
-            PROXY_CLASS_CONSTRUCTOR.newInstance(new SetIteratorInvocationHandler());
-      } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-        throw new UndeclaredThrowableException(e);
-      }
+      return new EntryIteratorSet();
     }
 
-    private class SetIteratorInvocationHandler implements InvocationHandler {
+    private final class EntryIteratorSet extends AbstractSet<Entry<String, Object>> {
+      @Nonnull
       @Override
-      public Object invoke(Object proxy, Method method, Object[] args) {
-        if (!method.getName().equals("iterator")) {
-          throw new UnsupportedOperationException(
-              "Only supported method is 'iterator'; got " + method.getName());
-        }
-
+      public Iterator<Entry<String, Object>> iterator() {
         final Iterator<Address<?>> addrIterator = dataBundle.getAllAddresses().iterator();
         final MutableEntry entry = new MutableEntry();
 
         return new Iterator<Entry<String, Object>>() {
-          private Address<?> next = computeNextAddress();
-
-          private Address<?> computeNextAddress() {
-            return addrIterator.hasNext() ? addrIterator.next() : null;
-          }
-
           @Override
           public boolean hasNext() {
-            return next != null;
+            return addrIterator.hasNext();
           }
 
           @Override
           public Entry<String, Object> next() {
-            if (next == null) {
+            if (!addrIterator.hasNext()) {
               throw new NoSuchElementException();
             }
+            Address<?> next = addrIterator.next();
             // the usage pattern in powerwaf allows object recycling here
             entry.key = next.getKey();
-            entry.value =
-                addressesOfInterest.contains(next) ? dataBundle.get(next) : Collections.emptyMap();
-            next = computeNextAddress();
+            entry.value = isOfInterest(next) ? dataBundle.get(next) : Collections.emptyMap();
             return entry;
           }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
         };
       }
+
+      @Override
+      public int size() {
+        throw new UnsupportedOperationException("Only supported method is 'iterator'; got size");
+      }
     }
 
     @Override
@@ -102,6 +102,51 @@ class EventDispatcherSpecification extends DDSpecification {
     1 * listener.onDataAvailable(_ as Flow, ctx, db)
   }
 
+  void 'listeners of several addresses are notified in priority order beyond 64 listeners'() {
+    def priorities = OrderedCallback.Priority.values()
+    def notified = []
+    def listeners = (0..<100).collect { i ->
+      new DataListener() {
+          @Override
+          void onDataAvailable(ChangeableFlow flow, AppSecRequestContext context, DataBundle dataBundle) {
+            notified << i
+          }
+
+          @Override
+          OrderedCallback.Priority getPriority() {
+            priorities[i % priorities.length]
+          }
+        }
+    }
+
+    given:
+    def set = new EventDispatcher.DataSubscriptionSet()
+    listeners.eachWithIndex { listener, i ->
+      def addresses = [KnownAddresses.REQUEST_CLIENT_IP, KnownAddresses.REQUEST_METHOD, KnownAddresses.REQUEST_URI_RAW]
+      set.addSubscription([addresses[i % 3]], listener)
+    }
+    dispatcher.subscribeDataAvailable(set)
+
+    when:
+    def subscribers = dispatcher.getDataSubscribers(KnownAddresses.REQUEST_CLIENT_IP, KnownAddresses.REQUEST_URI_RAW)
+    dispatcher.publishDataEvent(subscribers, ctx, MapDataBundle.of(KnownAddresses.REQUEST_CLIENT_IP, '::1'), true)
+
+    then:
+    def expected = (0..<100).findAll { it % 3 != 1 }
+    notified == expected.sort(false) { a, b ->
+      listeners[a].priority.ordinal() <=> listeners[b].priority.ordinal() ?: a <=> b
+    }
+
+    when:
+    notified.clear()
+    subscribers = dispatcher.getDataSubscribers(KnownAddresses.REQUEST_METHOD)
+    dispatcher.publishDataEvent(subscribers, ctx, MapDataBundle.of(KnownAddresses.REQUEST_METHOD, 'GET'), true)
+
+    then:
+    notified.sort(false) == (0..<100).findAll { it % 3 == 1 }
+    dispatcher.getDataSubscribers(KnownAddresses.REQUEST_METHOD).is(subscribers)
+  }
+
   void 'blocking interrupts data listener calls'() {
     def exception = new RuntimeException()
 
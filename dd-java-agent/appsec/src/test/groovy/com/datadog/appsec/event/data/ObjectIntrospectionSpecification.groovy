@@ -73,6 +73,30 @@ class ObjectIntrospectionSpecification extends Specification {
     convert(new ClassToBeConvertedExt()) == [c: 'd', a: 'b', l: ['1', '2']]
   }
 
+  void 'objects of the same class are converted independently'() {
+    setup:
+    def first = new ClassToBeConverted()
+    def second = new ClassToBeConverted()
+    second.a = 'c'
+
+    expect:
+    convert(new ClassToBeConvertedExt()) == [c: 'd', a: 'b', l: ['1', '2']]
+    convert(first) == [a: 'b', l: ['1', '2']]
+    convert(second) == [a: 'c', l: ['1', '2']]
+  }
+
+  void 'max number of elements is honored for repeated objects'() {
+    setup:
+    def objects = (0..<200).collect { new ClassToBeConverted() }
+
+    when:
+    def converted = convert(objects)
+
+    then:
+    converted.size() < 60 // 5 elements per object
+    converted.first() == [a: 'b', l: ['1', '2']]
+  }
+
   void 'max number of elements is honored'() {
     setup:
     def m = [:]
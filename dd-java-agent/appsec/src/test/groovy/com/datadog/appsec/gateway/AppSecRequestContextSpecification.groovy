@@ -114,6 +114,23 @@ class AppSecRequestContextSpecification extends DDSpecification {
     thrown IllegalStateException
   }
 
+  void 'events reported separately are transferred together'() {
+    def event1 = new AppSecEvent100()
+    def event2 = new AppSecEvent100()
+    def event3 = new AppSecEvent100()
+
+    when:
+    ctx.reportEvents([event1], null)
+    ctx.reportEvents([event2, event3], null)
+    def events = ctx.transferCollectedEvents() as List
+
+    then:
+    events.size() == 3
+    events[0].is(event1)
+    events[1].is(event2)
+    events[2].is(event3)
+  }
+
   void 'collect events when none reported'() {
     expect:
     ctx.transferCollectedEvents().empty
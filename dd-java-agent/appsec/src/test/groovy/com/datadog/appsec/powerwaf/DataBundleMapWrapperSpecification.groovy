@@ -61,6 +61,14 @@ class DataBundleMapWrapperSpecification extends DDSpecification {
     thrown(NoSuchElementException)
   }
 
+  void 'entrySet can be iterated more than once'() {
+    def es = mapWrapper.entrySet()
+
+    expect:
+    es.iterator().collect { it.key } == [KnownAddresses.REQUEST_URI_RAW.key, KnownAddresses.REQUEST_CLIENT_IP.key]
+    es.iterator().next().value == '/b'
+  }
+
   void 'entrySet result supports only iterator'() {
     def es = mapWrapper.entrySet()
 
@@ -108,6 +108,95 @@ class PowerWAFModuleSpecification extends DDSpecification {
     ]
   }
 
+  void 'reported events keep the rules of the configuration that detected them'() {
+    def cfgService = new StubAppSecConfigService()
+    Collection<AppSecEvent100> events
+
+    when:
+    cfgService.init(false)
+    pwafModule.config(cfgService)
+    dataListener = pwafModule.dataSubscriptions.first()
+    dataListener.onDataAvailable(Mock(ChangeableFlow), ctx, ATTACK_BUNDLE)
+    cfgService.listeners['waf'].onNewSubconfig(AppSecConfig.valueOf([
+      version: '2.1',
+      rules: [
+        [
+          id: 'ua0-600-12x',
+          name: 'Renamed',
+          tags: [
+            type: 'security_scanner',
+            category: 'attack_attempt'
+          ],
+          conditions: [
+            [
+              parameters: [
+                inputs: [
+                  [
+                    address: 'server.request.headers.no_cookies',
+                    key_path: ['user-agent']]
+                ],
+                regex: '^Arachni\\/v'
+              ],
+              operator: 'match_regex'
+            ]
+          ],
+        ]
+      ]
+    ]))
+
+    then:
+    1 * ctx.hasAddress(KnownAddresses.HEADERS_NO_COOKIES) >> true
+    1 * ctx.reportEvents(_ as Collection<AppSecEvent100>, _) >> { events = it[0] }
+    events.size() == 1
+    events.first().rule.name == 'Arachni'
+  }
+
+  void 'checking for events at request end does not build them'() {
+    setupWithStubConfigService()
+    def reqCtx = new AppSecRequestContext()
+    Collection<AppSecEvent100> reported
+
+    when:
+    dataListener.onDataAvailable(Mock(ChangeableFlow), ctx, ATTACK_BUNDLE)
+
+    then:
+    1 * ctx.hasAddress(KnownAddresses.HEADERS_NO_COOKIES) >> true
+    1 * ctx.reportEvents(_ as Collection<AppSecEvent100>, _) >> { reported = it[0] }
+
+    when:
+    reqCtx.reportEvents(reported, null)
+    reqCtx.reportEvents(reported, null)
+    def transferred = reqCtx.transferCollectedEvents()
+
+    then: 'the events are known to be there without building them'
+    !transferred.isEmpty()
+    reported instanceof PowerWAFModule.DeferredEvents
+    reported.@events == null
+
+    when: 'the events are serialized'
+    def events = transferred as List
+
+    then:
+    events.size() == 2
+    events.every { it.rule.id == 'ua0-600-12x' }
+    reported.@events != null
+  }
+
+  void 'known rules are found in raw WAF results without parsing them'() {
+    expect:
+    PowerWAFModule.mentionsKnownRule(wafResult, ['ua0-600-12x': null]) == mentions
+
+    where:
+    wafResult                                                                         | mentions
+    '[{"rule":{"id":"ua0-600-12x","name":"Arachni"},"rule_matches":[]}]'               | true
+    '[{"rule": {"id" : "ua0-600-12x"}}]'                                              | true
+    '[{"rule":{"id":"unknown"},"rule_matches":[]}]'                                   | false
+    '[{"rule":{"id":"unknown"},"rule_matches":[{"parameters":[{"value":"\\"id\\":\\"ua0-600-12x\\""}]}]}]' | false
+    '[{"rule_matches":[{"parameters":[{"key_path":["id"],"value":"id"}]}]}]'          | false
+    '[]'                                                                              | false
+    null                                                                              | false
+  }
+
   void 'triggers no rule'() {
     setupWithStubConfigService()
     ChangeableFlow flow = new ChangeableFlow()
@@ -224,29 +313,51 @@ class PowerWAFModuleSpecification extends DDSpecification {
   }
 
   void 'bad ActionWithData - empty list'() {
-    def waf = new PowerWAFModule()
     Powerwaf.ActionWithData actionWithData = new Powerwaf.ActionWithData(null, "[]")
     Collection ret
 
     when:
-    ret = waf.buildEvents(actionWithData)
+    ret = PowerWAFModule.buildEvents(actionWithData.data, [:])
 
     then:
     ret.isEmpty()
   }
 
   void 'bad ActionWithData - empty object'() {
-    def waf = new PowerWAFModule()
     Powerwaf.ActionWithData actionWithData = new Powerwaf.ActionWithData(null, "[{}]")
     Collection ret
 
     when:
-    ret = waf.buildEvents(actionWithData)
+    ret = PowerWAFModule.buildEvents(actionWithData.data, [:])
 
     then:
     ret.isEmpty()
   }
 
+  void 'deferred events of a WAF result which yields no events are empty'() {
+    def reqCtx = new AppSecRequestContext()
+
+    when:
+    def events = new PowerWAFModule.DeferredEvents(wafResult, [:])
+    reqCtx.reportEvents(events, null)
+
+    then:
+    events.isEmpty()
+    events.size() == 0
+    !events.iterator().hasNext()
+    reqCtx.transferCollectedEvents().isEmpty()
+
+    where:
+    wafResult << [
+      '[]',
+      '[{}]',
+      '[{"rule":null,"rule_matches":[]}]',
+      '[{"rule":{"id":"unknown-rule"},"rule_matches":null}]',
+      '[{"rule":{"id":"unknown-rule"},"rule_matches":[]}]',
+      'not json'
+    ]
+  }
+
   private Map<String, Object> getDefaultConfig() {
     def service = new StubAppSecConfigService()
     service.init(false)
@@ -0,0 +1,82 @@
+package datadog.trace.instrumentation.java.concurrent;
+
+import static datadog.trace.agent.tooling.bytebuddy.matcher.NameMatchers.named;
+import static datadog.trace.bootstrap.instrumentation.java.concurrent.AdviceUtils.capture;
+import static datadog.trace.bootstrap.instrumentation.java.concurrent.AdviceUtils.endTaskScope;
+import static datadog.trace.bootstrap.instrumentation.java.concurrent.AdviceUtils.startTaskScope;
+import static datadog.trace.instrumentation.java.concurrent.AbstractExecutorInstrumentation.EXEC_NAME;
+import static java.util.Collections.singletonMap;
+import static net.bytebuddy.matcher.ElementMatchers.isConstructor;
+import static net.bytebuddy.matcher.ElementMatchers.isMethod;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+import com.google.auto.service.AutoService;
+import datadog.trace.agent.tooling.Instrumenter;
+import datadog.trace.bootstrap.InstrumentationContext;
+import datadog.trace.bootstrap.instrumentation.api.AgentScope;
+import datadog.trace.bootstrap.instrumentation.java.concurrent.State;
+import java.util.Map;
+import net.bytebuddy.asm.Advice;
+
+/**
+ * Propagates context into virtual threads once per thread, rather than once per mount.
+ *
+ * <p>The context is captured against the thread's task when the virtual thread is created and
+ * activated when the task starts running on its first carrier. Parking and unparking the virtual
+ * thread resubmits its internal continuation to the scheduler; those runnables are excluded from
+ * the executor instrumentation, so mounting and unmounting never captures context. Scopes opened
+ * by the task live on the virtual thread's own scope stack and move with it between carriers.
+ */
+@AutoService(Instrumenter.class)
+public final class VirtualThreadInstrumentation extends Instrumenter.Tracing
+    implements Instrumenter.ForSingleType {
+
+  public VirtualThreadInstrumentation() {
+    super(EXEC_NAME, "virtual-thread");
+  }
+
+  @Override
+  public String instrumentedType() {
+    return "java.lang.VirtualThread";
+  }
+
+  @Override
+  public Map<String, String> contextStore() {
+    return singletonMap(Runnable.class.getName(), State.class.getName());
+  }
+
+  @Override
+  public void adviceTransformations(AdviceTransformation transformation) {
+    transformation.applyAdvice(
+        isConstructor().and(takesArgument(3, named(Runnable.class.getName()))),
+        getClass().getName() + "$Construct");
+    transformation.applyAdvice(
+        isMethod()
+            .and(named("run"))
+            .and(takesArguments(1))
+            .and(takesArgument(0, named(Runnable.class.getName()))),
+        getClass().getName() + "$Run");
+  }
+
+  public static final class Construct {
+    @Advice.OnMethodExit(suppress = Throwable.class)
+    public static void construct(@Advice.Argument(3) Runnable task) {
+      if (null != task) {
+        capture(InstrumentationContext.get(Runnable.class, State.class), task, true);
+      }
+    }
+  }
+
+  public static final class Run {
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    public static AgentScope before(@Advice.Argument(0) Runnable task) {
+      return startTaskScope(InstrumentationContext.get(Runnable.class, State.class), task);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class, suppress = Throwable.class)
+    public static void after(@Advice.Enter AgentScope scope) {
+      endTaskScope(scope);
+    }
+  }
+}
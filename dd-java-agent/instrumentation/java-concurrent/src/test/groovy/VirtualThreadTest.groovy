@@ -0,0 +1,37 @@
+import datadog.trace.agent.test.AgentTestRunner
+import datadog.trace.core.DDSpan
+import spock.lang.Requires
+
+import static datadog.trace.agent.test.utils.TraceUtils.runUnderTrace
+import static datadog.trace.api.Platform.isJavaVersionAtLeast
+
+@Requires({
+  isJavaVersionAtLeast(21)
+})
+class VirtualThreadTest extends AgentTestRunner {
+
+  def "context is propagated into #description virtual threads"() {
+    when:
+    runUnderTrace("parent") {
+      // Thread.ofVirtual() is only resolved at runtime, since the tests are compiled for Java 8
+      Thread thread = Thread.ofVirtual().unstarted(task)
+      thread.start()
+      thread.join()
+    }
+    TEST_WRITER.waitForTraces(1)
+
+    then:
+    TEST_WRITER.size() == 1
+    List<DDSpan> trace = TEST_WRITER.get(0)
+    trace.size() == 2
+    DDSpan parent = trace.find { it.isRootSpan() }
+    DDSpan child = trace.find { it.getOperationName().toString() == "parent-child" }
+    child.getParentId() == parent.getSpanId()
+
+    where:
+    description | task
+    "new"       | new Descendant("parent")
+    // parking and unparking remounts the virtual thread, which must keep its context
+    "parked"    | { Thread.sleep(10); new Descendant("parent").run() } as Runnable
+  }
+}
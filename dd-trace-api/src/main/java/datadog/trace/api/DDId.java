@@ -8,7 +8,7 @@ import java.util.Arrays;
  *
  * <p>It contains generation of new ids, parsing, and to string for both decimal and hex
  * representations. The decimal string representation is either kept from parsing, or generated on
- * demand and cached.
+ * demand and cached. The hex string representation is generated on demand and cached.
  */
 public class DDId {
 
@@ -87,6 +87,7 @@ public class DDId {
 
   private final long id;
   private String str; // cache for string representation
+  private String hexStr; // cache for hex string representation
 
   private DDId(long id, String str) {
     this.id = id;
@@ -235,12 +236,18 @@ public class DDId {
 
   /**
    * Returns the no zero padded hex representation, in lower case, of the unsigned 64 bit id. The
-   * hex {@code String} will NOT be cached.
+   * hex {@code String} will be cached.
    *
    * @return non zero padded hex String
    */
   public String toHexString() {
-    return Long.toHexString(this.id);
+    String s = this.hexStr;
+    // This race condition is intentional and benign.
+    // The worst that can happen is that an identical value is produced and written into the field.
+    if (s == null) {
+      this.hexStr = s = Long.toHexString(this.id);
+    }
+    return s;
   }
 
   private static final byte[] HEX_DIGITS = {
@@ -249,7 +256,8 @@ public class DDId {
 
   /**
    * Returns the zero padded hex representation, in lower case, of the unsigned 64 bit id. The size
-   * will be rounded up to 16 or 32 characters. The hex {@code String} will NOT be cached.
+   * will be rounded up to 16 or 32 characters. The hex {@code String} will NOT be cached, unless no
+   * padding is needed and it is the cached hex {@code String}.
    *
    * @param size the size in characters of the 0 padded String (rounded up to 16 or 32)
    * @return zero padded hex String
@@ -257,8 +265,12 @@ public class DDId {
   public String toHexStringPadded(int size) {
     if (size > 16) {
       size = 32;
-    } else if (size < 16) {
+    } else {
       size = 16;
+      if (Long.numberOfLeadingZeros(this.id) < 4) {
+        // all 16 digits are significant
+        return toHexString();
+      }
     }
     byte[] bytes = new byte[size];
     long remaining = this.id;
@@ -274,7 +286,7 @@ public class DDId {
 
   /**
    * Returns the no zero padded hex representation, in lower case, of the unsigned 64 bit id, or the
-   * original {@code String} used to create this {@code DDId}. The hex {@code String} will NOT be
+   * original {@code String} used to create this {@code DDId}. The hex {@code String} will be
    * cached.
    *
    * @return non zero padded hex String
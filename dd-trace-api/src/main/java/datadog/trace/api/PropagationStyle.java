@@ -4,5 +4,6 @@ public enum PropagationStyle {
   DATADOG,
   B3,
   HAYSTACK,
-  XRAY
+  XRAY,
+  TRACECONTEXT
 }
@@ -45,6 +45,12 @@ public final class GeneralConfig {
       "trace.tracer.metrics.buffering.enabled";
   public static final String TRACER_METRICS_MAX_AGGREGATES = "trace.tracer.metrics.max.aggregates";
   public static final String TRACER_METRICS_MAX_PENDING = "trace.tracer.metrics.max.pending";
+  public static final String TRACER_METRICS_NAME_CACHE_SIZE =
+      "trace.tracer.metrics.name.cache.size";
+  public static final String TRACER_METRICS_SKETCH_RELATIVE_ACCURACY =
+      "trace.tracer.metrics.sketch.relative.accuracy";
+  public static final String TRACER_METRICS_SKETCH_MEMORY_BUDGET =
+      "trace.tracer.metrics.sketch.memory.budget";
   public static final String TRACER_METRICS_IGNORED_RESOURCES =
       "trace.tracer.metrics.ignored.resources";
 
@@ -53,6 +53,7 @@ public final class TracerConfig {
       "trace.scope.inherit.async.propagation";
   public static final String SCOPE_ITERATION_KEEP_ALIVE = "trace.scope.iteration.keep.alive";
   public static final String PARTIAL_FLUSH_MIN_SPANS = "trace.partial.flush.min.spans";
+  public static final String PARTIAL_FLUSH_MAX_BYTES = "trace.partial.flush.max.bytes";
   public static final String TRACE_STRICT_WRITES_ENABLED = "trace.strict.writes.enabled";
   public static final String PROPAGATION_EXTRACT_LOG_HEADER_NAMES_ENABLED =
       "propagation.extract.log_header_names.enabled";
@@ -60,6 +61,12 @@ public final class TracerConfig {
   public static final String PROPAGATION_STYLE_INJECT = "propagation.style.inject";
 
   public static final String ENABLE_TRACE_AGENT_V05 = "trace.agent.v0.5.enabled";
+  public static final String TRACE_SERIALIZATION_SHARDS = "trace.serialization.shards";
+  public static final String TRACE_SPAN_RECYCLING_ENABLED = "trace.span.recycling.enabled";
+  public static final String TRACE_SPILL_DIRECTORY = "trace.spill.directory";
+  public static final String TRACE_SPILL_MAX_SIZE = "trace.spill.max.size";
+  public static final String TRACE_AGENT_COMPRESSION = "trace.agent.compression";
+  public static final String TRACE_ADAPTIVE_BATCHING_ENABLED = "trace.adaptive.batching.enabled";
   public static final String SAMPLING_MECHANISM_VALIDATION_DISABLED =
       "trace.sampling.mechanism.validation.disabled";
 
@@ -91,6 +91,25 @@ class DDIdTest extends DDSpecification {
     "123456789abcdef"        | DDId.from(81985529216486895)
   }
 
+  def "hex strings are cached"() {
+    when:
+    final ddid = DDId.from(id)
+
+    then:
+    ddid.toHexString().is(ddid.toHexString())
+    ddid.toHexStringOrOriginal().is(ddid.toHexString())
+    ddid.toHexStringPadded(16).is(ddid.toHexString()) == fullWidth
+    ddid.toString().is(ddid.toString())
+
+    where:
+    id                 | fullWidth
+    1                  | false
+    Long.MAX_VALUE     | false
+    Long.MIN_VALUE     | true
+    -1                 | true
+    0x1234567890abcdef | true
+  }
+
   def "fail on illegal hex String"() {
     when:
     DDId.fromHex(hexId)
@@ -0,0 +1,147 @@
+package datadog.trace.common.metrics;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import datadog.communication.ddagent.DDAgentFeaturesDiscovery;
+import datadog.communication.monitor.Monitoring;
+import datadog.trace.api.DDId;
+import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.api.sampling.SamplingMechanism;
+import datadog.trace.common.writer.LoggingWriter;
+import datadog.trace.core.CoreSpan;
+import datadog.trace.core.CoreTracer;
+import datadog.trace.core.DDSpan;
+import datadog.trace.core.DDSpanContext;
+import datadog.trace.core.PendingTrace;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import okhttp3.HttpUrl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/** Measures how many top level spans per second can be published with stats computation on */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+public class ConflatingMetricsAggregatorBenchmark {
+
+  private static final int SPAN_COUNT = 64;
+
+  private static final CoreTracer tracer =
+      CoreTracer.builder().writer(new LoggingWriter()).strictTraceWrites(true).build();
+
+  private final List<CoreSpan<?>> trace = new ArrayList<>(SPAN_COUNT);
+  private ConflatingMetricsAggregator aggregator;
+
+  @Setup(Level.Trial)
+  public void init() {
+    aggregator =
+        new ConflatingMetricsAggregator(
+            new HashSet<String>(),
+            new FixedFeaturesDiscovery(),
+            new NullSink(),
+            new NullMetricWriter(),
+            2048,
+            2048,
+            1,
+            SECONDS);
+    aggregator.start();
+    DDId traceId = DDId.from(1);
+    PendingTrace pendingTrace = tracer.createTrace(traceId);
+    for (int i = 0; i < SPAN_COUNT; ++i) {
+      // a handful of resources, as a typical service would report
+      trace.add(createSpan(traceId, i, "resource-" + (i % 8), pendingTrace));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    aggregator.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  @OperationsPerInvocation(SPAN_COUNT)
+  public boolean publishSingleThread() {
+    return aggregator.publish(trace);
+  }
+
+  @Benchmark
+  @Threads(8)
+  @OperationsPerInvocation(SPAN_COUNT)
+  public boolean publishContended() {
+    return aggregator.publish(trace);
+  }
+
+  private static DDSpan createSpan(
+      DDId traceId, int iter, String resource, PendingTrace pendingTrace) {
+    return DDSpan.create(
+        System.currentTimeMillis() * 1000,
+        new DDSpanContext(
+            traceId,
+            DDId.from(1000 + iter),
+            DDId.ZERO,
+            null,
+            "service",
+            "operation",
+            resource,
+            PrioritySampling.SAMPLER_KEEP,
+            SamplingMechanism.DEFAULT,
+            null,
+            Collections.<String, String>emptyMap(),
+            false,
+            "type",
+            0,
+            pendingTrace,
+            null,
+            false));
+  }
+
+  private static final class FixedFeaturesDiscovery extends DDAgentFeaturesDiscovery {
+    FixedFeaturesDiscovery() {
+      super(null, Monitoring.DISABLED, HttpUrl.get("http://localhost:8126"), false, true);
+    }
+
+    @Override
+    public void discover() {}
+
+    @Override
+    public boolean supportsMetrics() {
+      return true;
+    }
+  }
+
+  private static final class NullSink implements Sink {
+    @Override
+    public void register(EventListener listener) {}
+
+    @Override
+    public void accept(int messageCount, ByteBuffer buffer) {}
+  }
+
+  private static final class NullMetricWriter implements MetricWriter {
+    @Override
+    public void startBucket(int metricCount, long start, long duration) {}
+
+    @Override
+    public void add(MetricKey key, AggregateMetric aggregate) {}
+
+    @Override
+    public void finishBucket() {}
+
+    @Override
+    public void reset() {}
+  }
+}
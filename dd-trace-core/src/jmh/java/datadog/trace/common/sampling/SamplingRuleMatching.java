@@ -0,0 +1,91 @@
+package datadog.trace.common.sampling;
+
+import datadog.trace.common.sampling.SamplingRule.AlwaysMatchesSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.OperationSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.ServiceSamplingRule;
+import datadog.trace.common.writer.LoggingWriter;
+import datadog.trace.core.CoreTracer;
+import datadog.trace.core.DDSpan;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Finds the sampling rule of root spans from a handful of services by trying the rules in order,
+ * as {@link RuleBasedSampler} used to, and with {@link CompiledSamplingRules}. Half of the rules
+ * are literal service names and half are operation name patterns, and most spans only match the
+ * default rule at the end.
+ */
+@State(Scope.Thread)
+public class SamplingRuleMatching {
+
+  private static final int SPAN_COUNT = 16;
+
+  private static final CoreTracer tracer =
+      CoreTracer.builder().writer(new LoggingWriter()).strictTraceWrites(true).build();
+
+  @Param({"1", "10", "100"})
+  int ruleCount;
+
+  private List<SamplingRule<DDSpan>> rules;
+  private CompiledSamplingRules<DDSpan> compiledRules;
+  private DDSpan[] spans;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void init() {
+    rules = new ArrayList<>(ruleCount + 1);
+    for (int i = 0; i < ruleCount; ++i) {
+      DeterministicSampler<DDSpan> sampler = new DeterministicSampler<>(0.5);
+      rules.add(
+          i % 2 == 0
+              ? new ServiceSamplingRule<>("service-" + i, sampler)
+              : new OperationSamplingRule<>("operation-" + i + "\\..*", sampler));
+    }
+    rules.add(new AlwaysMatchesSamplingRule<>(new DeterministicSampler<DDSpan>(1.0)));
+    compiledRules = CompiledSamplingRules.compile(rules);
+    spans = new DDSpan[SPAN_COUNT];
+    for (int i = 0; i < SPAN_COUNT; ++i) {
+      spans[i] =
+          (DDSpan)
+              tracer
+                  .buildSpan("operation-" + (i * 2 + 1) + ".request")
+                  .withServiceName("service-" + i * 4)
+                  .ignoreActiveSpan()
+                  .start();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void finish() {
+    for (DDSpan span : spans) {
+      span.finish();
+    }
+  }
+
+  @Benchmark
+  public SamplingRule<DDSpan> inOrder() {
+    DDSpan span = nextSpan();
+    for (SamplingRule<DDSpan> rule : rules) {
+      if (rule.matches(span)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public SamplingRule<DDSpan> compiled() {
+    return compiledRules.match(nextSpan());
+  }
+
+  private DDSpan nextSpan() {
+    return spans[next++ & (SPAN_COUNT - 1)];
+  }
+}
@@ -84,6 +84,16 @@ public class PendingTraceWrite {
   @Threads(4)
   @Benchmark
   public void writeTraces() {
+    publish();
+  }
+
+  @Threads(16)
+  @Benchmark
+  public void writeTracesFanOut() {
+    publish();
+  }
+
+  private void publish() {
     trace.registerSpan(root);
     for (int i = 0; i < depthPerThread; ++i) {
       trace.registerSpan(span);
@@ -0,0 +1,79 @@
+package datadog.trace.core;
+
+import datadog.trace.api.DDTags;
+import datadog.trace.bootstrap.instrumentation.api.InstrumentationTags;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import datadog.trace.common.writer.LoggingWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of setting tags through the tag interceptor against storing them directly,
+ * both for tags the interceptor ignores, which is nearly all of them, and for intercepted tags.
+ */
+@State(Scope.Thread)
+public class TagInterception {
+
+  private static final CoreTracer tracer =
+      CoreTracer.builder().writer(new LoggingWriter()).strictTraceWrites(true).build();
+
+  private static final String[] UNINTERESTING_TAGS = {
+    Tags.COMPONENT,
+    Tags.SPAN_KIND,
+    Tags.HTTP_METHOD,
+    Tags.HTTP_URL,
+    Tags.PEER_HOSTNAME,
+    Tags.PEER_PORT,
+    Tags.DB_TYPE,
+    Tags.DB_INSTANCE
+  };
+
+  private static final String[] INTERCEPTED_TAGS = {
+    DDTags.SPAN_TYPE,
+    DDTags.RESOURCE_NAME,
+    Tags.ERROR,
+    InstrumentationTags.SERVLET_CONTEXT
+  };
+
+  private DDSpan span;
+  private DDSpanContext context;
+
+  @Setup(Level.Trial)
+  public void init() {
+    span = (DDSpan) tracer.startSpan("operation", false);
+    context = span.context();
+  }
+
+  @TearDown(Level.Trial)
+  public void finish() {
+    span.finish();
+  }
+
+  @Benchmark
+  public DDSpanContext setUninterestingTags() {
+    for (String tag : UNINTERESTING_TAGS) {
+      context.setTag(tag, "value");
+    }
+    return context;
+  }
+
+  @Benchmark
+  public DDSpanContext setUninterestingTagsWithoutInterception() {
+    for (String tag : UNINTERESTING_TAGS) {
+      context.unsafeSetTag(tag, "value");
+    }
+    return context;
+  }
+
+  @Benchmark
+  public DDSpanContext setInterceptedTags() {
+    for (String tag : INTERCEPTED_TAGS) {
+      context.setTag(tag, "value");
+    }
+    return context;
+  }
+}
@@ -0,0 +1,98 @@
+package datadog.trace.core;
+
+import datadog.trace.api.DDTags;
+import datadog.trace.bootstrap.instrumentation.api.InstrumentationTags;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import datadog.trace.core.util.TagMap;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the synchronized {@code HashMap} previously used to store span tags with {@link
+ * TagMap}, both for the single writer case and for several threads tagging the same span.
+ */
+@State(Scope.Group)
+public class TagMapBenchmark {
+
+  private static final String[] KEYS = {
+    Tags.COMPONENT,
+    Tags.SPAN_KIND,
+    Tags.HTTP_METHOD,
+    Tags.HTTP_URL,
+    Tags.PEER_HOSTNAME,
+    Tags.PEER_PORT,
+    DDTags.ANALYTICS_SAMPLE_RATE,
+    InstrumentationTags.DD_MEASURED.toString()
+  };
+
+  private final Map<String, Object> hashMap = new HashMap<>(16);
+  private final TagMap tagMap = new TagMap(KEYS.length);
+
+  @Setup(Level.Iteration)
+  public void init() {
+    hashMap.clear();
+    tagMap.clear();
+  }
+
+  @Benchmark
+  @Group("synchronizedHashMap")
+  @GroupThreads(1)
+  public void setSynchronized() {
+    for (String key : KEYS) {
+      synchronized (hashMap) {
+        hashMap.put(key, key);
+      }
+    }
+  }
+
+  @Benchmark
+  @Group("synchronizedHashMap")
+  @GroupThreads(1)
+  public void iterateSynchronized(Blackhole blackhole) {
+    synchronized (hashMap) {
+      for (Map.Entry<String, Object> entry : hashMap.entrySet()) {
+        blackhole.consume(entry.getValue());
+      }
+    }
+  }
+
+  @Benchmark
+  @Group("tagMap")
+  @GroupThreads(1)
+  public void setTagMap() {
+    for (String key : KEYS) {
+      tagMap.put(key, key);
+    }
+  }
+
+  @Benchmark
+  @Group("tagMap")
+  @GroupThreads(1)
+  public void iterateTagMap(Blackhole blackhole) {
+    for (Map.Entry<String, Object> entry : tagMap.entrySet()) {
+      blackhole.consume(entry.getValue());
+    }
+  }
+
+  @Benchmark
+  @Group("contendedSynchronizedHashMap")
+  @GroupThreads(4)
+  public void contendedSetSynchronized() {
+    setSynchronized();
+  }
+
+  @Benchmark
+  @Group("contendedTagMap")
+  @GroupThreads(4)
+  public void contendedSetTagMap() {
+    setTagMap();
+  }
+}
@@ -0,0 +1,134 @@
+package datadog.trace.core;
+
+import datadog.communication.serialization.ByteBufferConsumer;
+import datadog.communication.serialization.FlushingBuffer;
+import datadog.communication.serialization.msgpack.MsgPackWriter;
+import datadog.trace.api.DDId;
+import datadog.trace.api.DDTags;
+import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.api.sampling.SamplingMechanism;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import datadog.trace.common.writer.LoggingWriter;
+import datadog.trace.common.writer.ddagent.TraceMapper;
+import datadog.trace.common.writer.ddagent.TraceMapperV0_4;
+import datadog.trace.common.writer.ddagent.TraceMapperV0_5;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Serializes a trace of spans carrying typical HTTP and DB tags, then flushes it as a payload.
+ * Scores are per span, and the {@code bytes} counter reports the payload size, including the v0.5
+ * dictionary.
+ */
+@State(Scope.Thread)
+public class TraceMapperEncoding {
+
+  private static final int SPAN_COUNT = 100;
+
+  private static final CoreTracer tracer =
+      CoreTracer.builder().writer(new LoggingWriter()).strictTraceWrites(true).build();
+
+  @Param({"v0.4", "v0.5"})
+  String version;
+
+  private final List<DDSpan> trace = new ArrayList<>(SPAN_COUNT);
+
+  private TraceMapper mapper;
+  private PayloadCounter counter;
+  private MsgPackWriter writer;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Bytes {
+    long bytes;
+
+    public long bytes() {
+      return bytes;
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void init() {
+    mapper = "v0.4".equals(version) ? new TraceMapperV0_4() : new TraceMapperV0_5();
+    counter = new PayloadCounter(mapper);
+    writer = new MsgPackWriter(new FlushingBuffer(mapper.messageBufferSize(), counter));
+    DDId traceId = DDId.from(1);
+    PendingTrace pendingTrace = tracer.createTrace(traceId);
+    for (int i = 1; i <= SPAN_COUNT; i++) {
+      trace.add(createSpan(traceId, i, pendingTrace));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SPAN_COUNT)
+  public void mapAndFlush(Bytes bytes) {
+    counter.bytes = bytes;
+    writer.format(trace, mapper);
+    writer.flush();
+  }
+
+  private static DDSpan createSpan(DDId traceId, int iter, PendingTrace pendingTrace) {
+    DDSpan span =
+        DDSpan.create(
+            System.currentTimeMillis() * 1000,
+            new DDSpanContext(
+                traceId,
+                DDId.from(1000 + iter),
+                DDId.ZERO,
+                null,
+                "service",
+                "operation",
+                "resource",
+                PrioritySampling.SAMPLER_KEEP,
+                SamplingMechanism.DEFAULT,
+                null,
+                Collections.<String, String>emptyMap(),
+                false,
+                "type",
+                0,
+                pendingTrace,
+                null,
+                false));
+    span.setTag(Tags.COMPONENT, "java-web-servlet");
+    span.setTag(Tags.SPAN_KIND, Tags.SPAN_KIND_SERVER);
+    span.setTag(Tags.HTTP_METHOD, "GET");
+    span.setTag(Tags.HTTP_URL, "http://localhost:8080/some/path/" + iter);
+    span.setTag(Tags.PEER_HOSTNAME, "localhost");
+    span.setTag(Tags.PEER_PORT, 8080);
+    span.setTag(Tags.DB_TYPE, "postgresql");
+    span.setTag(Tags.DB_INSTANCE, "orders");
+    span.setTag(DDTags.ANALYTICS_SAMPLE_RATE, 1.0);
+    span.setTag("custom.tag", "value-" + (iter % 10));
+    return span;
+  }
+
+  private static final class PayloadCounter implements ByteBufferConsumer {
+    private final TraceMapper mapper;
+    Bytes bytes;
+
+    PayloadCounter(TraceMapper mapper) {
+      this.mapper = mapper;
+    }
+
+    @Override
+    public void accept(int messageCount, ByteBuffer buffer) {
+      bytes.bytes += mapper.newPayload().withBody(messageCount, buffer).sizeInBytes();
+      mapper.reset();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package datadog.trace.core.propagation;
+
+import datadog.trace.bootstrap.instrumentation.api.AgentPropagation;
+import datadog.trace.bootstrap.instrumentation.api.ContextVisitors;
+import datadog.trace.bootstrap.instrumentation.api.TagContext;
+import datadog.trace.common.writer.LoggingWriter;
+import datadog.trace.core.CoreTracer;
+import datadog.trace.core.DDSpan;
+import datadog.trace.core.DDSpanContext;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Extracts a context from typical request headers carrying either B3 or W3C trace context
+ * headers, and injects a span's context with the same codec.
+ */
+@State(Scope.Thread)
+public class PropagationCodecs {
+
+  private static final CoreTracer tracer =
+      CoreTracer.builder().writer(new LoggingWriter()).strictTraceWrites(true).build();
+
+  private static final AgentPropagation.Setter<Map<String, String>> SETTER =
+      new AgentPropagation.Setter<Map<String, String>>() {
+        @Override
+        public void set(Map<String, String> carrier, String key, String value) {
+          carrier.put(key, value);
+        }
+      };
+
+  @Param({"b3", "tracecontext"})
+  String style;
+
+  private HttpCodec.Extractor extractor;
+  private HttpCodec.Injector injector;
+  private final Map<String, String> headers = new HashMap<>();
+  private final Map<String, String> injected = new HashMap<>();
+  private DDSpan span;
+
+  @Setup(Level.Trial)
+  public void init() {
+    Map<String, String> taggedHeaders = Collections.emptyMap();
+    headers.put("accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+    headers.put("accept-encoding", "gzip, deflate, br");
+    headers.put("accept-language", "en-US,en;q=0.5");
+    headers.put("cache-control", "no-cache");
+    headers.put("connection", "keep-alive");
+    headers.put("cookie", "session=0123456789abcdef");
+    headers.put("host", "localhost:8080");
+    headers.put("user-agent", "Mozilla/5.0 (X11; Linux x86_64; rv:91.0) Gecko/20100101");
+    if ("b3".equals(style)) {
+      extractor = B3HttpCodec.newExtractor(taggedHeaders);
+      injector = B3HttpCodec.INJECTOR;
+      headers.put("X-B3-TraceId", "4bf92f3577b34da6a3ce929d0e0e4736");
+      headers.put("X-B3-SpanId", "00f067aa0ba902b7");
+      headers.put("X-B3-Sampled", "1");
+    } else {
+      extractor = W3CHttpCodec.newExtractor(taggedHeaders);
+      injector = W3CHttpCodec.INJECTOR;
+      headers.put("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+      headers.put("tracestate", "dd=s:1;o:rum,congo=t61rcWkgMzE");
+    }
+    span = (DDSpan) tracer.buildSpan("operation").ignoreActiveSpan().start();
+    span.setSamplingPriority(1);
+  }
+
+  @TearDown(Level.Trial)
+  public void finish() {
+    span.finish();
+  }
+
+  @Benchmark
+  public TagContext extract() {
+    return extractor.extract(headers, ContextVisitors.stringValuesMap());
+  }
+
+  @Benchmark
+  public Map<String, String> inject() {
+    injected.clear();
+    injector.inject((DDSpanContext) span.context(), injected, SETTER);
+    return injected;
+  }
+}
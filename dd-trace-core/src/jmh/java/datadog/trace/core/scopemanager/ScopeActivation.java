@@ -0,0 +1,70 @@
+package datadog.trace.core.scopemanager;
+
+import datadog.trace.bootstrap.instrumentation.api.AgentScope;
+import datadog.trace.bootstrap.instrumentation.api.AgentSpan;
+import datadog.trace.common.writer.LoggingWriter;
+import datadog.trace.core.CoreTracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Activates and closes scopes the way instrumentation advice does around intercepted methods,
+ * either directly on top of a request scope or nested a few levels deep.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class ScopeActivation {
+
+  private static final CoreTracer tracer =
+      CoreTracer.builder().writer(new LoggingWriter()).strictTraceWrites(true).build();
+
+  private AgentSpan span;
+  private AgentScope requestScope;
+
+  @Setup(Level.Trial)
+  public void init() {
+    span = tracer.startSpan("request", false);
+    requestScope = tracer.activateSpan(span);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    requestScope.close();
+    span.finish();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public AgentScope activateAndClose() {
+    AgentScope scope = tracer.activateSpan(span);
+    scope.close();
+    return scope;
+  }
+
+  @Benchmark
+  @Threads(8)
+  public AgentScope activateAndCloseContended() {
+    AgentScope scope = tracer.activateSpan(span);
+    scope.close();
+    return scope;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public AgentScope activateAndCloseNested() {
+    AgentScope outer = tracer.activateSpan(span);
+    AgentScope middle = tracer.activateSpan(span);
+    AgentScope inner = tracer.activateSpan(span);
+    inner.close();
+    middle.close();
+    outer.close();
+    return outer;
+  }
+}
@@ -21,8 +21,12 @@ public final class AggregateMetric {
   private long duration;
 
   public AggregateMetric() {
-    okLatencies = HISTOGRAM_FACTORY.newHistogram();
-    errorLatencies = HISTOGRAM_FACTORY.newHistogram();
+    this(HISTOGRAM_FACTORY);
+  }
+
+  public AggregateMetric(HistogramFactory histogramFactory) {
+    okLatencies = histogramFactory.newHistogram();
+    errorLatencies = histogramFactory.newHistogram();
   }
 
   public AggregateMetric recordDurations(int count, AtomicLongArray durations) {
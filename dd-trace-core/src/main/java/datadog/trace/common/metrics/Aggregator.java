@@ -4,13 +4,20 @@ import static datadog.trace.common.metrics.Batch.REPORT;
 import static datadog.trace.common.metrics.ConflatingMetricsAggregator.POISON_PILL;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import datadog.trace.core.histogram.HistogramFactory;
 import datadog.trace.core.util.LRUCache;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jctools.maps.NonBlockingHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,11 +26,26 @@ final class Aggregator implements Runnable {
 
   private static final Logger log = LoggerFactory.getLogger(Aggregator.class);
 
+  private static final Comparator<Batch> BY_SEQUENCE =
+      new Comparator<Batch>() {
+        @Override
+        public int compare(Batch left, Batch right) {
+          return Long.compare(left.getSequence(), right.getSequence());
+        }
+      };
+
   private final Queue<Batch> batchPool;
   private final BlockingQueue<Batch> inbox;
   private final LRUCache<MetricKey, AggregateMetric> aggregates;
-  private final NonBlockingHashMap<MetricKey, Batch> pending;
+  private final NonBlockingHashMap<MetricKey, Batch>[] pending;
+  private final AtomicInteger pendingBatchCount;
+  private final int maxPendingBatches;
+  private final List<Batch> merging = new ArrayList<>();
   private final Set<MetricKey> commonKeys;
+  private final HistogramFactory histogramFactory;
+  // aggregates which were expunged or evicted, kept to be reused along with their sketches
+  private final ArrayDeque<AggregateMetric> aggregatePool;
+  private final int maxPooledAggregates;
   private final MetricWriter writer;
   // the reporting interval controls how much history will be buffered
   // when the agent is unresponsive (only 10 pending requests will be
@@ -31,13 +53,17 @@ final class Aggregator implements Runnable {
   private final long reportingIntervalNanos;
 
   private boolean dirty;
+  // messages aggregated since the pending batches were last merged
+  private int messagesSinceMerge;
 
   Aggregator(
       MetricWriter writer,
       Queue<Batch> batchPool,
       BlockingQueue<Batch> inbox,
-      NonBlockingHashMap<MetricKey, Batch> pending,
+      NonBlockingHashMap<MetricKey, Batch>[] pending,
+      AtomicInteger pendingBatchCount,
       final Set<MetricKey> commonKeys,
+      HistogramFactory histogramFactory,
       int maxAggregates,
       long reportingInterval,
       TimeUnit reportingIntervalTimeUnit) {
@@ -45,10 +71,16 @@ final class Aggregator implements Runnable {
     this.batchPool = batchPool;
     this.inbox = inbox;
     this.commonKeys = commonKeys;
+    this.histogramFactory = histogramFactory;
+    this.maxPooledAggregates = Math.max(1, maxAggregates / 8);
+    this.aggregatePool = new ArrayDeque<>(maxPooledAggregates);
     this.aggregates =
-        new LRUCache<>(
-            new CommonKeyCleaner(commonKeys), maxAggregates * 4 / 3, 0.75f, maxAggregates);
+        new LRUCache<>(new Evictor(), maxAggregates * 4 / 3, 0.75f, maxAggregates);
     this.pending = pending;
+    this.pendingBatchCount = pendingBatchCount;
+    this.maxPendingBatches = maxAggregates;
+    // so that the stripes are merged as soon as they first fill up
+    this.messagesSinceMerge = maxAggregates;
     this.reportingIntervalNanos = reportingIntervalTimeUnit.toNanos(reportingInterval);
   }
 
@@ -63,23 +95,21 @@ final class Aggregator implements Runnable {
       try {
         Batch batch = inbox.take();
         if (batch == POISON_PILL) {
+          mergePendingBatches();
           report(wallClockTime());
           break;
         } else if (batch == REPORT) {
+          mergePendingBatches();
           report(wallClockTime());
         } else {
-          MetricKey key = batch.getKey();
-          // important that it is still *this* batch pending, must not remove otherwise
-          pending.remove(key, batch);
-          AggregateMetric aggregate = aggregates.get(key);
-          if (null == aggregate) {
-            aggregate = new AggregateMetric();
-            aggregates.put(key, aggregate);
+          if (++messagesSinceMerge >= maxPendingBatches
+              && pendingBatchCount.get() >= maxPendingBatches) {
+            // the stripes are full, merge them so their keys can be conflated again; scanning
+            // every stripe is only worth it once per as many messages as the stripes can hold
+            mergePendingBatches();
           }
-          batch.contributeTo(aggregate);
-          dirty = true;
-          // return the batch for reuse
-          batchPool.offer(batch);
+          // full batches are taken out of the pending stripes before they are queued
+          aggregate(batch);
         }
       } catch (InterruptedException e) {
         currentThread.interrupt();
@@ -90,6 +120,44 @@ final class Aggregator implements Runnable {
     log.debug("metrics aggregator exited");
   }
 
+  /** Merges the batches which were not filled since the last report */
+  private void mergePendingBatches() {
+    messagesSinceMerge = 0;
+    for (NonBlockingHashMap<MetricKey, Batch> stripe : pending) {
+      for (Map.Entry<MetricKey, Batch> entry : stripe.entrySet()) {
+        Batch batch = entry.getValue();
+        // important that it is still *this* batch pending, must not remove otherwise,
+        // if the batch was replaced, the thread which replaced it queues it instead
+        if (stripe.remove(entry.getKey(), batch)) {
+          pendingBatchCount.decrementAndGet();
+          merging.add(batch);
+        }
+      }
+    }
+    // least recently started batches first, so the least recently used aggregates are evicted
+    Collections.sort(merging, BY_SEQUENCE);
+    for (Batch batch : merging) {
+      aggregate(batch);
+    }
+    merging.clear();
+  }
+
+  private void aggregate(Batch batch) {
+    MetricKey key = batch.getKey();
+    AggregateMetric aggregate = aggregates.get(key);
+    if (null == aggregate) {
+      aggregate = aggregatePool.poll();
+      if (null == aggregate) {
+        aggregate = new AggregateMetric(histogramFactory);
+      }
+      aggregates.put(key, aggregate);
+    }
+    batch.contributeTo(aggregate);
+    dirty = true;
+    // return the batch for reuse
+    batchPool.offer(batch);
+  }
+
   private void report(long when) {
     boolean skipped = true;
     if (dirty) {
@@ -124,6 +192,8 @@ final class Aggregator implements Runnable {
       if (metric.getHitCount() == 0) {
         it.remove();
         commonKeys.remove(pair.getKey());
+        // already cleared when it was last reported
+        recycle(metric);
       }
     }
   }
@@ -132,18 +202,19 @@ final class Aggregator implements Runnable {
     return MILLISECONDS.toNanos(System.currentTimeMillis());
   }
 
-  private static final class CommonKeyCleaner
-      implements LRUCache.ExpiryListener<MetricKey, AggregateMetric> {
-
-    private final Set<MetricKey> commonKeys;
-
-    private CommonKeyCleaner(Set<MetricKey> commonKeys) {
-      this.commonKeys = commonKeys;
+  private void recycle(AggregateMetric aggregate) {
+    if (aggregatePool.size() < maxPooledAggregates) {
+      aggregatePool.offer(aggregate);
     }
+  }
 
+  private final class Evictor implements LRUCache.ExpiryListener<MetricKey, AggregateMetric> {
     @Override
     public void accept(Map.Entry<MetricKey, AggregateMetric> expired) {
       commonKeys.remove(expired.getKey());
+      AggregateMetric aggregate = expired.getValue();
+      aggregate.clear();
+      recycle(aggregate);
     }
   }
 }
@@ -11,10 +11,13 @@ import java.util.concurrent.atomic.AtomicLongArray;
  *
  * <p>A batch can currently take at most 64 values. Attempts to add the 65th update will be
  * rejected.
+ *
+ * <p>Batches are ordered by a sequence number assigned when they are created, so that partially
+ * filled batches merged at a report are aggregated in the order they were started.
  */
 public final class Batch {
 
-  private static final int MAX_BATCH_SIZE = 64;
+  static final int MAX_BATCH_SIZE = 64;
   private static final AtomicIntegerFieldUpdater<Batch> COUNT =
       AtomicIntegerFieldUpdater.newUpdater(Batch.class, "count");
   private static final AtomicIntegerFieldUpdater<Batch> COMMITTED =
@@ -31,6 +34,7 @@ public final class Batch {
   private volatile int committed = 0;
 
   private MetricKey key;
+  private long sequence;
   private final AtomicLongArray durations;
 
   Batch(MetricKey key) {
@@ -56,6 +60,15 @@ public final class Batch {
     return this;
   }
 
+  Batch withSequence(long sequence) {
+    this.sequence = sequence;
+    return this;
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
   public boolean isUsed() {
     return count < 0;
   }
@@ -1,7 +1,6 @@
 package datadog.trace.common.metrics;
 
 import static datadog.communication.ddagent.DDAgentFeaturesDiscovery.V6_METRICS_ENDPOINT;
-import static datadog.trace.api.Functions.UTF8_ENCODE;
 import static datadog.trace.common.metrics.AggregateMetric.ERROR_TAG;
 import static datadog.trace.common.metrics.AggregateMetric.TOP_LEVEL_TAG;
 import static datadog.trace.common.metrics.Batch.REPORT;
@@ -14,35 +13,56 @@ import datadog.communication.ddagent.DDAgentFeaturesDiscovery;
 import datadog.communication.ddagent.SharedCommunicationObjects;
 import datadog.trace.api.Config;
 import datadog.trace.api.WellKnownTags;
-import datadog.trace.api.cache.DDCache;
-import datadog.trace.api.cache.DDCaches;
-import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
 import datadog.trace.core.CoreSpan;
+import datadog.trace.core.histogram.HistogramFactory;
+import datadog.trace.core.histogram.Histograms;
 import datadog.trace.util.AgentTaskScheduler;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.jctools.maps.NonBlockingHashMap;
 import org.jctools.queues.MpscBlockingConsumerArrayQueue;
 import org.jctools.queues.SpmcArrayQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Aggregates the durations of top level and measured spans into metrics reported to the agent.
+ *
+ * <p>Spans are first conflated into {@link Batch batches} held in stripes, each shared by the
+ * threads whose ids map to it, so that application threads rarely contend with each other. A batch
+ * is handed to the aggregator thread once it is full, by the thread which swaps it for a new one,
+ * and batches which are not full are merged by the aggregator when it reports. This keeps traffic
+ * through the aggregator's queue down to one message per full batch.
+ *
+ * <p>At most {@code maxAggregates} batches are pending across all stripes, the same ceiling as a
+ * single unstriped map. Once it is reached, spans for keys without a pending batch in their stripe
+ * are sent to the aggregator in a batch of their own, and the aggregator merges the pending
+ * batches to free their slots.
+ */
 public final class ConflatingMetricsAggregator implements MetricsAggregator, EventListener {
 
   private static final Logger log = LoggerFactory.getLogger(ConflatingMetricsAggregator.class);
 
-  private static final DDCache<String, UTF8BytesString> SERVICE_NAMES =
-      DDCaches.newFixedSizeCache(32);
-
   static final Batch POISON_PILL = Batch.NULL;
 
+  private static final int MAX_STRIPES = 64;
+  private static final int DEFAULT_NAME_CACHE_SIZE = 256;
+  private static final int MIN_SKETCH_BINS = 64;
+  private static final int MAX_SKETCH_BINS = 1024;
+
   private final Set<String> ignoredResources;
   private final Queue<Batch> batchPool;
-  private final NonBlockingHashMap<MetricKey, Batch> pending;
+  private final NonBlockingHashMap<MetricKey, Batch>[] pending;
+  private final AtomicInteger pendingBatchCount = new AtomicInteger();
+  private final int maxPendingBatches;
+  private final AtomicLong batchSequence = new AtomicLong();
   private final NonBlockingHashMap<MetricKey, MetricKey> keys;
+  private final MetricKeyCache keyCache;
   private final Thread thread;
   private final BlockingQueue<Batch> inbox;
   private final Sink sink;
@@ -65,7 +85,15 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
             V6_METRICS_ENDPOINT,
             config.isTracerMetricsBufferingEnabled()),
         config.getTracerMetricsMaxAggregates(),
-        config.getTracerMetricsMaxPending());
+        config.getTracerMetricsMaxPending(),
+        10,
+        SECONDS,
+        config.getTracerMetricsNameCacheSize(),
+        Histograms.newHistogramFactory(
+            config.getTracerMetricsSketchRelativeAccuracy(),
+            maxSketchBins(
+                config.getTracerMetricsSketchMemoryBudget(),
+                config.getTracerMetricsMaxAggregates())));
   }
 
   ConflatingMetricsAggregator(
@@ -87,6 +115,30 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
       int queueSize,
       long reportingInterval,
       TimeUnit timeUnit) {
+    this(
+        wellKnownTags,
+        ignoredResources,
+        features,
+        sink,
+        maxAggregates,
+        queueSize,
+        reportingInterval,
+        timeUnit,
+        DEFAULT_NAME_CACHE_SIZE,
+        Histograms.newHistogramFactory());
+  }
+
+  ConflatingMetricsAggregator(
+      WellKnownTags wellKnownTags,
+      Set<String> ignoredResources,
+      DDAgentFeaturesDiscovery features,
+      Sink sink,
+      int maxAggregates,
+      int queueSize,
+      long reportingInterval,
+      TimeUnit timeUnit,
+      int nameCacheSize,
+      HistogramFactory histogramFactory) {
     this(
         ignoredResources,
         features,
@@ -95,7 +147,9 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
         maxAggregates,
         queueSize,
         reportingInterval,
-        timeUnit);
+        timeUnit,
+        nameCacheSize,
+        histogramFactory);
   }
 
   ConflatingMetricsAggregator(
@@ -107,11 +161,38 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
       int queueSize,
       long reportingInterval,
       TimeUnit timeUnit) {
+    this(
+        ignoredResources,
+        features,
+        sink,
+        metricWriter,
+        maxAggregates,
+        queueSize,
+        reportingInterval,
+        timeUnit,
+        DEFAULT_NAME_CACHE_SIZE,
+        Histograms.newHistogramFactory());
+  }
+
+  ConflatingMetricsAggregator(
+      Set<String> ignoredResources,
+      DDAgentFeaturesDiscovery features,
+      Sink sink,
+      MetricWriter metricWriter,
+      int maxAggregates,
+      int queueSize,
+      long reportingInterval,
+      TimeUnit timeUnit,
+      int nameCacheSize,
+      HistogramFactory histogramFactory) {
     this.ignoredResources = ignoredResources;
     this.inbox = new MpscBlockingConsumerArrayQueue<>(queueSize);
     this.batchPool = new SpmcArrayQueue<>(maxAggregates);
-    this.pending = new NonBlockingHashMap<>(maxAggregates * 4 / 3);
+    this.pending = newStripes(stripeCount(), maxAggregates);
+    this.maxPendingBatches = maxAggregates;
     this.keys = new NonBlockingHashMap<>();
+    // twice as many slots as aggregates keeps collisions between live keys rare
+    this.keyCache = new MetricKeyCache(maxAggregates * 2, nameCacheSize);
     this.features = features;
     this.sink = sink;
     this.aggregator =
@@ -120,7 +201,9 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
             batchPool,
             inbox,
             pending,
+            pendingBatchCount,
             keys.keySet(),
+            histogramFactory,
             maxAggregates,
             reportingInterval,
             timeUnit);
@@ -182,9 +265,9 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
 
   private boolean publish(CoreSpan<?> span, boolean isTopLevel) {
     MetricKey newKey =
-        new MetricKey(
+        keyCache.get(
             span.getResourceName(),
-            SERVICE_NAMES.computeIfAbsent(span.getServiceName(), UTF8_ENCODE),
+            span.getServiceName(),
             span.getOperationName(),
             span.getType(),
             span.getHttpStatusCode());
@@ -196,38 +279,90 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
     }
     long tag = (span.getError() > 0 ? ERROR_TAG : 0L) | (isTopLevel ? TOP_LEVEL_TAG : 0L);
     long durationNanos = span.getDurationNano();
-    Batch batch = pending.get(key);
+    NonBlockingHashMap<MetricKey, Batch> stripe = stripe();
+    Batch batch = stripe.get(key);
     if (null != batch) {
-      // there is a pending batch, try to win the race to add to it
-      // returning false means that either the batch can't take any
-      // more data, or it has already been consumed
       if (batch.add(tag, durationNanos)) {
-        // added to a pending batch prior to consumption
-        // so skip publishing to the queue (we also know
-        // the key isn't rare enough to override the sampler)
+        // added to a pending batch, so we know the key
+        // isn't rare enough to override the sampler
         return false;
       }
       // recycle the older key
       key = batch.getKey();
       isNewKey = false;
     }
-    batch = newBatch(key);
-    batch.add(tag, durationNanos);
-    // overwrite the last one if present, it was already full
-    // or had been consumed by the time we tried to add to it
-    pending.put(key, batch);
-    // must offer to the queue after adding to pending
-    inbox.offer(batch);
+    while (null == batch || !batch.add(tag, durationNanos)) {
+      Batch next = newBatch(key);
+      if (null == batch) {
+        if (pendingBatchCount.incrementAndGet() > maxPendingBatches) {
+          // too many batches are pending across the stripes, so this one is not conflated
+          pendingBatchCount.decrementAndGet();
+          next.add(tag, durationNanos);
+          inbox.offer(next);
+          break;
+        }
+        Batch existing = stripe.putIfAbsent(key, next);
+        if (null == existing) {
+          batch = next;
+        } else {
+          pendingBatchCount.decrementAndGet();
+          batch = existing;
+        }
+      } else if (stripe.replace(key, batch, next)) {
+        // the batch is full, and this thread took it out of the stripe,
+        // so it is the only one which may hand it to the aggregator
+        inbox.offer(batch);
+        batch = next;
+      } else {
+        // another thread replaced the batch, or the aggregator merged it
+        batch = stripe.get(key);
+      }
+    }
     // force keep keys we haven't seen before or errors
     return isNewKey || span.getError() > 0;
   }
 
+  private NonBlockingHashMap<MetricKey, Batch> stripe() {
+    return pending[(int) Thread.currentThread().getId() & (pending.length - 1)];
+  }
+
   private Batch newBatch(MetricKey key) {
     Batch batch = batchPool.poll();
     if (null == batch) {
-      return new Batch(key);
+      batch = new Batch(key);
+    } else {
+      batch.reset(key);
+    }
+    return batch.withSequence(batchSequence.getAndIncrement());
+  }
+
+  private static int stripeCount() {
+    int stripes = 1;
+    int processors = Runtime.getRuntime().availableProcessors();
+    while (stripes < processors && stripes < MAX_STRIPES) {
+      stripes <<= 1;
     }
-    return batch.reset(key);
+    return stripes;
+  }
+
+  /**
+   * Sizes the sketches so that the ok and error latencies of every aggregate fit in the memory
+   * budget, each bin taking 8 bytes.
+   */
+  static int maxSketchBins(long memoryBudget, int maxAggregates) {
+    long bins = memoryBudget / (Math.max(1, maxAggregates) * 2L * 8L);
+    return (int) Math.max(MIN_SKETCH_BINS, Math.min(MAX_SKETCH_BINS, bins));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static NonBlockingHashMap<MetricKey, Batch>[] newStripes(
+      int stripeCount, int maxAggregates) {
+    NonBlockingHashMap<MetricKey, Batch>[] stripes = new NonBlockingHashMap[stripeCount];
+    int initialSize = Math.max(16, maxAggregates * 4 / 3 / stripeCount);
+    for (int i = 0; i < stripeCount; ++i) {
+      stripes[i] = new NonBlockingHashMap<>(initialSize);
+    }
+    return stripes;
   }
 
   public void stop() {
@@ -271,7 +406,10 @@ public final class ConflatingMetricsAggregator implements MetricsAggregator, Eve
         cancellation.cancel();
       }
       this.thread.interrupt();
-      this.pending.clear();
+      for (NonBlockingHashMap<MetricKey, Batch> stripe : pending) {
+        stripe.clear();
+      }
+      this.pendingBatchCount.set(0);
       this.batchPool.clear();
       this.inbox.clear();
       this.aggregator.clearAggregates();
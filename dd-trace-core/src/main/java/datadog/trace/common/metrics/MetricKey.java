@@ -24,14 +24,70 @@ public final class MetricKey {
     this.operationName = null == operationName ? EMPTY : UTF8BytesString.create(operationName);
     this.type = null == type ? EMPTY : UTF8BytesString.create(type);
     this.httpStatusCode = httpStatusCode;
+    this.hash =
+        hash(
+            this.resource.hashCode(),
+            this.service.hashCode(),
+            this.operationName.hashCode(),
+            this.type.hashCode(),
+            httpStatusCode);
+  }
+
+  /** @return the hash code of the key which would be made of these fields */
+  static int hashOf(
+      CharSequence resource,
+      CharSequence service,
+      CharSequence operationName,
+      CharSequence type,
+      int httpStatusCode) {
+    return hash(
+        hashOf(resource), hashOf(service), hashOf(operationName), hashOf(type), httpStatusCode);
+  }
+
+  /** @return whether the key is made of these fields, without creating another key */
+  boolean matches(
+      CharSequence resource,
+      CharSequence service,
+      CharSequence operationName,
+      CharSequence type,
+      int httpStatusCode) {
+    return this.httpStatusCode == httpStatusCode
+        && matches(this.resource, resource)
+        && matches(this.service, service)
+        && matches(this.operationName, operationName)
+        && matches(this.type, type);
+  }
+
+  private static int hash(
+      int resourceHash, int serviceHash, int operationNameHash, int typeHash, int httpStatusCode) {
     // unrolled polynomial hashcode which avoids allocating varargs
     // the constants are 31^4, 31^3, 31^2, 31^1, 31^0
-    this.hash =
-        923521 * this.resource.hashCode()
-            + 29791 * this.service.hashCode()
-            + 961 * this.operationName.hashCode()
-            + 31 * this.type.hashCode()
-            + httpStatusCode;
+    return 923521 * resourceHash
+        + 29791 * serviceHash
+        + 961 * operationNameHash
+        + 31 * typeHash
+        + httpStatusCode;
+  }
+
+  private static int hashOf(CharSequence field) {
+    if (null == field) {
+      return EMPTY.hashCode();
+    }
+    // both cache their hash code, and hash the same as the UTF8BytesString made from them
+    if (field instanceof String || field instanceof UTF8BytesString) {
+      return field.hashCode();
+    }
+    return field.toString().hashCode();
+  }
+
+  private static boolean matches(UTF8BytesString value, CharSequence field) {
+    if (null == field) {
+      return value.length() == 0;
+    }
+    if (field instanceof UTF8BytesString) {
+      return value.equals(field);
+    }
+    return value.toString().contentEquals(field);
   }
 
   public UTF8BytesString getResource() {
@@ -0,0 +1,84 @@
+package datadog.trace.common.metrics;
+
+import datadog.trace.api.cache.DDCache;
+import datadog.trace.api.cache.DDCaches;
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
+import java.util.function.Function;
+
+/**
+ * Finds the {@link MetricKey} of a span by hashing and comparing the span's fields in place, so
+ * that a key is only created the first time a combination of fields is seen, or after it has been
+ * evicted.
+ *
+ * <p>The table is direct mapped and a miss overwrites the slot. Like the fixed size caches, there
+ * is no synchronization: keys are immutable, so a racing reader sees either the old or the new key
+ * and at worst creates a redundant one.
+ *
+ * <p>Keys are created from UTF-8 encoded names held in fixed size caches, so keys sharing a
+ * resource, service or operation name share its encoding as well.
+ */
+final class MetricKeyCache {
+
+  private static final Function<CharSequence, UTF8BytesString> UTF8_CREATE =
+      new Function<CharSequence, UTF8BytesString>() {
+        @Override
+        public UTF8BytesString apply(CharSequence input) {
+          return UTF8BytesString.create(input);
+        }
+      };
+
+  private final MetricKey[] keys;
+  private final int mask;
+  private final DDCache<CharSequence, UTF8BytesString> resourceNames;
+  private final DDCache<CharSequence, UTF8BytesString> serviceNames;
+  private final DDCache<CharSequence, UTF8BytesString> operationNames;
+
+  /**
+   * @param capacity the number of keys to hold, rounded up to a power of two
+   * @param nameCacheSize the number of UTF-8 encoded names of each kind to hold
+   */
+  MetricKeyCache(int capacity, int nameCacheSize) {
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.keys = new MetricKey[size];
+    this.mask = size - 1;
+    this.resourceNames = DDCaches.newFixedSizeCache(nameCacheSize);
+    this.serviceNames = DDCaches.newFixedSizeCache(nameCacheSize);
+    this.operationNames = DDCaches.newFixedSizeCache(nameCacheSize);
+  }
+
+  MetricKey get(
+      CharSequence resource,
+      CharSequence service,
+      CharSequence operationName,
+      CharSequence type,
+      int httpStatusCode) {
+    int hash = MetricKey.hashOf(resource, service, operationName, type, httpStatusCode);
+    int index = (hash ^ (hash >>> 16)) & mask;
+    MetricKey key = keys[index];
+    if (null != key
+        && key.hashCode() == hash
+        && key.matches(resource, service, operationName, type, httpStatusCode)) {
+      return key;
+    }
+    key =
+        new MetricKey(
+            encode(resourceNames, resource),
+            encode(serviceNames, service),
+            encode(operationNames, operationName),
+            type,
+            httpStatusCode);
+    keys[index] = key;
+    return key;
+  }
+
+  private static UTF8BytesString encode(
+      DDCache<CharSequence, UTF8BytesString> cache, CharSequence name) {
+    if (null == name || name instanceof UTF8BytesString) {
+      return (UTF8BytesString) name;
+    }
+    return cache.computeIfAbsent(name, UTF8_CREATE);
+  }
+}
@@ -0,0 +1,159 @@
+package datadog.trace.common.sampling;
+
+import datadog.trace.common.sampling.SamplingRule.AlwaysMatchesSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.OperationSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.PatternMatchSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.ServiceSamplingRule;
+import datadog.trace.core.CoreSpan;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the first of a list of sampling rules which matches a span, when the rules only depend on
+ * the span's service and operation names.
+ *
+ * <p>Rules whose pattern is a literal name are looked up in hash tables, and the other rules are
+ * only tried when they come before the first literal match. Decisions are memoized per service and
+ * operation name in a direct mapped table. Like the fixed size caches, there is no synchronization:
+ * decisions are immutable, so a racing reader sees either the old or the new decision and at worst
+ * matches the rules again.
+ */
+final class CompiledSamplingRules<T extends CoreSpan<T>> {
+
+  private static final int DECISION_CACHE_SIZE = 256;
+  private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private final List<SamplingRule<T>> rules;
+  private final Map<String, Integer> serviceNames;
+  private final Map<String, Integer> operationNames;
+  // indices of the rules which are not literal names, in order
+  private final int[] patternRules;
+  private final int alwaysMatches;
+  private final Decision[] decisions = new Decision[DECISION_CACHE_SIZE];
+
+  private CompiledSamplingRules(
+      List<SamplingRule<T>> rules,
+      Map<String, Integer> serviceNames,
+      Map<String, Integer> operationNames,
+      int[] patternRules,
+      int alwaysMatches) {
+    this.rules = rules;
+    this.serviceNames = serviceNames;
+    this.operationNames = operationNames;
+    this.patternRules = patternRules;
+    this.alwaysMatches = alwaysMatches;
+  }
+
+  /**
+   * @return the compiled rules, or null if one of the rules may depend on more than the service
+   *     and operation names of the span
+   */
+  static <T extends CoreSpan<T>> CompiledSamplingRules<T> compile(List<SamplingRule<T>> rules) {
+    Map<String, Integer> serviceNames = new HashMap<>();
+    Map<String, Integer> operationNames = new HashMap<>();
+    int[] patternRules = new int[rules.size()];
+    int patternRuleCount = 0;
+    int alwaysMatches = rules.size();
+    for (int i = 0; i < rules.size() && alwaysMatches == rules.size(); ++i) {
+      SamplingRule<T> rule = rules.get(i);
+      Class<?> type = rule.getClass();
+      if (type == AlwaysMatchesSamplingRule.class) {
+        // no later rule can match
+        alwaysMatches = i;
+      } else if (type == ServiceSamplingRule.class || type == OperationSamplingRule.class) {
+        String regex = ((PatternMatchSamplingRule<?>) rule).getRegex();
+        if (isLiteral(regex)) {
+          Map<String, Integer> names =
+              type == ServiceSamplingRule.class ? serviceNames : operationNames;
+          // the first rule for a name wins
+          if (!names.containsKey(regex)) {
+            names.put(regex, i);
+          }
+        } else {
+          patternRules[patternRuleCount++] = i;
+        }
+      } else {
+        return null;
+      }
+    }
+    int[] compacted = new int[patternRuleCount];
+    System.arraycopy(patternRules, 0, compacted, 0, patternRuleCount);
+    return new CompiledSamplingRules<>(
+        rules, serviceNames, operationNames, compacted, alwaysMatches);
+  }
+
+  /** @return the first rule matching the span, or null if no rule matches */
+  SamplingRule<T> match(T span) {
+    String serviceName = span.getServiceName();
+    CharSequence operationName = span.getOperationName();
+    int hash = 31 * hashOf(serviceName) + hashOf(operationName);
+    int slot = (hash ^ (hash >>> 16)) & (DECISION_CACHE_SIZE - 1);
+    Decision decision = decisions[slot];
+    if (null == decision || !decision.matches(hash, serviceName, operationName)) {
+      String operation = null == operationName ? null : operationName.toString();
+      int rule = firstMatch(serviceName, operation, span);
+      decision = new Decision(hash, serviceName, operation, rule);
+      decisions[slot] = decision;
+    }
+    return decision.rule < rules.size() ? rules.get(decision.rule) : null;
+  }
+
+  private int firstMatch(String serviceName, String operationName, T span) {
+    int first = alwaysMatches;
+    Integer index;
+    if (null != serviceName && null != (index = serviceNames.get(serviceName))) {
+      first = Math.min(first, index);
+    }
+    if (null != operationName && null != (index = operationNames.get(operationName))) {
+      first = Math.min(first, index);
+    }
+    for (int patternRule : patternRules) {
+      if (patternRule >= first) {
+        break;
+      }
+      if (rules.get(patternRule).matches(span)) {
+        return patternRule;
+      }
+    }
+    return first;
+  }
+
+  private static boolean isLiteral(String regex) {
+    for (int i = 0; i < regex.length(); ++i) {
+      if (REGEX_METACHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hashOf(CharSequence name) {
+    return null == name ? 0 : name.hashCode();
+  }
+
+  private static final class Decision {
+    private final int hash;
+    private final String serviceName;
+    private final String operationName;
+    // the index of the rule, or the number of rules if none matched
+    final int rule;
+
+    private Decision(int hash, String serviceName, String operationName, int rule) {
+      this.hash = hash;
+      this.serviceName = serviceName;
+      this.operationName = operationName;
+      this.rule = rule;
+    }
+
+    boolean matches(int hash, String serviceName, CharSequence operationName) {
+      return this.hash == hash
+          && sameName(this.serviceName, serviceName)
+          && sameName(this.operationName, operationName);
+    }
+
+    private static boolean sameName(String name, CharSequence other) {
+      return null == name ? null == other : null != other && name.contentEquals(other);
+    }
+  }
+}
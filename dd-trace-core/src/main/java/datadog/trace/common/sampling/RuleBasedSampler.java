@@ -18,6 +18,7 @@ public class RuleBasedSampler<T extends CoreSpan<T>> implements Sampler<T>, Prio
 
   private static final Logger log = LoggerFactory.getLogger(RuleBasedSampler.class);
   private final List<SamplingRule<T>> samplingRules;
+  private final CompiledSamplingRules<T> compiledRules;
   private final PrioritySampler<T> fallbackSampler;
   private final SimpleRateLimiter rateLimiter;
   private final long rateLimit;
@@ -30,6 +31,7 @@ public class RuleBasedSampler<T extends CoreSpan<T>> implements Sampler<T>, Prio
       final int rateLimit,
       final PrioritySampler<T> fallbackSampler) {
     this.samplingRules = samplingRules;
+    this.compiledRules = CompiledSamplingRules.compile(samplingRules);
     this.fallbackSampler = fallbackSampler;
     rateLimiter = new SimpleRateLimiter(rateLimit);
 
@@ -87,14 +89,8 @@ public class RuleBasedSampler<T extends CoreSpan<T>> implements Sampler<T>, Prio
 
   @Override
   public void setSamplingPriority(final T span) {
-    SamplingRule<T> matchedRule = null;
-
-    for (final SamplingRule<T> samplingRule : samplingRules) {
-      if (samplingRule.matches(span)) {
-        matchedRule = samplingRule;
-        break;
-      }
-    }
+    final SamplingRule<T> matchedRule =
+        null != compiledRules ? compiledRules.match(span) : firstMatchingRule(span);
 
     if (matchedRule == null) {
       fallbackSampler.setSamplingPriority(span);
@@ -123,4 +119,13 @@ public class RuleBasedSampler<T extends CoreSpan<T>> implements Sampler<T>, Prio
       }
     }
   }
+
+  private SamplingRule<T> firstMatchingRule(final T span) {
+    for (final SamplingRule<T> samplingRule : samplingRules) {
+      if (samplingRule.matches(span)) {
+        return samplingRule;
+      }
+    }
+    return null;
+  }
 }
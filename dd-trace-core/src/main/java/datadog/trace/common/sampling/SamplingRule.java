@@ -41,6 +41,10 @@ public abstract class SamplingRule<T extends CoreSpan<T>> {
       this.pattern = Pattern.compile(regex);
     }
 
+    public String getRegex() {
+      return pattern.pattern();
+    }
+
     @Override
     public boolean matches(final T span) {
       final CharSequence relevantString = getRelevantString(span);
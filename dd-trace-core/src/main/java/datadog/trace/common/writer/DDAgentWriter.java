@@ -14,6 +14,7 @@ import datadog.trace.api.StatsDClient;
 import datadog.trace.common.writer.ddagent.DDAgentApi;
 import datadog.trace.common.writer.ddagent.DDAgentResponseListener;
 import datadog.trace.common.writer.ddagent.PayloadDispatcher;
+import datadog.trace.common.writer.ddagent.PayloadSpillBuffer;
 import datadog.trace.common.writer.ddagent.Prioritization;
 import datadog.trace.common.writer.ddagent.TraceProcessingWorker;
 import datadog.trace.core.DDSpan;
@@ -53,6 +54,7 @@ public class DDAgentWriter implements Writer {
   private final TraceProcessingWorker traceProcessingWorker;
   private final PayloadDispatcher dispatcher;
   private final DDAgentFeaturesDiscovery discovery;
+  private final PayloadSpillBuffer spillBuffer;
   private final boolean alwaysFlush;
 
   private volatile boolean closed;
@@ -72,6 +74,11 @@ public class DDAgentWriter implements Writer {
     boolean traceAgentV05Enabled = Config.get().isTraceAgentV05Enabled();
     boolean metricsReportingEnabled = Config.get().isTracerMetricsEnabled();
     boolean alwaysFlush = false;
+    int serializationShards = Config.get().getTraceSerializationShards();
+    String spillDirectory = Config.get().getTraceSpillDirectory();
+    int spillMaxSize = Config.get().getTraceSpillMaxSize();
+    String compression = Config.get().getTraceAgentCompression();
+    boolean adaptiveBatching = Config.get().isTraceAdaptiveBatchingEnabled();
 
     private DDAgentApi agentApi;
     private Prioritization prioritization;
@@ -152,6 +159,31 @@ public class DDAgentWriter implements Writer {
       return this;
     }
 
+    public DDAgentWriterBuilder serializationShards(int serializationShards) {
+      this.serializationShards = serializationShards;
+      return this;
+    }
+
+    public DDAgentWriterBuilder spillDirectory(String spillDirectory) {
+      this.spillDirectory = spillDirectory;
+      return this;
+    }
+
+    public DDAgentWriterBuilder spillMaxSize(int spillMaxSize) {
+      this.spillMaxSize = spillMaxSize;
+      return this;
+    }
+
+    public DDAgentWriterBuilder compression(String compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    public DDAgentWriterBuilder adaptiveBatching(boolean adaptiveBatching) {
+      this.adaptiveBatching = adaptiveBatching;
+      return this;
+    }
+
     public DDAgentWriter build() {
       return new DDAgentWriter(
           agentApi,
@@ -168,7 +200,12 @@ public class DDAgentWriter implements Writer {
           traceAgentV05Enabled,
           metricsReportingEnabled,
           featureDiscovery,
-          alwaysFlush);
+          alwaysFlush,
+          serializationShards,
+          spillDirectory,
+          spillMaxSize,
+          compression,
+          adaptiveBatching);
     }
   }
 
@@ -187,7 +224,12 @@ public class DDAgentWriter implements Writer {
       final boolean traceAgentV05Enabled,
       boolean metricsReportingEnabled,
       DDAgentFeaturesDiscovery featureDiscovery,
-      final boolean alwaysFlush) {
+      final boolean alwaysFlush,
+      final int serializationShards,
+      final String spillDirectory,
+      final int spillMaxSize,
+      final String compression,
+      final boolean adaptiveBatching) {
     HttpUrl agentUrl = HttpUrl.get("http://" + agentHost + ":" + traceAgentPort);
     OkHttpClient client =
         null == featureDiscovery || null == agentApi
@@ -199,19 +241,42 @@ public class DDAgentWriter implements Writer {
               client, monitoring, agentUrl, traceAgentV05Enabled, metricsReportingEnabled);
     }
     if (null == agentApi) {
-      api = new DDAgentApi(client, agentUrl, featureDiscovery, monitoring, metricsReportingEnabled);
+      api =
+          new DDAgentApi(
+              client,
+              agentUrl,
+              featureDiscovery,
+              monitoring,
+              metricsReportingEnabled,
+              isGzipCompression(compression));
     } else {
       api = agentApi;
     }
     discovery = featureDiscovery;
     this.healthMetrics = healthMetrics;
-    this.dispatcher = new PayloadDispatcher(featureDiscovery, api, healthMetrics, monitoring);
+    this.spillBuffer = PayloadSpillBuffer.create(spillDirectory, spillMaxSize);
+    // each serializing shard owns a dispatcher, and with it a mapper and a buffer
+    // drops are counted once for all shards, and reported by whichever shard sends next
+    PayloadDispatcher.DroppedCounts droppedCounts = new PayloadDispatcher.DroppedCounts();
+    PayloadDispatcher[] dispatchers = new PayloadDispatcher[Math.max(1, serializationShards)];
+    for (int i = 0; i < dispatchers.length; ++i) {
+      dispatchers[i] =
+          new PayloadDispatcher(
+              featureDiscovery,
+              api,
+              healthMetrics,
+              monitoring,
+              spillBuffer,
+              adaptiveBatching,
+              droppedCounts);
+    }
+    this.dispatcher = dispatchers[0];
     this.alwaysFlush = alwaysFlush;
     this.traceProcessingWorker =
         new TraceProcessingWorker(
             traceBufferSize,
             healthMetrics,
-            dispatcher,
+            dispatchers,
             featureDiscovery,
             null == prioritization ? FAST_LANE : prioritization,
             flushFrequencySeconds,
@@ -229,6 +294,7 @@ public class DDAgentWriter implements Writer {
     this.healthMetrics = healthMetrics;
     this.traceProcessingWorker = worker;
     this.dispatcher = new PayloadDispatcher(discovery, api, healthMetrics, monitoring);
+    this.spillBuffer = null;
     this.alwaysFlush = false;
   }
 
@@ -243,6 +309,7 @@ public class DDAgentWriter implements Writer {
     this.healthMetrics = healthMetrics;
     this.traceProcessingWorker = worker;
     this.dispatcher = dispatcher;
+    this.spillBuffer = null;
     this.alwaysFlush = false;
   }
 
@@ -306,6 +373,11 @@ public class DDAgentWriter implements Writer {
     return api;
   }
 
+  /** @see TraceProcessingWorker#disableTagRecycling() */
+  void disableTagRecycling() {
+    traceProcessingWorker.disableTagRecycling();
+  }
+
   @Override
   public void start() {
     if (!closed) {
@@ -320,6 +392,9 @@ public class DDAgentWriter implements Writer {
     final boolean flushed = flush();
     closed = true;
     traceProcessingWorker.close();
+    if (null != spillBuffer) {
+      spillBuffer.close();
+    }
     healthMetrics.close();
     healthMetrics.onShutdown(flushed);
   }
@@ -328,4 +403,16 @@ public class DDAgentWriter implements Writer {
   public void incrementDropCounts(int spanCount) {
     dispatcher.onDroppedTrace(spanCount);
   }
+
+  private static boolean isGzipCompression(String compression) {
+    if (null == compression || "none".equalsIgnoreCase(compression)) {
+      return false;
+    }
+    if ("gzip".equalsIgnoreCase(compression)) {
+      return true;
+    }
+    log.warn(
+        "Unsupported trace payload compression {}, payloads will not be compressed", compression);
+    return false;
+  }
 }
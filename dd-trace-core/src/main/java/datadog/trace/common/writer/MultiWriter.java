@@ -33,10 +33,24 @@ public class MultiWriter implements Writer {
           WriterFactory.createWriter(config, commObjects, sampler, statsDClient, writerConfig);
       i++;
     }
+    disableTagRecycling(writers);
   }
 
   public MultiWriter(Writer[] writers) {
     this.writers = writers.clone();
+    disableTagRecycling(this.writers);
+  }
+
+  /**
+   * Every writer receives the same spans, so no writer may recycle their tags once it has
+   * serialized them: another writer may not have serialized them yet.
+   */
+  private static void disableTagRecycling(Writer[] writers) {
+    for (Writer writer : writers) {
+      if (writer instanceof DDAgentWriter) {
+        ((DDAgentWriter) writer).disableTagRecycling();
+      }
+    }
   }
 
   @Override
@@ -0,0 +1,56 @@
+package datadog.trace.common.writer.ddagent;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Chooses how many bytes of serialized traces a dispatcher batches before sending them.
+ *
+ * <p>The target starts small, so traces reach the agent quickly while it keeps up. It doubles when
+ * the smoothed response time of the agent is slow, or when the serializing queue is more than half
+ * full, which cuts the number of requests when the agent or the network is the bottleneck. It
+ * halves again once responses are fast and the queue has drained. The target never exceeds the
+ * size of the dispatcher's buffer, which is flushed whenever it is full anyway.
+ *
+ * <p>Only used by the serializing thread which owns the dispatcher, so it is not thread safe.
+ */
+final class AdaptiveBatchSize {
+
+  static final int MIN_BATCH_SIZE = 64 << 10;
+
+  private static final long SLOW_RESPONSE_NANOS = MILLISECONDS.toNanos(100);
+  private static final long FAST_RESPONSE_NANOS = MILLISECONDS.toNanos(10);
+
+  private final int minSize;
+  private final int maxSize;
+
+  private int targetSize;
+  private long responseTimeNanos;
+  private boolean backlogged;
+
+  AdaptiveBatchSize(int maxSize) {
+    this.maxSize = maxSize;
+    this.minSize = Math.min(MIN_BATCH_SIZE, maxSize);
+    this.targetSize = minSize;
+  }
+
+  int targetSize() {
+    return targetSize;
+  }
+
+  void onQueueDepth(int depth, int capacity) {
+    backlogged = depth > capacity / 2;
+  }
+
+  void onResponse(long responseTimeNanos) {
+    // exponentially weighted moving average, weighting the latest response by 1/4
+    this.responseTimeNanos =
+        0 == this.responseTimeNanos
+            ? responseTimeNanos
+            : this.responseTimeNanos + ((responseTimeNanos - this.responseTimeNanos) >> 2);
+    if (backlogged || this.responseTimeNanos > SLOW_RESPONSE_NANOS) {
+      targetSize = (int) Math.min(maxSize, (long) targetSize << 1);
+    } else if (this.responseTimeNanos < FAST_RESPONSE_NANOS) {
+      targetSize = Math.max(minSize, targetSize >> 1);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package datadog.trace.common.writer.ddagent;
 
+import static datadog.communication.http.OkHttpUtils.gzippedRequestBodyOf;
 import static datadog.communication.http.OkHttpUtils.prepareRequest;
 
 import com.squareup.moshi.JsonAdapter;
@@ -12,14 +13,15 @@ import datadog.communication.monitor.Recording;
 import datadog.trace.core.DDTraceCoreInfo;
 import datadog.trace.relocate.api.IOLogger;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,14 +40,17 @@ public class DDAgentApi {
   private static final String DATADOG_DROPPED_TRACE_COUNT = "Datadog-Client-Dropped-P0-Traces";
   private static final String DATADOG_DROPPED_SPAN_COUNT = "Datadog-Client-Dropped-P0-Spans";
   private static final String DATADOG_AGENT_STATE = "Datadog-Agent-State";
+  private static final String CONTENT_ENCODING = "Content-Encoding";
 
-  private final List<DDAgentResponseListener> responseListeners = new ArrayList<>();
+  private final CopyOnWriteArrayList<DDAgentResponseListener> responseListeners =
+      new CopyOnWriteArrayList<>();
   private final boolean metricsEnabled;
+  private final boolean gzipEnabled;
 
-  private long totalTraces = 0;
-  private long receivedTraces = 0;
-  private long sentTraces = 0;
-  private long failedTraces = 0;
+  private final AtomicLong totalTraces = new AtomicLong();
+  private final AtomicLong receivedTraces = new AtomicLong();
+  private final AtomicLong sentTraces = new AtomicLong();
+  private final AtomicLong failedTraces = new AtomicLong();
 
   private final Recording sendPayloadTimer;
   private final Counter agentErrorCounter;
@@ -72,12 +77,27 @@ public class DDAgentApi {
       DDAgentFeaturesDiscovery featuresDiscovery,
       Monitoring monitoring,
       boolean metricsEnabled) {
+    this(client, agentUrl, featuresDiscovery, monitoring, metricsEnabled, false);
+  }
+
+  /**
+   * @param gzipEnabled whether to compress payloads, which trades CPU on the application host for
+   *     bandwidth when the agent runs on another host
+   */
+  public DDAgentApi(
+      OkHttpClient client,
+      HttpUrl agentUrl,
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      Monitoring monitoring,
+      boolean metricsEnabled,
+      boolean gzipEnabled) {
     this.featuresDiscovery = featuresDiscovery;
     this.agentUrl = agentUrl;
     this.httpClient = client;
     this.sendPayloadTimer = monitoring.newTimer("trace.agent.send.time");
     this.agentErrorCounter = monitoring.newCounter("trace.agent.error.counter");
     this.metricsEnabled = metricsEnabled;
+    this.gzipEnabled = gzipEnabled;
 
     this.headers = new HashMap<>();
     this.headers.put(DATADOG_CLIENT_COMPUTED_TOP_LEVEL, "true");
@@ -85,11 +105,10 @@ public class DDAgentApi {
   }
 
   public void addResponseListener(final DDAgentResponseListener listener) {
-    if (!responseListeners.contains(listener)) {
-      responseListeners.add(listener);
-    }
+    responseListeners.addIfAbsent(listener);
   }
 
+  // safe to call concurrently: serializing shards send their payloads in parallel
   Response sendSerializedTraces(final Payload payload) {
     final int sizeInBytes = payload.sizeInBytes();
     String tracesEndpoint = featuresDiscovery.getTraceEndpoint();
@@ -105,18 +124,22 @@ public class DDAgentApi {
 
     HttpUrl tracesUrl = agentUrl.resolve(tracesEndpoint);
     try {
-      final Request request =
+      final Request.Builder builder =
           prepareRequest(tracesUrl, headers)
               .addHeader(X_DATADOG_TRACE_COUNT, Integer.toString(payload.traceCount()))
               .addHeader(DATADOG_DROPPED_TRACE_COUNT, Long.toString(payload.droppedTraces()))
               .addHeader(DATADOG_DROPPED_SPAN_COUNT, Long.toString(payload.droppedSpans()))
               .addHeader(
                   DATADOG_CLIENT_COMPUTED_STATS,
-                  metricsEnabled && featuresDiscovery.supportsMetrics() ? "true" : "")
-              .put(payload.toRequest())
-              .build();
-      this.totalTraces += payload.traceCount();
-      this.receivedTraces += payload.traceCount();
+                  metricsEnabled && featuresDiscovery.supportsMetrics() ? "true" : "");
+      RequestBody body = payload.toRequest();
+      if (gzipEnabled) {
+        builder.addHeader(CONTENT_ENCODING, "gzip");
+        body = gzippedRequestBodyOf(body);
+      }
+      final Request request = builder.put(body).build();
+      this.totalTraces.addAndGet(payload.traceCount());
+      this.receivedTraces.addAndGet(payload.traceCount());
       try (final Recording recording = sendPayloadTimer.start();
           final okhttp3.Response response = httpClient.newCall(request).execute()) {
         handleAgentChange(response.header(DATADOG_AGENT_STATE));
@@ -158,7 +181,7 @@ public class DDAgentApi {
 
   private void countAndLogSuccessfulSend(final int traceCount, final int sizeInBytes) {
     // count the successful traces
-    this.sentTraces += traceCount;
+    this.sentTraces.addAndGet(traceCount);
 
     ioLogger.success(createSendLogMessage(traceCount, sizeInBytes, "Success"));
   }
@@ -169,7 +192,7 @@ public class DDAgentApi {
       final okhttp3.Response response,
       final IOException outer) {
     // count the failed traces
-    this.failedTraces += traceCount;
+    this.failedTraces.addAndGet(traceCount);
     // these are used to catch and log if there is a failure in debug logging the response body
     String agentError = getResponseBody(response);
     String sendErrorString =
@@ -206,13 +229,13 @@ public class DDAgentApi {
         + ")"
         + " traces to the DD agent."
         + " Total: "
-        + this.totalTraces
+        + this.totalTraces.get()
         + ", Received: "
-        + this.receivedTraces
+        + this.receivedTraces.get()
         + ", Sent: "
-        + this.sentTraces
+        + this.sentTraces.get()
         + ", Failed: "
-        + this.failedTraces
+        + this.failedTraces.get()
         + ".";
   }
 
@@ -0,0 +1,47 @@
+package datadog.trace.common.writer.ddagent;
+
+import datadog.communication.serialization.Writable;
+import datadog.trace.core.util.TagMap;
+import java.util.Map;
+
+/**
+ * Numeric tags are serialized as metrics. When the tags are held in a {@link TagMap} they are
+ * counted without inspecting every value, and values stored unboxed are written without boxing.
+ */
+final class NumericTags {
+
+  private NumericTags() {}
+
+  static int count(Map<String, Object> tags) {
+    if (tags instanceof TagMap) {
+      return ((TagMap) tags).numericSize();
+    }
+    int count = 0;
+    for (Map.Entry<String, Object> tag : tags.entrySet()) {
+      if (tag.getValue() instanceof Number) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  static boolean isNumber(Map.Entry<String, Object> tag) {
+    return tag instanceof TagMap.Entry
+        ? ((TagMap.Entry) tag).isNumber()
+        : tag.getValue() instanceof Number;
+  }
+
+  static void writeValue(Writable writable, Map.Entry<String, Object> tag) {
+    if (tag instanceof TagMap.Entry) {
+      TagMap.Entry entry = (TagMap.Entry) tag;
+      if (entry.isLong()) {
+        writable.writeLong(entry.longValue());
+        return;
+      } else if (entry.isDouble()) {
+        writable.writeDouble(entry.doubleValue());
+        return;
+      }
+    }
+    writable.writeObject(tag.getValue(), null);
+  }
+}
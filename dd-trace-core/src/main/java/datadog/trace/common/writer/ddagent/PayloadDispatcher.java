@@ -20,40 +20,121 @@ public class PayloadDispatcher implements ByteBufferConsumer {
 
   private static final Logger log = LoggerFactory.getLogger(PayloadDispatcher.class);
 
+  /**
+   * Replay runs on the serializing thread after a successful send, so only a few payloads are
+   * replayed at a time to avoid stalling serialization while a large backlog drains.
+   */
+  static final int MAX_REPLAYED_PAYLOADS = 4;
+
+  /** Spilled payloads which fail to be replayed this many times are dropped */
+  static final int MAX_REPLAY_ATTEMPTS = 5;
+
   private final DDAgentApi api;
   private final DDAgentFeaturesDiscovery featuresDiscovery;
   private final HealthMetrics healthMetrics;
   private final Monitoring monitoring;
+  private final PayloadSpillBuffer spillBuffer;
+  private final boolean adaptiveBatching;
 
   private Recording batchTimer;
   private TraceMapper traceMapper;
+  private FlushingBuffer flushingBuffer;
   private WritableFormatter packer;
+  private AdaptiveBatchSize batchSize;
+  // only replay spilled payloads once the agent accepts payloads again
+  private boolean lastSendSucceeded = true;
+
+  private final DroppedCounts droppedCounts;
 
-  private final FixedSizeStripedLongCounter droppedSpanCount =
-      CountersFactory.createFixedSizeStripedCounter(8);
-  private final FixedSizeStripedLongCounter droppedTraceCount =
-      CountersFactory.createFixedSizeStripedCounter(8);
+  /**
+   * Counts of traces dropped before serialization. Serializing shards share one instance, so drops
+   * are reported by whichever shard sends the next payload.
+   */
+  public static final class DroppedCounts {
+    final FixedSizeStripedLongCounter droppedSpanCount =
+        CountersFactory.createFixedSizeStripedCounter(8);
+    final FixedSizeStripedLongCounter droppedTraceCount =
+        CountersFactory.createFixedSizeStripedCounter(8);
+  }
 
   public PayloadDispatcher(
       DDAgentFeaturesDiscovery featuresDiscovery,
       DDAgentApi api,
       HealthMetrics healthMetrics,
       Monitoring monitoring) {
+    this(featuresDiscovery, api, healthMetrics, monitoring, null);
+  }
+
+  /**
+   * @param spillBuffer where to keep payloads which could not be sent, so they can be replayed
+   *     when the agent is available again, may be null
+   */
+  public PayloadDispatcher(
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      DDAgentApi api,
+      HealthMetrics healthMetrics,
+      Monitoring monitoring,
+      PayloadSpillBuffer spillBuffer) {
+    this(featuresDiscovery, api, healthMetrics, monitoring, spillBuffer, false);
+  }
+
+  /**
+   * @param adaptiveBatching whether to size payloads according to the agent's response time and
+   *     the serializing queue's depth, rather than only sending them when the buffer is full or at
+   *     a heartbeat
+   */
+  public PayloadDispatcher(
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      DDAgentApi api,
+      HealthMetrics healthMetrics,
+      Monitoring monitoring,
+      PayloadSpillBuffer spillBuffer,
+      boolean adaptiveBatching) {
+    this(
+        featuresDiscovery,
+        api,
+        healthMetrics,
+        monitoring,
+        spillBuffer,
+        adaptiveBatching,
+        new DroppedCounts());
+  }
+
+  /** @param droppedCounts where drops are counted until they are reported with a payload */
+  public PayloadDispatcher(
+      DDAgentFeaturesDiscovery featuresDiscovery,
+      DDAgentApi api,
+      HealthMetrics healthMetrics,
+      Monitoring monitoring,
+      PayloadSpillBuffer spillBuffer,
+      boolean adaptiveBatching,
+      DroppedCounts droppedCounts) {
     this.featuresDiscovery = featuresDiscovery;
     this.api = api;
     this.healthMetrics = healthMetrics;
     this.monitoring = monitoring;
+    this.spillBuffer = spillBuffer;
+    this.adaptiveBatching = adaptiveBatching;
+    this.droppedCounts = droppedCounts;
   }
 
   void flush() {
     if (null != packer) {
       packer.flush();
     }
+    // heartbeats keep replaying spilled payloads while the agent accepts them
+    replaySpilledPayloads();
   }
 
   public void onDroppedTrace(int spanCount) {
-    droppedSpanCount.inc(spanCount);
-    droppedTraceCount.inc();
+    droppedCounts.droppedSpanCount.inc(spanCount);
+    droppedCounts.droppedTraceCount.inc();
+  }
+
+  void onQueueDepth(int depth, int capacity) {
+    if (null != batchSize) {
+      batchSize.onQueueDepth(depth, capacity);
+    }
   }
 
   void addTrace(List<? extends CoreSpan<?>> trace) {
@@ -64,6 +145,8 @@ public class PayloadDispatcher implements ByteBufferConsumer {
     // however, we can't block the application threads from here.
     if (null == traceMapper || !packer.format(trace, traceMapper)) {
       healthMetrics.onFailedPublish(trace.get(0).samplingPriority());
+    } else if (null != batchSize && flushingBuffer.size() >= batchSize.targetSize()) {
+      packer.flush();
     }
   }
 
@@ -80,7 +163,11 @@ public class PayloadDispatcher implements ByteBufferConsumer {
         this.batchTimer =
             monitoring.newTimer(
                 "tracer.trace.buffer.fill.time", "endpoint:" + traceMapper.endpoint());
-        this.packer = new MsgPackWriter(new FlushingBuffer(traceMapper.messageBufferSize(), this));
+        this.flushingBuffer = new FlushingBuffer(traceMapper.messageBufferSize(), this);
+        this.packer = new MsgPackWriter(flushingBuffer);
+        if (adaptiveBatching) {
+          this.batchSize = new AdaptiveBatchSize(traceMapper.messageBufferSize());
+        }
         batchTimer.start();
       }
     }
@@ -90,8 +177,8 @@ public class PayloadDispatcher implements ByteBufferConsumer {
     return traceMapper
         .newPayload()
         .withBody(messageCount, buffer)
-        .withDroppedSpans(droppedSpanCount.getAndReset())
-        .withDroppedTraces(droppedTraceCount.getAndReset());
+        .withDroppedSpans(droppedCounts.droppedSpanCount.getAndReset())
+        .withDroppedTraces(droppedCounts.droppedTraceCount.getAndReset());
   }
 
   @Override
@@ -103,20 +190,100 @@ public class PayloadDispatcher implements ByteBufferConsumer {
       Payload payload = newPayload(messageCount, buffer);
       final int sizeInBytes = payload.sizeInBytes();
       healthMetrics.onSerialize(sizeInBytes);
+      long start = System.nanoTime();
       DDAgentApi.Response response = api.sendSerializedTraces(payload);
+      if (null != batchSize) {
+        batchSize.onResponse(System.nanoTime() - start);
+      }
       traceMapper.reset();
+      lastSendSucceeded = response.success();
       if (response.success()) {
         if (log.isDebugEnabled()) {
           log.debug("Successfully sent {} traces to the API", messageCount);
         }
         healthMetrics.onSend(messageCount, sizeInBytes, response);
+        replaySpilledPayloads();
       } else {
-        if (log.isDebugEnabled()) {
+        healthMetrics.onFailedSend(messageCount, sizeInBytes, response);
+        if (null != spillBuffer
+            && isTransientFailure(response)
+            && spillBuffer.spill(payload, traceMapper.endpoint())) {
+          if (log.isDebugEnabled()) {
+            log.debug(
+                "Failed to send {} traces of size {} bytes to the API, spilled them to disk",
+                messageCount,
+                sizeInBytes);
+          }
+        } else if (log.isDebugEnabled()) {
           log.debug(
               "Failed to send {} traces of size {} bytes to the API", messageCount, sizeInBytes);
         }
-        healthMetrics.onFailedSend(messageCount, sizeInBytes, response);
       }
     }
   }
+
+  /**
+   * @return true if the agent may accept the payload later: it could not be reached, timed out, or
+   *     failed to process the payload, rather than rejecting it
+   */
+  static boolean isTransientFailure(DDAgentApi.Response response) {
+    Integer status = response.status();
+    return null == status || status >= 500 || status == 408 || status == 429;
+  }
+
+  /**
+   * Replays up to {@link #MAX_REPLAYED_PAYLOADS} spilled payloads in order, stopping at the first
+   * one the agent does not accept. Does nothing if another dispatcher sharing the buffer is already
+   * replaying, or if the agent did not accept this dispatcher's last payload. Payloads which the
+   * agent rejects, or which fail {@link #MAX_REPLAY_ATTEMPTS} times, are dropped so that they do
+   * not hold back the rest of the buffer.
+   */
+  private void replaySpilledPayloads() {
+    if (null == spillBuffer
+        || !lastSendSucceeded
+        || null == traceMapper
+        || spillBuffer.isEmpty()
+        || !spillBuffer.tryStartReplay()) {
+      return;
+    }
+    try {
+      String endpoint = traceMapper.endpoint();
+      PayloadSpillBuffer.SpilledPayload payload;
+      int replayed = 0;
+      while (replayed < MAX_REPLAYED_PAYLOADS
+          && null != featuresDiscovery.getTraceEndpoint()
+          && null != (payload = spillBuffer.peek())) {
+        if (!endpoint.equals(payload.endpoint())) {
+          // the agent was downgraded or upgraded while the payload was spilled
+          log.debug("Dropping spilled payload serialized for endpoint {}", payload.endpoint());
+          spillBuffer.remove();
+          continue;
+        }
+        int traceCount = payload.traceCount();
+        int sizeInBytes = payload.sizeInBytes();
+        DDAgentApi.Response response = api.sendSerializedTraces(payload);
+        if (!response.success()) {
+          lastSendSucceeded = false;
+          if (!isTransientFailure(response)
+              || spillBuffer.onReplayFailed() >= MAX_REPLAY_ATTEMPTS) {
+            if (log.isDebugEnabled()) {
+              log.debug(
+                  "Dropping spilled payload of {} traces after failing to replay it", traceCount);
+            }
+            spillBuffer.remove();
+            healthMetrics.onFailedSend(traceCount, sizeInBytes, response);
+          }
+          return;
+        }
+        spillBuffer.remove();
+        ++replayed;
+        if (log.isDebugEnabled()) {
+          log.debug("Successfully replayed {} spilled traces to the API", traceCount);
+        }
+        healthMetrics.onSend(traceCount, sizeInBytes, response);
+      }
+    } finally {
+      spillBuffer.endReplay();
+    }
+  }
 }
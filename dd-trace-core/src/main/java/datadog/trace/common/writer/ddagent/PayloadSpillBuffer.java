@@ -0,0 +1,317 @@
+package datadog.trace.common.writer.ddagent;
+
+import static datadog.communication.http.OkHttpUtils.msgpackRequestBodyOf;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.RequestBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded ring of serialized payloads stored in a memory-mapped file, used to keep payloads which
+ * could not be sent to the agent until it is available again.
+ *
+ * <p>Payloads are copied into the file as they would be sent on the wire, so they can be replayed
+ * without being deserialized, and without holding them on heap. The index of stored payloads is
+ * kept in memory, and each process spills to a file of its own which is deleted on exit, so
+ * processes sharing the spill directory do not overwrite each other's payloads, and payloads
+ * spilled by a previous process are not replayed.
+ *
+ * <p>Payloads are replayed in the order they were spilled. When the ring is full, new payloads are
+ * rejected rather than evicting older ones.
+ */
+public final class PayloadSpillBuffer implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(PayloadSpillBuffer.class);
+
+  static final String FILE_PREFIX = "dd-trace-spill-";
+  static final String FILE_SUFFIX = ".dat";
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final ArrayDeque<Record> records = new ArrayDeque<>();
+  private final RecordChannel recordChannel = new RecordChannel();
+  private final AtomicBoolean replaying = new AtomicBoolean();
+
+  // offset of the oldest record, and offset after the newest record
+  private int head;
+  private int tail;
+  private long spilledPayloads;
+  private long rejectedPayloads;
+  private boolean closed;
+
+  /**
+   * @return a spill buffer in the given directory, or null if the directory is not configured or
+   *     the file cannot be mapped
+   */
+  public static PayloadSpillBuffer create(String directory, long maxSizeBytes) {
+    if (null == directory || maxSizeBytes <= 0) {
+      return null;
+    }
+    try {
+      File dir = new File(directory);
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        log.warn("Unable to create trace spill directory {}", directory);
+        return null;
+      }
+      File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, dir);
+      file.deleteOnExit();
+      return new PayloadSpillBuffer(file, (int) Math.min(maxSizeBytes, Integer.MAX_VALUE));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Unable to map trace spill file in {}", directory, e);
+      return null;
+    }
+  }
+
+  PayloadSpillBuffer(File file, int capacity) throws IOException {
+    this.capacity = capacity;
+    this.channel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  /**
+   * Copies the payload to the end of the ring.
+   *
+   * @param endpoint the endpoint the payload was serialized for
+   * @return false if there is not enough space left for the payload
+   */
+  synchronized boolean spill(Payload payload, String endpoint) {
+    if (closed) {
+      return false;
+    }
+    int size = payload.sizeInBytes();
+    int offset = allocate(size);
+    if (offset < 0) {
+      ++rejectedPayloads;
+      return false;
+    }
+    ByteBuffer target = buffer.duplicate();
+    target.position(offset);
+    target.limit(offset + size);
+    try {
+      payload.writeTo(recordChannel.into(target));
+    } catch (IOException e) {
+      log.debug("Failed to spill payload", e);
+      ++rejectedPayloads;
+      return false;
+    }
+    records.offer(new Record(offset, size, payload.traceCount(), endpoint));
+    tail = offset + size;
+    ++spilledPayloads;
+    return true;
+  }
+
+  /**
+   * @return the oldest payload without removing it, or null if there is none. The payload reads
+   *     directly from the mapped file and must be sent before {@link #remove()} is called.
+   */
+  synchronized SpilledPayload peek() {
+    Record record = closed ? null : records.peek();
+    if (null == record) {
+      return null;
+    }
+    ByteBuffer body = buffer.duplicate();
+    body.position(record.offset);
+    body.limit(record.offset + record.size);
+    return new SpilledPayload(record.endpoint, record.traceCount, body.slice());
+  }
+
+  /** Removes the oldest payload, releasing its space */
+  synchronized void remove() {
+    Record record = records.poll();
+    if (null != record) {
+      if (records.isEmpty()) {
+        head = tail = 0;
+      } else {
+        head = record.offset + record.size;
+      }
+    }
+  }
+
+  /** @return how many times the oldest payload failed to be replayed, including this time */
+  synchronized int onReplayFailed() {
+    Record record = records.peek();
+    return null == record ? 0 : ++record.failedReplays;
+  }
+
+  /**
+   * Payloads are replayed by peeking, sending and then removing them, so only one of the
+   * dispatchers sharing the buffer may replay at a time, otherwise the same payload could be sent
+   * twice and the next one removed without being sent.
+   *
+   * @return true if the caller may replay payloads, in which case it must call {@link
+   *     #endReplay()} once done
+   */
+  boolean tryStartReplay() {
+    return replaying.compareAndSet(false, true);
+  }
+
+  void endReplay() {
+    replaying.set(false);
+  }
+
+  synchronized boolean isEmpty() {
+    return records.isEmpty();
+  }
+
+  synchronized int size() {
+    return records.size();
+  }
+
+  synchronized long getSpilledPayloads() {
+    return spilledPayloads;
+  }
+
+  synchronized long getRejectedPayloads() {
+    return rejectedPayloads;
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      records.clear();
+    }
+    // a payload being replayed still reads from the mapping, leave it to the GC in that case
+    if (tryStartReplay()) {
+      unmap(buffer);
+    }
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  /**
+   * Releases the mapping now rather than when the buffer is garbage collected, which also lets the
+   * file be deleted on platforms which do not delete mapped files. The buffer must not be used
+   * afterwards.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      try {
+        // Java 9+
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      } catch (NoSuchMethodException e) {
+        // Java 8
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (null != cleaner) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      }
+    } catch (Throwable e) {
+      log.debug("Unable to unmap trace spill file", e);
+    }
+  }
+
+  /** @return the offset to write a record of the given size at, or -1 if the ring is full */
+  private int allocate(int size) {
+    if (records.isEmpty()) {
+      return size <= capacity ? 0 : -1;
+    }
+    if (tail > head) {
+      if (size <= capacity - tail) {
+        return tail;
+      }
+      // wrap around, the end of the file is left unused until the ring catches up
+      return size <= head ? 0 : -1;
+    }
+    // tail <= head: the free space lies between them, and tail == head means the ring is full
+    return size <= head - tail ? tail : -1;
+  }
+
+  private static final class Record {
+    final int offset;
+    final int size;
+    final int traceCount;
+    final String endpoint;
+    int failedReplays;
+
+    Record(int offset, int size, int traceCount, String endpoint) {
+      this.offset = offset;
+      this.size = size;
+      this.traceCount = traceCount;
+      this.endpoint = endpoint;
+    }
+  }
+
+  private static final class RecordChannel implements WritableByteChannel {
+    private ByteBuffer target;
+
+    RecordChannel into(ByteBuffer target) {
+      this.target = target;
+      return this;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      int written = src.remaining();
+      target.put(src);
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** A payload replayed from the spill file, sent exactly as it was serialized */
+  static final class SpilledPayload extends Payload {
+
+    private final String endpoint;
+
+    SpilledPayload(String endpoint, int traceCount, ByteBuffer body) {
+      this.endpoint = endpoint;
+      withBody(traceCount, body);
+    }
+
+    String endpoint() {
+      return endpoint;
+    }
+
+    @Override
+    public int sizeInBytes() {
+      return body.remaining();
+    }
+
+    @Override
+    protected void writeTo(WritableByteChannel channel) throws IOException {
+      while (body.hasRemaining()) {
+        channel.write(body);
+      }
+    }
+
+    @Override
+    protected RequestBody toRequest() {
+      return msgpackRequestBodyOf(Collections.singletonList(body.duplicate()));
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package datadog.trace.common.writer.ddagent;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import datadog.communication.serialization.EncodingCache;
+import datadog.trace.api.DDTags;
+import datadog.trace.api.cache.DDCache;
+import datadog.trace.api.cache.DDCaches;
+import datadog.trace.bootstrap.instrumentation.api.InstrumentationTags;
+import datadog.trace.bootstrap.instrumentation.api.Tags;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shared cache of UTF-8 encoded tag keys, so that keys are not re-encoded for every span.
+ *
+ * <p>The keys most spans carry, from {@link Tags}, {@link DDTags} and {@link InstrumentationTags},
+ * are encoded up front; other keys go through a fixed size cache, which keeps memory bounded when
+ * tag keys have high cardinality.
+ */
+final class TagKeyEncodingCache implements EncodingCache {
+
+  static final TagKeyEncodingCache INSTANCE = new TagKeyEncodingCache(256);
+
+  private static final Function<String, byte[]> ENCODE =
+      new Function<String, byte[]>() {
+        @Override
+        public byte[] apply(String key) {
+          return key.getBytes(UTF_8);
+        }
+      };
+
+  // only keys, the holders also declare tag values such as Tags.SPAN_KIND_SERVER
+  private static final CharSequence[] WELL_KNOWN_KEYS = {
+    Tags.HTTP_URL,
+    Tags.HTTP_HOSTNAME,
+    Tags.HTTP_ROUTE,
+    Tags.HTTP_STATUS,
+    Tags.HTTP_METHOD,
+    Tags.HTTP_FORWARDED,
+    Tags.HTTP_FORWARDED_PROTO,
+    Tags.HTTP_FORWARDED_HOST,
+    Tags.HTTP_FORWARDED_IP,
+    Tags.HTTP_FORWARDED_PORT,
+    Tags.PEER_HOST_IPV4,
+    Tags.PEER_HOST_IPV6,
+    Tags.PEER_SERVICE,
+    Tags.PEER_HOSTNAME,
+    Tags.PEER_PORT,
+    Tags.SAMPLING_PRIORITY,
+    Tags.SPAN_KIND,
+    Tags.COMPONENT,
+    Tags.ERROR,
+    Tags.DB_TYPE,
+    Tags.DB_INSTANCE,
+    Tags.DB_USER,
+    Tags.DB_OPERATION,
+    Tags.DB_STATEMENT,
+    Tags.MESSAGE_BUS_DESTINATION,
+    Tags.DD_SERVICE,
+    Tags.DD_VERSION,
+    Tags.DD_ENV,
+    DDTags.SPAN_TYPE,
+    DDTags.SERVICE_NAME,
+    DDTags.RESOURCE_NAME,
+    DDTags.THREAD_NAME,
+    DDTags.THREAD_ID,
+    DDTags.DB_STATEMENT,
+    DDTags.HTTP_QUERY,
+    DDTags.HTTP_FRAGMENT,
+    DDTags.USER_NAME,
+    DDTags.ERROR_MSG,
+    DDTags.ERROR_TYPE,
+    DDTags.ERROR_STACK,
+    DDTags.ANALYTICS_SAMPLE_RATE,
+    DDTags.MANUAL_KEEP,
+    DDTags.MANUAL_DROP,
+    DDTags.RUNTIME_ID_TAG,
+    DDTags.LANGUAGE_TAG_KEY,
+    DDTags.ORIGIN_KEY,
+    InstrumentationTags.DD_MEASURED,
+    InstrumentationTags.DD_TOP_LEVEL,
+    InstrumentationTags.PARTITION,
+    InstrumentationTags.OFFSET,
+    InstrumentationTags.RECORD_QUEUE_TIME_MS,
+    InstrumentationTags.AWS_AGENT,
+    InstrumentationTags.AWS_SERVICE,
+    InstrumentationTags.STATUS_CODE,
+    InstrumentationTags.STATUS_DESCRIPTION,
+    InstrumentationTags.SERVLET_CONTEXT,
+    InstrumentationTags.SERVLET_PATH,
+    InstrumentationTags.SERVLET_DISPATCH,
+    InstrumentationTags.TIMEOUT,
+    InstrumentationTags.DB_REDIS_DBINDEX,
+    InstrumentationTags.AMQP_COMMAND,
+    InstrumentationTags.AMQP_EXCHANGE,
+    InstrumentationTags.AMQP_ROUTING_KEY,
+    InstrumentationTags.AMQP_QUEUE,
+    InstrumentationTags.EVENT,
+    InstrumentationTags.MESSAGE,
+    InstrumentationTags.HANDLER_TYPE,
+    InstrumentationTags.VIEW_NAME,
+    InstrumentationTags.VIEW_TYPE
+  };
+
+  private final Map<String, byte[]> wellKnownKeys;
+  private final DDCache<String, byte[]> keys;
+
+  TagKeyEncodingCache(int capacity) {
+    Map<String, byte[]> wellKnown = new HashMap<>(WELL_KNOWN_KEYS.length * 2);
+    for (CharSequence key : WELL_KNOWN_KEYS) {
+      String name = key.toString();
+      wellKnown.put(name, name.getBytes(UTF_8));
+    }
+    this.wellKnownKeys = wellKnown;
+    this.keys = DDCaches.newFixedSizeCache(capacity);
+  }
+
+  @Override
+  public byte[] encode(CharSequence s) {
+    String key = s.toString();
+    byte[] encoded = wellKnownKeys.get(key);
+    return null != encoded ? encoded : keys.computeIfAbsent(key, ENCODE);
+  }
+}
@@ -69,12 +69,9 @@ public final class TraceMapperV0_4 implements TraceMapper {
               + (metadata.measured() ? 1 : 0)
               + (metadata.topLevel() ? 1 : 0)
               + 1;
-      for (Map.Entry<String, Object> tag : metadata.getTags().entrySet()) {
-        if (tag.getValue() instanceof Number) {
-          ++metricsSize;
-          --metaSize;
-        }
-      }
+      int numericTags = NumericTags.count(metadata.getTags());
+      metricsSize += numericTags;
+      metaSize -= numericTags;
       writable.writeUTF8(METRICS);
       writable.startMap(metricsSize);
       if (writeSamplingPriority && metadata.hasSamplingPriority()) {
@@ -92,9 +89,9 @@ public final class TraceMapperV0_4 implements TraceMapper {
       writable.writeUTF8(THREAD_ID);
       writable.writeLong(metadata.getThreadId());
       for (Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
-        if (entry.getValue() instanceof Number) {
-          writable.writeString(entry.getKey(), null);
-          writable.writeObject(entry.getValue(), null);
+        if (NumericTags.isNumber(entry)) {
+          writable.writeString(entry.getKey(), TagKeyEncodingCache.INSTANCE);
+          NumericTags.writeValue(writable, entry);
         }
       }
 
@@ -104,7 +101,7 @@ public final class TraceMapperV0_4 implements TraceMapper {
       // since they will be accumulated into maps in the same order downstream,
       // we just need to be sure that the size is the same as the number of elements
       for (Map.Entry<String, String> entry : metadata.getBaggage().entrySet()) {
-        writable.writeString(entry.getKey(), null);
+        writable.writeString(entry.getKey(), TagKeyEncodingCache.INSTANCE);
         writable.writeString(entry.getValue(), null);
       }
       writable.writeUTF8(THREAD_NAME);
@@ -118,8 +115,8 @@ public final class TraceMapperV0_4 implements TraceMapper {
         writable.writeString(metadata.getOrigin(), null);
       }
       for (Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
-        if (!(entry.getValue() instanceof Number)) {
-          writable.writeString(entry.getKey(), null);
+        if (!NumericTags.isNumber(entry)) {
+          writable.writeString(entry.getKey(), TagKeyEncodingCache.INSTANCE);
           writable.writeObjectString(entry.getValue(), null);
         }
       }
@@ -210,7 +207,9 @@ public final class TraceMapperV0_4 implements TraceMapper {
 
     @Override
     protected RequestBody toRequest() {
-      return msgpackRequestBodyOf(Arrays.asList(msgpackArrayHeader(traceCount()), body));
+      // send a view of the body so the payload can still be spilled if sending fails
+      return msgpackRequestBodyOf(
+          Arrays.asList(msgpackArrayHeader(traceCount()), body.duplicate()));
     }
   }
 }
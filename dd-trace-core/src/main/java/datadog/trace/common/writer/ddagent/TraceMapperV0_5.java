@@ -164,13 +164,14 @@ public final class TraceMapperV0_5 implements TraceMapper {
     }
 
     private List<ByteBuffer> toList() {
+      // views of the dictionary and body, so the payload can still be spilled if sending fails
       return Arrays.asList(
           // msgpack array header with 2 elements (FIXARRAY | 2)
           ByteBuffer.allocate(1).put(0, (byte) 0x92),
           msgpackArrayHeader(stringCount),
-          dictionary,
+          dictionary.duplicate(),
           msgpackArrayHeader(traceCount()),
-          body);
+          body.duplicate());
     }
   }
 
@@ -202,12 +203,9 @@ public final class TraceMapperV0_5 implements TraceMapper {
               + (metadata.measured() ? 1 : 0)
               + (metadata.topLevel() ? 1 : 0)
               + 1;
-      for (Map.Entry<String, Object> tag : metadata.getTags().entrySet()) {
-        if (tag.getValue() instanceof Number) {
-          ++metricsSize;
-          --metaSize;
-        }
-      }
+      int numericTags = NumericTags.count(metadata.getTags());
+      metricsSize += numericTags;
+      metaSize -= numericTags;
       writable.startMap(metaSize);
       // we don't need to deduplicate any overlap between tags and baggage here
       // since they will be accumulated into maps in the same order downstream,
@@ -227,7 +225,7 @@ public final class TraceMapperV0_5 implements TraceMapper {
         writeDictionaryEncoded(writable, metadata.getOrigin());
       }
       for (Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
-        if (!(entry.getValue() instanceof Number)) {
+        if (!NumericTags.isNumber(entry)) {
           writeDictionaryEncoded(writable, entry.getKey());
           writeDictionaryEncoded(writable, entry.getValue());
         }
@@ -248,9 +246,9 @@ public final class TraceMapperV0_5 implements TraceMapper {
       writeDictionaryEncoded(writable, THREAD_ID);
       writable.writeLong(metadata.getThreadId());
       for (Map.Entry<String, Object> entry : metadata.getTags().entrySet()) {
-        if (entry.getValue() instanceof Number) {
+        if (NumericTags.isNumber(entry)) {
           writeDictionaryEncoded(writable, entry.getKey());
-          writable.writeObject(entry.getValue(), null);
+          NumericTags.writeValue(writable, entry);
         }
       }
     }
@@ -9,6 +9,7 @@ import datadog.communication.ddagent.DroppingPolicy;
 import datadog.trace.core.CoreSpan;
 import datadog.trace.core.DDSpan;
 import datadog.trace.core.monitor.HealthMetrics;
+import datadog.trace.core.util.TagMapPool;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -28,11 +29,7 @@ public class TraceProcessingWorker implements AutoCloseable {
 
   private static final Logger log = LoggerFactory.getLogger(TraceProcessingWorker.class);
 
-  private final PrioritizationStrategy prioritizationStrategy;
-  private final MpscBlockingConsumerArrayQueue<Object> primaryQueue;
-  private final MpscBlockingConsumerArrayQueue<Object> secondaryQueue;
-  private final TraceSerializingHandler serializingHandler;
-  private final Thread serializerThread;
+  private final Shard[] shards;
   private final int capacity;
 
   public TraceProcessingWorker(
@@ -43,28 +40,63 @@ public class TraceProcessingWorker implements AutoCloseable {
       final Prioritization prioritization,
       final long flushInterval,
       final TimeUnit timeUnit) {
+    this(
+        capacity,
+        healthMetrics,
+        new PayloadDispatcher[] {dispatcher},
+        droppingPolicy,
+        prioritization,
+        flushInterval,
+        timeUnit);
+  }
+
+  /**
+   * Creates a worker with one serializing thread per dispatcher. Traces are assigned to a shard by
+   * trace id, and each shard serializes into its own dispatcher's buffer, so serialization scales
+   * with the number of dispatchers. The capacity is split evenly between the shards.
+   */
+  public TraceProcessingWorker(
+      final int capacity,
+      final HealthMetrics healthMetrics,
+      final PayloadDispatcher[] dispatchers,
+      final DroppingPolicy droppingPolicy,
+      final Prioritization prioritization,
+      final long flushInterval,
+      final TimeUnit timeUnit) {
     this.capacity = capacity;
-    this.primaryQueue = createQueue(capacity);
-    this.secondaryQueue = createQueue(capacity);
-    this.prioritizationStrategy =
-        prioritization.create(primaryQueue, secondaryQueue, droppingPolicy);
-    this.serializingHandler =
-        new TraceSerializingHandler(
-            primaryQueue, secondaryQueue, healthMetrics, dispatcher, flushInterval, timeUnit);
-    this.serializerThread = newAgentThread(TRACE_PROCESSOR, serializingHandler);
+    this.shards = new Shard[dispatchers.length];
+    int shardCapacity = Math.max(capacity / dispatchers.length, 2);
+    for (int i = 0; i < dispatchers.length; ++i) {
+      shards[i] =
+          new Shard(
+              shardCapacity,
+              healthMetrics,
+              dispatchers[i],
+              droppingPolicy,
+              prioritization,
+              flushInterval,
+              timeUnit);
+      if (dispatchers.length > 1) {
+        shards[i].serializerThread.setName(TRACE_PROCESSOR.threadName + "-" + i);
+      }
+    }
   }
 
   public void start() {
-    this.serializerThread.start();
+    for (Shard shard : shards) {
+      shard.serializerThread.start();
+    }
   }
 
   public boolean flush(long timeout, TimeUnit timeUnit) {
-    CountDownLatch latch = new CountDownLatch(1);
-    FlushEvent flush = new FlushEvent(latch);
-    boolean offered;
-    do {
-      offered = primaryQueue.offer(flush);
-    } while (!offered && serializerThread.isAlive());
+    CountDownLatch latch = new CountDownLatch(shards.length);
+    for (Shard shard : shards) {
+      FlushEvent flush = new FlushEvent(latch);
+      boolean offered;
+      do {
+        offered = shard.primaryQueue.offer(flush);
+      } while (!offered && shard.serializerThread.isAlive());
+    }
     try {
       return latch.await(timeout, timeUnit);
     } catch (InterruptedException e) {
@@ -75,16 +107,30 @@ public class TraceProcessingWorker implements AutoCloseable {
 
   @Override
   public void close() {
-    serializerThread.interrupt();
-    try {
-      serializerThread.join(THREAD_JOIN_TIMOUT_MS);
-    } catch (InterruptedException ignored) {
+    for (Shard shard : shards) {
+      shard.serializerThread.interrupt();
+    }
+    for (Shard shard : shards) {
+      try {
+        shard.serializerThread.join(THREAD_JOIN_TIMOUT_MS);
+      } catch (InterruptedException ignored) {
+      }
     }
   }
 
   public <T extends CoreSpan<T>> boolean publish(
       T root, int samplingPriority, final List<T> trace) {
-    return prioritizationStrategy.publish(root, samplingPriority, trace);
+    return shardFor(root).prioritizationStrategy.publish(root, samplingPriority, trace);
+  }
+
+  /**
+   * Stops returning the tags of serialized traces to the {@link TagMapPool}, which is required
+   * when the traces are also handed to other writers which may serialize them later.
+   */
+  public void disableTagRecycling() {
+    for (Shard shard : shards) {
+      shard.serializingHandler.disableTagRecycling();
+    }
   }
 
   public int getCapacity() {
@@ -93,13 +139,53 @@ public class TraceProcessingWorker implements AutoCloseable {
 
   public long getRemainingCapacity() {
     // only advertise primary capacity (partly to keep test which aims to saturate the queue happy)
-    return primaryQueue.remainingCapacity();
+    long remainingCapacity = 0;
+    for (Shard shard : shards) {
+      remainingCapacity += shard.primaryQueue.remainingCapacity();
+    }
+    return remainingCapacity;
+  }
+
+  private <T extends CoreSpan<T>> Shard shardFor(T root) {
+    if (shards.length == 1) {
+      return shards[0];
+    }
+    long traceId = root.getTraceId().toLong();
+    int hash = (int) (traceId ^ (traceId >>> 32));
+    return shards[(hash & Integer.MAX_VALUE) % shards.length];
   }
 
   private static MpscBlockingConsumerArrayQueue<Object> createQueue(int capacity) {
     return new MpscBlockingConsumerArrayQueue<>(capacity);
   }
 
+  /** A pair of queues drained by a dedicated serializing thread into its own dispatcher */
+  static final class Shard {
+    final PrioritizationStrategy prioritizationStrategy;
+    final MpscBlockingConsumerArrayQueue<Object> primaryQueue;
+    final MpscBlockingConsumerArrayQueue<Object> secondaryQueue;
+    final TraceSerializingHandler serializingHandler;
+    final Thread serializerThread;
+
+    Shard(
+        final int capacity,
+        final HealthMetrics healthMetrics,
+        final PayloadDispatcher dispatcher,
+        final DroppingPolicy droppingPolicy,
+        final Prioritization prioritization,
+        final long flushInterval,
+        final TimeUnit timeUnit) {
+      this.primaryQueue = createQueue(capacity);
+      this.secondaryQueue = createQueue(capacity);
+      this.prioritizationStrategy =
+          prioritization.create(primaryQueue, secondaryQueue, droppingPolicy);
+      this.serializingHandler =
+          new TraceSerializingHandler(
+              primaryQueue, secondaryQueue, healthMetrics, dispatcher, flushInterval, timeUnit);
+      this.serializerThread = newAgentThread(TRACE_PROCESSOR, serializingHandler);
+    }
+  }
+
   public static class TraceSerializingHandler
       implements Runnable, MessagePassingQueue.Consumer<Object> {
 
@@ -109,6 +195,7 @@ public class TraceProcessingWorker implements AutoCloseable {
     private final long ticksRequiredToFlush;
     private final boolean doTimeFlush;
     private final PayloadDispatcher payloadDispatcher;
+    private volatile boolean recycleTags = TagMapPool.isEnabled();
     private long lastTicks;
 
     public TraceSerializingHandler(
@@ -131,6 +218,10 @@ public class TraceProcessingWorker implements AutoCloseable {
       }
     }
 
+    void disableTagRecycling() {
+      recycleTags = false;
+    }
+
     @SuppressWarnings("unchecked")
     public void onEvent(Object event) {
       // publish an incomplete batch if
@@ -141,6 +232,12 @@ public class TraceProcessingWorker implements AutoCloseable {
           List<DDSpan> trace = (List<DDSpan>) event;
           // TODO populate `_sample_rate` metric in a way that accounts for lost/dropped traces
           payloadDispatcher.addTrace(trace);
+          if (recycleTags) {
+            // the trace has been serialized into the dispatcher's buffer
+            for (DDSpan span : trace) {
+              span.context().recycleTags();
+            }
+          }
         } else if (event instanceof FlushEvent) {
           payloadDispatcher.flush();
           ((FlushEvent) event).sync();
@@ -176,6 +273,7 @@ public class TraceProcessingWorker implements AutoCloseable {
     private void consumeFromPrimaryQueue() throws InterruptedException {
       Object event = primaryQueue.poll(100, MILLISECONDS);
       if (null != event) {
+        payloadDispatcher.onQueueDepth(primaryQueue.size(), primaryQueue.capacity());
         // there's a high priority trace, consume it,
         // and then drain whatever's in the queue
         onEvent(event);
@@ -0,0 +1,180 @@
+package datadog.trace.core;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Multi-producer, single-consumer queue of finished spans backed by a linked list of array chunks.
+ *
+ * <p>Producers claim a slot in the current chunk with a single atomic increment, so adding a span
+ * neither allocates a node nor retries a CAS loop against other producers. Chunks start small,
+ * because most traces are small, and grow for fan-out traces. Draining must be done by one thread
+ * at a time, which {@link PendingTrace} ensures by draining under its own lock.
+ *
+ * <p>{@link #size()} counts claimed slots, so it may briefly include spans whose producers have not
+ * yet stored them. Such spans are left in place by {@link #drainTo(List)} and will be picked up by
+ * a later drain.
+ */
+final class ChunkedSpanQueue extends AbstractCollection<DDSpan> {
+
+  private static final int INITIAL_CHUNK_SIZE = 8;
+  private static final int MAX_CHUNK_SIZE = 128;
+
+  @SuppressWarnings("serial")
+  static final class Chunk extends AtomicReferenceArray<DDSpan> {
+    private static final AtomicIntegerFieldUpdater<Chunk> CLAIMED =
+        AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "claimed");
+    private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+    /** Number of spans added before this chunk */
+    final long base;
+
+    /** Slots claimed so far, may overshoot the capacity when producers race past the end */
+    private volatile int claimed;
+
+    private volatile Chunk next;
+
+    Chunk(long base, int capacity) {
+      super(capacity);
+      this.base = base;
+    }
+
+    Chunk next() {
+      Chunk next = this.next;
+      if (null == next) {
+        next = new Chunk(base + length(), Math.min(length() << 1, MAX_CHUNK_SIZE));
+        if (!NEXT.compareAndSet(this, null, next)) {
+          next = this.next;
+        }
+      }
+      return next;
+    }
+
+    long published() {
+      return base + Math.min(claimed, length());
+    }
+  }
+
+  private static final AtomicReferenceFieldUpdater<ChunkedSpanQueue, Chunk> TAIL =
+      AtomicReferenceFieldUpdater.newUpdater(ChunkedSpanQueue.class, Chunk.class, "tail");
+
+  private volatile Chunk tail;
+
+  // only written by the draining thread
+  private volatile Chunk head;
+  private volatile int headIndex;
+
+  ChunkedSpanQueue() {
+    this.head = this.tail = new Chunk(0, INITIAL_CHUNK_SIZE);
+  }
+
+  @Override
+  public boolean add(DDSpan span) {
+    Chunk chunk = tail;
+    while (true) {
+      int index = Chunk.CLAIMED.getAndIncrement(chunk);
+      if (index < chunk.length()) {
+        chunk.set(index, span);
+        return true;
+      }
+      Chunk next = chunk.next();
+      TAIL.compareAndSet(this, chunk, next);
+      chunk = next;
+    }
+  }
+
+  /**
+   * Moves all stored spans to the given list, most recently added first.
+   *
+   * @return the number of spans drained
+   */
+  int drainTo(List<DDSpan> spans) {
+    int start = spans.size();
+    Chunk chunk = head;
+    int index = headIndex;
+    while (true) {
+      DDSpan span;
+      if (index < chunk.length()) {
+        span = chunk.get(index);
+        if (null == span) {
+          break; // not stored yet, leave it to the next drain
+        }
+        chunk.lazySet(index++, null);
+        spans.add(span);
+      } else if (null != chunk.next) {
+        chunk = chunk.next;
+        index = 0;
+      } else {
+        break;
+      }
+    }
+    this.head = chunk;
+    this.headIndex = index;
+    int drained = spans.size() - start;
+    // writers have always presented spans in reverse order of completion
+    for (int i = start, j = spans.size() - 1; i < j; ++i, --j) {
+      spans.set(i, spans.set(j, spans.get(i)));
+    }
+    return drained;
+  }
+
+  /** Approximate while spans are being added or drained concurrently. */
+  @Override
+  public int size() {
+    Chunk head = this.head;
+    long drained = head.base + headIndex;
+    // the tail can briefly lag behind the head when a producer has linked a new chunk but not
+    // yet moved the tail forward
+    return (int) Math.max(0, tail.published() - drained);
+  }
+
+  /** Weakly consistent iterator over spans which have been stored but not drained. */
+  @Override
+  public Iterator<DDSpan> iterator() {
+    return new Iterator<DDSpan>() {
+      private Chunk chunk = head;
+      private int index = headIndex;
+      private DDSpan next = advance();
+
+      private DDSpan advance() {
+        while (null != chunk) {
+          while (index < chunk.length()) {
+            DDSpan span = chunk.get(index++);
+            if (null != span) {
+              return span;
+            }
+          }
+          chunk = chunk.next;
+          index = 0;
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return null != next;
+      }
+
+      @Override
+      public DDSpan next() {
+        DDSpan span = next;
+        if (null == span) {
+          throw new NoSuchElementException();
+        }
+        next = advance();
+        return span;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
@@ -109,6 +109,8 @@ public class CoreTracer implements AgentTracer.TracerAPI {
 
   /** number of spans in a pending trace before they get flushed */
   private final int partialFlushMinSpans;
+  /** estimated size in bytes of the spans in a pending trace before they get flushed */
+  private final long partialFlushMaxBytes;
 
   private final StatsDClient statsDClient;
   private final Monitoring monitoring;
@@ -214,6 +216,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     private Map<String, String> serviceNameMappings;
     private Map<String, String> taggedHeaders;
     private int partialFlushMinSpans;
+    private long partialFlushMaxBytes;
     private StatsDClient statsDClient;
     private TagInterceptor tagInterceptor;
     private boolean strictTraceWrites;
@@ -285,6 +288,11 @@ public class CoreTracer implements AgentTracer.TracerAPI {
       return this;
     }
 
+    public CoreTracerBuilder partialFlushMaxBytes(long partialFlushMaxBytes) {
+      this.partialFlushMaxBytes = partialFlushMaxBytes;
+      return this;
+    }
+
     public CoreTracerBuilder statsDClient(StatsDClient statsDClient) {
       this.statsDClient = statsDClient;
       return this;
@@ -333,6 +341,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
       serviceNameMappings(config.getServiceMapping());
       taggedHeaders(config.getRequestHeaderTags());
       partialFlushMinSpans(config.getPartialFlushMinSpans());
+      partialFlushMaxBytes(config.getPartialFlushMaxBytes());
       strictTraceWrites(config.isTraceStrictWritesEnabled());
 
       return this;
@@ -354,6 +363,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
           serviceNameMappings,
           taggedHeaders,
           partialFlushMinSpans,
+          partialFlushMaxBytes,
           statsDClient,
           tagInterceptor,
           strictTraceWrites,
@@ -377,6 +387,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
       final Map<String, String> serviceNameMappings,
       final Map<String, String> taggedHeaders,
       final int partialFlushMinSpans,
+      final long partialFlushMaxBytes,
       final StatsDClient statsDClient,
       final TagInterceptor tagInterceptor,
       final boolean strictTraceWrites,
@@ -396,6 +407,7 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     this.defaultSpanTags = defaultSpanTags;
     this.serviceNameMappings = serviceNameMappings;
     this.partialFlushMinSpans = partialFlushMinSpans;
+    this.partialFlushMaxBytes = partialFlushMaxBytes;
     this.idGenerationStrategy =
         null == idGenerationStrategy
             ? Config.get().getIdGenerationStrategy()
@@ -624,6 +636,10 @@ public class CoreTracer implements AgentTracer.TracerAPI {
     return partialFlushMinSpans;
   }
 
+  public long getPartialFlushMaxBytes() {
+    return partialFlushMaxBytes;
+  }
+
   @Override
   public AgentSpan activeSpan() {
     return scopeManager.activeSpan();
@@ -396,13 +396,14 @@ public class DDSpan implements AgentSpan, CoreSpan<DDSpan>, AttachableWrapper {
 
   @Override
   public DDSpan setMetric(final CharSequence metric, final int value) {
-    context.setMetric(metric, value);
+    // keep storing ints boxed, as small values are cached and readers may expect an Integer
+    context.setMetric(metric, Integer.valueOf(value));
     return this;
   }
 
   @Override
   public DDSpan setMetric(CharSequence name, float value) {
-    context.setMetric(name, value);
+    context.setMetric(name, Float.valueOf(value));
     return this;
   }
 
@@ -420,7 +421,7 @@ public class DDSpan implements AgentSpan, CoreSpan<DDSpan>, AttachableWrapper {
 
   @Override
   public DDSpan setFlag(CharSequence name, boolean value) {
-    context.setMetric(name, value ? 1 : 0);
+    context.setMetric(name, Integer.valueOf(value ? 1 : 0));
     return this;
   }
 
@@ -17,12 +17,15 @@ import datadog.trace.bootstrap.instrumentation.api.ResourceNamePriorities;
 import datadog.trace.bootstrap.instrumentation.api.Tags;
 import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString;
 import datadog.trace.core.taginterceptor.TagInterceptor;
+import datadog.trace.core.util.TagMap;
+import datadog.trace.core.util.TagMapPool;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +48,9 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
 
   private static final Map<String, String> EMPTY_BAGGAGE = Collections.emptyMap();
 
+  private static final int FIXED_SIZE_ESTIMATE = 128;
+  private static final int TAG_SIZE_ESTIMATE = 8;
+
   /** The collection of all span related to this one */
   private final PendingTrace trace;
 
@@ -66,13 +72,14 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
   /**
    * Tags are associated to the current span, they will not propagate to the children span.
    *
-   * <p>The underlying assumption for using a normal Map with synchronized access instead of a
-   * ConcurrentHashMap is that even though the tags can be accessed and modified from multiple
-   * threads, they will rarely, if ever, be read and modified concurrently by multiple threads but
-   * rather read and accessed in a serial fashion on thread after thread. The synchronization can
-   * then be wrapped around bulk operations to minimize the costly atomic operations.
+   * <p>Even though the tags can be accessed and modified from multiple threads, they are rarely
+   * modified concurrently. {@link TagMap} gives lock-free reads and a single CAS per uncontended
+   * write, rather than a monitor acquisition around every access.
+   *
+   * <p>Once the tags have been recycled this points to {@link TagMap#RELEASED}, so that late
+   * accesses through a stale span never reach a map which another span has since acquired.
    */
-  private final Map<String, Object> unsafeTags;
+  private volatile TagMap unsafeTags;
 
   /** The service name is required, otherwise the span are dropped by the agent */
   private volatile String serviceName;
@@ -94,6 +101,9 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
   private static final AtomicIntegerFieldUpdater<DDSpanContext> SAMPLING_DECISION_UPDATER =
       AtomicIntegerFieldUpdater.newUpdater(DDSpanContext.class, "samplingDecision");
 
+  private static final AtomicReferenceFieldUpdater<DDSpanContext, TagMap> TAGS_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(DDSpanContext.class, TagMap.class, "unsafeTags");
+
   private volatile int samplingDecision = SamplingDecision.UNSET_UNKNOWN;
 
   /** The origin of the trace. (eg. Synthetics, CI App) */
@@ -163,10 +173,8 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
 
     this.requestContextData = requestContextData;
 
-    // The +1 is the magic number from the tags below that we set at the end,
-    // and "* 4 / 3" is to make sure that we don't resize immediately
-    final int capacity = Math.max((tagsSize <= 0 ? 3 : (tagsSize + 1)) * 4 / 3, 8);
-    this.unsafeTags = new HashMap<>(capacity);
+    // The +1 is the magic number from the tags below that we set at the end
+    this.unsafeTags = TagMapPool.acquire(tagsSize <= 0 ? 3 : (tagsSize + 1));
 
     setServiceName(serviceName);
     this.operationName = operationName;
@@ -445,9 +453,15 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
   }
 
   public void setMetric(final CharSequence key, final Number value) {
-    synchronized (unsafeTags) {
-      unsafeSetTag(key.toString(), value);
-    }
+    unsafeSetTag(key.toString(), value);
+  }
+
+  public void setMetric(final CharSequence key, final long value) {
+    unsafeTags.putLong(key.toString(), value);
+  }
+
+  public void setMetric(final CharSequence key, final double value) {
+    unsafeTags.putDouble(key.toString(), value);
   }
 
   /**
@@ -458,13 +472,9 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
    */
   public void setTag(final String tag, final Object value) {
     if (null == value || "".equals(value)) {
-      synchronized (unsafeTags) {
-        unsafeTags.remove(tag);
-      }
+      unsafeTags.remove(tag);
     } else if (!trace.getTracer().getTagInterceptor().interceptTag(this, tag, value)) {
-      synchronized (unsafeTags) {
-        unsafeSetTag(tag, value);
-      }
+      unsafeSetTag(tag, value);
     }
   }
 
@@ -474,11 +484,9 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
     }
 
     TagInterceptor tagInterceptor = trace.getTracer().getTagInterceptor();
-    synchronized (unsafeTags) {
-      for (final Map.Entry<String, ?> tag : map.entrySet()) {
-        if (!tagInterceptor.interceptTag(this, tag.getKey(), tag.getValue())) {
-          unsafeSetTag(tag.getKey(), tag.getValue());
-        }
+    for (final Map.Entry<String, ?> tag : map.entrySet()) {
+      if (!tagInterceptor.interceptTag(this, tag.getKey(), tag.getValue())) {
+        unsafeSetTag(tag.getKey(), tag.getValue());
       }
     }
   }
@@ -497,15 +505,13 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
       case Tags.HTTP_STATUS:
         return 0 == httpStatusCode ? null : (int) httpStatusCode;
       default:
-        synchronized (unsafeTags) {
-          return unsafeGetTag(key);
-        }
+        return unsafeGetTag(key);
     }
   }
 
   /**
-   * This is not thread-safe and must only be used when it can be guaranteed that the context will
-   * not be mutated. This is internal API and must not be exposed to users.
+   * Reads a tag without considering the synthetic tags (thread id/name, http status). This is
+   * internal API and must not be exposed to users.
    *
    * @param tag
    * @return the value associated with the tag
@@ -515,22 +521,39 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
   }
 
   public Map<String, Object> getTags() {
-    synchronized (unsafeTags) {
-      Map<String, Object> tags = new HashMap<>(unsafeTags);
-      tags.put(DDTags.THREAD_ID, threadId);
-      tags.put(DDTags.THREAD_NAME, threadName.toString());
-      if (samplingDecision != SamplingDecision.UNSET_UNKNOWN) {
-        tags.put(SAMPLE_RATE_KEY, SamplingDecision.priority(samplingDecision));
-      }
-      if (httpStatusCode != 0) {
-        tags.put(Tags.HTTP_STATUS, (int) httpStatusCode);
-      }
-      return Collections.unmodifiableMap(tags);
+    Map<String, Object> tags = new HashMap<>(unsafeTags);
+    tags.put(DDTags.THREAD_ID, threadId);
+    tags.put(DDTags.THREAD_NAME, threadName.toString());
+    if (samplingDecision != SamplingDecision.UNSET_UNKNOWN) {
+      tags.put(SAMPLE_RATE_KEY, SamplingDecision.priority(samplingDecision));
+    }
+    if (httpStatusCode != 0) {
+      tags.put(Tags.HTTP_STATUS, (int) httpStatusCode);
     }
+    return Collections.unmodifiableMap(tags);
+  }
+
+  /**
+   * Rough size of this span once serialized, used to bound how much a pending trace holds on to.
+   * Only strings are measured, the ids, timestamps and other fixed fields are estimated.
+   */
+  int estimateSize() {
+    int size = FIXED_SIZE_ESTIMATE + lengthOf(resourceName) + lengthOf(operationName);
+    for (Map.Entry<String, Object> tag : unsafeTags.entrySet()) {
+      size += TAG_SIZE_ESTIMATE + tag.getKey().length() + lengthOf(tag.getValue());
+    }
+    return size;
+  }
+
+  private static int lengthOf(Object value) {
+    return value instanceof CharSequence ? ((CharSequence) value).length() : 0;
   }
 
   public void processTagsAndBaggage(final MetadataConsumer consumer) {
-    synchronized (unsafeTags) {
+    // the consumer reads the number of tags before iterating over them, so late writers
+    // must not change the map while it is being processed
+    unsafeTags.lockWrites();
+    try {
       consumer.accept(
           new Metadata(
               threadId,
@@ -545,6 +568,23 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
               topLevel,
               httpStatusCode == 0 ? null : HTTP_STATUSES.get(httpStatusCode),
               getOrigin())); // Get origin from rootSpan.context
+    } finally {
+      unsafeTags.unlockWrites();
+    }
+  }
+
+  /**
+   * Returns the tags to the {@link TagMapPool} once the span has been serialized. This is a no-op
+   * unless span recycling is enabled, in which case the span has no tags afterwards and further
+   * writes to them are ignored.
+   */
+  public void recycleTags() {
+    if (TagMapPool.isEnabled()) {
+      // only the caller which detaches the map may release it, or two spans could share it
+      TagMap tags = TAGS_UPDATER.getAndSet(this, TagMap.RELEASED);
+      if (tags != TagMap.RELEASED) {
+        TagMapPool.release(tags);
+      }
     }
   }
 
@@ -572,9 +612,7 @@ public class DDSpanContext implements AgentSpan.Context, RequestContext<Object>,
       s.append(" *measured*");
     }
 
-    synchronized (unsafeTags) {
-      s.append(" tags=").append(new TreeMap<>(getTags()));
-    }
+    s.append(" tags=").append(new TreeMap<>(getTags()));
     return s.toString();
   }
 
@@ -7,7 +7,6 @@ import datadog.trace.bootstrap.instrumentation.api.AgentTrace;
 import datadog.trace.core.util.Clock;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
@@ -67,12 +66,15 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   /** Nano second ticks value at trace start */
   private final long startNanoTicks;
 
-  private final ConcurrentLinkedDeque<DDSpan> finishedSpans = new ConcurrentLinkedDeque<>();
+  private final ChunkedSpanQueue finishedSpans = new ChunkedSpanQueue();
 
-  // We must maintain a separate count because ConcurrentLinkedDeque.size() is a linear operation.
-  private volatile int completedSpanCount = 0;
-  private static final AtomicIntegerFieldUpdater<PendingTrace> COMPLETED_SPAN_COUNT =
-      AtomicIntegerFieldUpdater.newUpdater(PendingTrace.class, "completedSpanCount");
+  /**
+   * Estimated size of the spans in finishedSpans, only maintained when partial flushes are bounded
+   * by size. May overestimate briefly when spans are published while a writer is draining.
+   */
+  private volatile long finishedBytes = 0;
+  private static final AtomicLongFieldUpdater<PendingTrace> FINISHED_BYTES =
+      AtomicLongFieldUpdater.newUpdater(PendingTrace.class, "finishedBytes");
 
   private volatile int pendingReferenceCount = 0;
   private static final AtomicIntegerFieldUpdater<PendingTrace> PENDING_REFERENCE_COUNT =
@@ -142,10 +144,8 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   }
 
   @Override
-  public boolean lastReferencedNanosAgo(long nanos) {
-    long currentNanoTicks = Clock.currentNanoTicks();
-    long age = currentNanoTicks - lastReferenced;
-    return nanos < age;
+  public long lastReferenced() {
+    return lastReferenced;
   }
 
   void registerSpan(final DDSpan span) {
@@ -163,11 +163,10 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   }
 
   PublishState onPublish(final DDSpan span) {
-    finishedSpans.addFirst(span);
-    // There is a benign race here where the span added above can get written out by a writer in
-    // progress before the count has been incremented. It's being taken care of in the internal
-    // write method.
-    COMPLETED_SPAN_COUNT.incrementAndGet(this);
+    finishedSpans.add(span);
+    if (tracer.getPartialFlushMaxBytes() > 0) {
+      FINISHED_BYTES.addAndGet(this, span.context().estimateSize());
+    }
     return decrementRefAndMaybeWrite(span == getRootSpan());
   }
 
@@ -223,7 +222,8 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
       // Finished root with pending work ... delay write
       pendingTraceBuffer.enqueue(this);
       return PublishState.ROOT_BUFFERED;
-    } else if (0 < partialFlushMinSpans && partialFlushMinSpans < size()) {
+    } else if ((0 < partialFlushMinSpans && partialFlushMinSpans < size())
+        || exceedsMaxBytes()) {
       // Trace is getting too big, write anything completed.
       partialFlush();
       return PublishState.PARTIAL_FLUSH;
@@ -235,6 +235,11 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
     return PublishState.PENDING;
   }
 
+  private boolean exceedsMaxBytes() {
+    long partialFlushMaxBytes = tracer.getPartialFlushMaxBytes();
+    return 0 < partialFlushMaxBytes && partialFlushMaxBytes < finishedBytes;
+  }
+
   /** Important to note: may be called multiple times. */
   private void partialFlush() {
     int size = write(true);
@@ -259,25 +264,21 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
             rootSpanWritten = true;
           }
           int size = size();
-          // If we get here and size is below 0, then the writer before us wrote out at least one
-          // more trace than the size it had when it started. Those span(s) had been added to
-          // finishedSpans by some other thread(s) while the existing spans were being written, but
-          // the completedSpanCount has not yet been incremented. This means that eventually the
-          // count(s) will be incremented, and any new spans added during the period that the count
-          // was negative will be written by someone even if we don't write them right now.
-          if (size > 0 && (!isPartial || size > tracer.getPartialFlushMinSpans())) {
+          // The size can include spans which another thread has claimed a slot for but not yet
+          // stored. Those are left in finishedSpans, and because that thread publishes the span
+          // before decrementing the pending reference count, it will be written by someone even
+          // if we don't write it right now.
+          if (size > 0
+              && (!isPartial || size > tracer.getPartialFlushMinSpans() || exceedsMaxBytes())) {
             trace = new ArrayList<>(size);
-            DDSpan span = finishedSpans.pollFirst();
-            while (null != span) {
-              trace.add(span);
-              span = finishedSpans.pollFirst();
-            }
+            // reset before draining, spans published in between are drained but stay counted
+            finishedBytes = 0;
+            finishedSpans.drainTo(trace);
           } else {
             trace = EMPTY;
           }
         }
         if (!trace.isEmpty()) {
-          COMPLETED_SPAN_COUNT.addAndGet(this, -trace.size());
           tracer.write(trace);
           return trace.size();
         }
@@ -287,7 +288,7 @@ public class PendingTrace implements AgentTrace, PendingTraceBuffer.Element {
   }
 
   public int size() {
-    return completedSpanCount;
+    return finishedSpans.size();
   }
 
   public void beginEndToEnd() {
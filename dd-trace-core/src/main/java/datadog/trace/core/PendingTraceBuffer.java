@@ -4,6 +4,8 @@ import static datadog.trace.util.AgentThreadFactory.AgentThread.TRACE_MONITOR;
 import static datadog.trace.util.AgentThreadFactory.THREAD_JOIN_TIMOUT_MS;
 import static datadog.trace.util.AgentThreadFactory.newAgentThread;
 
+import datadog.trace.core.util.Clock;
+import java.util.ArrayDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.jctools.queues.MessagePassingQueue;
@@ -17,7 +19,8 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
   public interface Element {
     long oldestFinishedTime();
 
-    boolean lastReferencedNanosAgo(long nanos);
+    /** @return the nano ticks at which the element was last referenced */
+    long lastReferenced();
 
     void write();
 
@@ -34,9 +37,11 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
   }
 
   private static class DelayingPendingTraceBuffer extends PendingTraceBuffer {
-    private static final long FORCE_SEND_DELAY_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final long FORCE_SEND_DELAY_NS = TimeUnit.SECONDS.toNanos(5);
     private static final long SEND_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(500);
-    private static final long SLEEP_TIME_MS = 100;
+    private static final long TICK_NS = TimeUnit.MILLISECONDS.toNanos(20);
+    // enough ticks to cover the send delay, which is the furthest a deadline can be
+    private static final int WHEEL_SIZE = 32;
 
     private final MpscBlockingConsumerArrayQueue<Element> queue;
     private final Thread worker;
@@ -120,8 +125,8 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
       }
 
       @Override
-      public boolean lastReferencedNanosAgo(long nanos) {
-        return false;
+      public long lastReferenced() {
+        return 0;
       }
 
       @Override
@@ -138,52 +143,159 @@ public abstract class PendingTraceBuffer implements AutoCloseable {
       }
     }
 
+    /**
+     * Buckets elements by the tick at which they are next due, so the worker only looks at an
+     * element when it may be written, and only wakes up when a tick is due. A trace is due at the
+     * latest {@link #SEND_DELAY_NS} after it was last referenced, so all deadlines fall within a
+     * single turn of the wheel.
+     *
+     * <p>The wheel holds at most as many elements as the queue feeding it, so that taking elements
+     * off the queue does not lift the bound on buffered traces.
+     *
+     * <p>Only used by the worker thread.
+     */
+    private static final class TimingWheel {
+      private final ArrayDeque<Element>[] slots;
+      private final long origin;
+      private final int capacity;
+      // the next tick to expire
+      private long tick;
+      private int size;
+
+      @SuppressWarnings("unchecked")
+      TimingWheel(long nowTicks, int capacity) {
+        this.slots = new ArrayDeque[WHEEL_SIZE];
+        for (int i = 0; i < slots.length; ++i) {
+          slots[i] = new ArrayDeque<>();
+        }
+        this.origin = nowTicks;
+        this.capacity = capacity;
+      }
+
+      boolean isEmpty() {
+        return size == 0;
+      }
+
+      boolean isFull() {
+        return size >= capacity;
+      }
+
+      void schedule(Element element, long deadline) {
+        // round up so that elements are never expired before their deadline
+        long deadlineTick = (deadline - origin + TICK_NS - 1) / TICK_NS;
+        long slot = Math.min(Math.max(tick, deadlineTick), tick + WHEEL_SIZE - 1);
+        slots[(int) (slot & (WHEEL_SIZE - 1))].offer(element);
+        ++size;
+      }
+
+      long nanosUntilNextTick(long nowTicks) {
+        return Math.max(0, origin + tick * TICK_NS - nowTicks);
+      }
+
+      /** Moves the elements of all ticks which are due into {@code expired} */
+      void expire(long nowTicks, ArrayDeque<Element> expired) {
+        long nowTick = (nowTicks - origin) / TICK_NS;
+        // each slot only needs to be visited once if the worker fell behind
+        long last = Math.min(nowTick, tick + WHEEL_SIZE - 1);
+        for (; tick <= last; ++tick) {
+          drainTo(slots[(int) (tick & (WHEEL_SIZE - 1))], expired);
+        }
+        tick = Math.max(tick, nowTick + 1);
+      }
+
+      void drainAll(ArrayDeque<Element> expired) {
+        for (ArrayDeque<Element> slot : slots) {
+          drainTo(slot, expired);
+        }
+      }
+
+      private void drainTo(ArrayDeque<Element> slot, ArrayDeque<Element> expired) {
+        Element element;
+        while (null != (element = slot.poll())) {
+          expired.offer(element);
+          --size;
+        }
+      }
+    }
+
     private final class Worker implements Runnable {
 
+      private final TimingWheel wheel;
+      private final ArrayDeque<Element> expired = new ArrayDeque<>();
+
+      Worker(int capacity) {
+        this.wheel = new TimingWheel(Clock.currentNanoTicks(), capacity);
+      }
+
       @Override
       public void run() {
         try {
           while (!closed && !Thread.currentThread().isInterrupted()) {
 
-            Element pendingTrace = queue.take(); // block until available.
+            // only wake up for the next tick when there is something in the wheel
+            Element pendingTrace =
+                wheel.isEmpty()
+                    ? queue.take()
+                    : queue.poll(
+                        wheel.nanosUntilNextTick(Clock.currentNanoTicks()), TimeUnit.NANOSECONDS);
 
             if (pendingTrace instanceof FlushElement) {
               // Since this is an MPSC queue, the drain needs to be called on the consumer thread
               queue.drain(WriteDrain.WRITE_DRAIN);
+              wheel.drainAll(expired);
+              while (null != (pendingTrace = expired.poll())) {
+                write(pendingTrace);
+              }
               flushCounter.incrementAndGet();
               continue;
             }
 
-            // The element is no longer in the queue
-            pendingTrace.setEnqueued(false);
-
-            long oldestFinishedTime = pendingTrace.oldestFinishedTime();
-
-            long finishTimestampMillis = TimeUnit.NANOSECONDS.toMillis(oldestFinishedTime);
-            if (finishTimestampMillis <= System.currentTimeMillis() - FORCE_SEND_DELAY_MS) {
-              // Root span is getting old. Send the trace to avoid being discarded by agent.
-              pendingTrace.write();
-              continue;
+            long now = Clock.currentNanoTicks();
+            wheel.expire(now, expired);
+            Element next;
+            while (null != (next = expired.poll())) {
+              schedule(next, now);
             }
-
-            if (pendingTrace.lastReferencedNanosAgo(SEND_DELAY_NS)) {
-              // Trace has been unmodified long enough, go ahead and write whatever is finished.
-              pendingTrace.write();
-            } else {
-              // Trace is too new.  Requeue it and sleep to avoid a hot loop.
-              enqueue(pendingTrace);
-              Thread.sleep(SLEEP_TIME_MS);
+            if (null != pendingTrace) {
+              // The element stays enqueued while it is in the wheel
+              schedule(pendingTrace, now);
             }
           }
         } catch (InterruptedException e) {
           Thread.currentThread().interrupt();
         }
       }
+
+      private void schedule(Element pendingTrace, long now) {
+        long deadline = pendingTrace.lastReferenced() + SEND_DELAY_NS;
+        long oldestFinishedTime = pendingTrace.oldestFinishedTime();
+        if (oldestFinishedTime != Long.MAX_VALUE) {
+          // Send traces with old spans to avoid them being discarded by the agent.
+          long wallClockNow = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+          long forceSendDelay = oldestFinishedTime + FORCE_SEND_DELAY_NS - wallClockNow;
+          deadline = Math.min(deadline, now + forceSendDelay);
+        }
+        if (deadline - now <= 0) {
+          // Trace has been unmodified long enough, go ahead and write whatever is finished.
+          write(pendingTrace);
+        } else if (wheel.isFull()) {
+          // The buffer is full, so we can't hold on to this trace, write it out directly instead.
+          write(pendingTrace);
+        } else {
+          wheel.schedule(pendingTrace, deadline);
+        }
+      }
+
+      private void write(Element pendingTrace) {
+        // The element is no longer in the buffer
+        pendingTrace.setEnqueued(false);
+        pendingTrace.write();
+      }
     }
 
     public DelayingPendingTraceBuffer(int bufferSize) {
       this.queue = new MpscBlockingConsumerArrayQueue<>(bufferSize);
-      this.worker = newAgentThread(TRACE_MONITOR, new Worker());
+      this.worker = newAgentThread(TRACE_MONITOR, new Worker(bufferSize));
     }
   }
 
@@ -48,6 +48,9 @@ public class HttpCodec {
       case XRAY:
         XRayHttpCodec.INJECTOR.inject(context, carrier, setter);
         break;
+      case TRACECONTEXT:
+        W3CHttpCodec.INJECTOR.inject(context, carrier, setter);
+        break;
       default:
         log.debug("No implementation found to inject propagation style: {}", style);
         break;
@@ -70,6 +73,9 @@ public class HttpCodec {
         case XRAY:
           injectors.add(XRayHttpCodec.INJECTOR);
           break;
+        case TRACECONTEXT:
+          injectors.add(W3CHttpCodec.INJECTOR);
+          break;
         default:
           log.debug("No implementation found to inject propagation style: {}", style);
           break;
@@ -95,6 +101,9 @@ public class HttpCodec {
         case XRAY:
           extractors.add(XRayHttpCodec.newExtractor(taggedHeaders));
           break;
+        case TRACECONTEXT:
+          extractors.add(W3CHttpCodec.newExtractor(taggedHeaders));
+          break;
         default:
           log.debug("No implementation found to extract propagation style: {}", style);
           break;
@@ -122,14 +131,46 @@ public class HttpCodec {
 
   public static class CompoundExtractor implements Extractor {
     private final List<Extractor> extractors;
+    // set when all the extractors interpret headers, so the carrier only needs to be visited once
+    private final ThreadLocal<MultiStyleInterpreter> multiStyleInterpreter;
 
     public CompoundExtractor(final List<Extractor> extractors) {
       this.extractors = extractors;
+      this.multiStyleInterpreter = multiStyleInterpreter(extractors);
+    }
+
+    private static ThreadLocal<MultiStyleInterpreter> multiStyleInterpreter(
+        final List<Extractor> extractors) {
+      if (extractors.size() < 2) {
+        return null;
+      }
+      final TagContextExtractor[] tagContextExtractors = new TagContextExtractor[extractors.size()];
+      for (int i = 0; i < tagContextExtractors.length; ++i) {
+        if (!(extractors.get(i) instanceof TagContextExtractor)) {
+          return null;
+        }
+        tagContextExtractors[i] = (TagContextExtractor) extractors.get(i);
+      }
+      return new ThreadLocal<MultiStyleInterpreter>() {
+        @Override
+        protected MultiStyleInterpreter initialValue() {
+          ContextInterpreter[] interpreters = new ContextInterpreter[tagContextExtractors.length];
+          for (int i = 0; i < interpreters.length; ++i) {
+            interpreters[i] = tagContextExtractors[i].interpreter();
+          }
+          return new MultiStyleInterpreter(interpreters);
+        }
+      };
     }
 
     @Override
     public <C> TagContext extract(
         final C carrier, final AgentPropagation.ContextVisitor<C> getter) {
+      if (null != multiStyleInterpreter) {
+        MultiStyleInterpreter interpreter = multiStyleInterpreter.get().reset();
+        getter.forEachKey(carrier, interpreter);
+        return interpreter.build();
+      }
       TagContext context = null;
 
       for (final Extractor extractor : extractors) {
@@ -144,6 +185,54 @@ public class HttpCodec {
     }
   }
 
+  /**
+   * Feeds each header to the interpreters of all the extracted propagation styles at once, so that
+   * the carrier is only visited once however many styles are extracted.
+   */
+  private static final class MultiStyleInterpreter implements AgentPropagation.KeyClassifier {
+    private final ContextInterpreter[] interpreters;
+    private final boolean[] accepting;
+    private int remaining;
+
+    private MultiStyleInterpreter(final ContextInterpreter[] interpreters) {
+      this.interpreters = interpreters;
+      this.accepting = new boolean[interpreters.length];
+    }
+
+    MultiStyleInterpreter reset() {
+      for (int i = 0; i < interpreters.length; ++i) {
+        interpreters[i].reset();
+        accepting[i] = true;
+      }
+      remaining = interpreters.length;
+      return this;
+    }
+
+    @Override
+    public boolean accept(final String key, final String value) {
+      for (int i = 0; i < interpreters.length; ++i) {
+        // an interpreter which gave up on the carrier is not fed any further headers
+        if (accepting[i] && !interpreters[i].accept(key, value)) {
+          accepting[i] = false;
+          --remaining;
+        }
+      }
+      return remaining > 0;
+    }
+
+    TagContext build() {
+      TagContext context = null;
+      for (final ContextInterpreter interpreter : interpreters) {
+        context = interpreter.build();
+        // Use incomplete TagContext only as last resort
+        if (context instanceof ExtractedContext) {
+          return context;
+        }
+      }
+      return context;
+    }
+  }
+
   /** URL encode value */
   static String encode(final String value) {
     String encoded = value;
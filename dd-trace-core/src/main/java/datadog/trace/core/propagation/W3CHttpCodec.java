@@ -0,0 +1,305 @@
+package datadog.trace.core.propagation;
+
+import static datadog.trace.core.propagation.HttpCodec.firstHeaderValue;
+
+import datadog.trace.api.DDId;
+import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.bootstrap.instrumentation.api.AgentPropagation;
+import datadog.trace.core.DDSpanContext;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A codec designed for HTTP transport via headers using W3C trace context headers
+ *
+ * <p>See https://www.w3.org/TR/trace-context/ for the header formats. Ids are parsed from the
+ * header characters, and injected from the hex strings which {@link DDId} caches, so that neither
+ * direction formats ids more than once. Trace ids are 64 bits, the lower half of a 128 bit W3C
+ * trace id, and the full id is kept as the original representation so that it is propagated
+ * unchanged.
+ */
+class W3CHttpCodec {
+
+  private static final Logger log = LoggerFactory.getLogger(W3CHttpCodec.class);
+
+  static final String TRACE_PARENT_KEY = "traceparent";
+  static final String TRACE_STATE_KEY = "tracestate";
+
+  private static final String DD_STATE_PREFIX = "dd=";
+  private static final String SAMPLING_PRIORITY_PREFIX = "s:";
+  private static final String ORIGIN_PREFIX = "o:";
+
+  // 00-<32 hex trace id>-<16 hex parent id>-<2 hex flags>
+  private static final int VERSION_LENGTH = 2;
+  private static final int TRACE_ID_OFFSET = VERSION_LENGTH + 1;
+  private static final int TRACE_ID_LENGTH = 32;
+  private static final int PARENT_ID_OFFSET = TRACE_ID_OFFSET + TRACE_ID_LENGTH + 1;
+  private static final int PARENT_ID_LENGTH = 16;
+  private static final int FLAGS_OFFSET = PARENT_ID_OFFSET + PARENT_ID_LENGTH + 1;
+  private static final int TRACE_PARENT_LENGTH = FLAGS_OFFSET + 2;
+  private static final int SAMPLED_FLAG = 0x01;
+
+  private W3CHttpCodec() {
+    // This class should not be created. This also makes code coverage checks happy.
+  }
+
+  public static final HttpCodec.Injector INJECTOR = new Injector();
+
+  private static class Injector implements HttpCodec.Injector {
+
+    @Override
+    public <C> void inject(
+        final DDSpanContext context, final C carrier, final AgentPropagation.Setter<C> setter) {
+      final boolean sampled = context.lockSamplingPriority() && context.getSamplingPriority() > 0;
+      setter.set(
+          carrier,
+          TRACE_PARENT_KEY,
+          traceParent(context.getTraceId(), context.getSpanId(), sampled));
+
+      final int samplingPriority = context.getSamplingPriority();
+      final CharSequence origin = context.getOrigin();
+      if (samplingPriority != PrioritySampling.UNSET || null != origin) {
+        final StringBuilder traceState = new StringBuilder(32).append(DD_STATE_PREFIX);
+        if (samplingPriority != PrioritySampling.UNSET) {
+          traceState.append(SAMPLING_PRIORITY_PREFIX).append(samplingPriority);
+        }
+        if (null != origin) {
+          if (samplingPriority != PrioritySampling.UNSET) {
+            traceState.append(';');
+          }
+          traceState.append(ORIGIN_PREFIX).append(origin);
+        }
+        setter.set(carrier, TRACE_STATE_KEY, traceState.toString());
+      }
+
+      log.debug("{} - W3C parent context injected", context.getTraceId());
+    }
+  }
+
+  static String traceParent(final DDId traceId, final DDId spanId, final boolean sampled) {
+    final char[] chars = new char[TRACE_PARENT_LENGTH];
+    chars[0] = '0';
+    chars[1] = '0';
+    chars[TRACE_ID_OFFSET - 1] = '-';
+    final String original = traceId.toHexStringOrOriginal();
+    if (original.length() == TRACE_ID_LENGTH) {
+      // propagate an extracted 128 bit id unchanged
+      original.getChars(0, TRACE_ID_LENGTH, chars, TRACE_ID_OFFSET);
+    } else {
+      copyPadded(traceId.toHexString(), chars, TRACE_ID_OFFSET, TRACE_ID_LENGTH);
+    }
+    chars[PARENT_ID_OFFSET - 1] = '-';
+    copyPadded(spanId.toHexString(), chars, PARENT_ID_OFFSET, PARENT_ID_LENGTH);
+    chars[FLAGS_OFFSET - 1] = '-';
+    chars[FLAGS_OFFSET] = '0';
+    chars[FLAGS_OFFSET + 1] = sampled ? '1' : '0';
+    return new String(chars);
+  }
+
+  /** Copies the cached hex string of an id, left padded with zeros to {@code length} chars */
+  private static void copyPadded(
+      final String hex, final char[] chars, final int offset, final int length) {
+    final int padding = length - hex.length();
+    Arrays.fill(chars, offset, offset + padding, '0');
+    hex.getChars(0, hex.length(), chars, offset + padding);
+  }
+
+  /**
+   * Parses the hex digits between {@code start} and {@code end}, keeping the lower 64 bits.
+   *
+   * @throws NumberFormatException if one of the characters is not a lower case hex digit, which
+   *     is all the specification allows
+   */
+  static long parseHex(final String s, final int start, final int end) {
+    long result = 0;
+    for (int i = start; i < end; ++i) {
+      final char c = s.charAt(i);
+      final int digit;
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 'a' && c <= 'f') {
+        digit = c - 'a' + 10;
+      } else {
+        throw new NumberFormatException("Illegal character in " + s);
+      }
+      result = result << 4 | digit;
+    }
+    return result;
+  }
+
+  public static HttpCodec.Extractor newExtractor(final Map<String, String> tagMapping) {
+    return new TagContextExtractor(
+        tagMapping,
+        new ContextInterpreter.Factory() {
+          @Override
+          protected ContextInterpreter construct(final Map<String, String> mapping) {
+            return new W3CContextInterpreter(mapping);
+          }
+        });
+  }
+
+  private static class W3CContextInterpreter extends ContextInterpreter {
+
+    private static final int TRACE_PARENT = 0;
+    private static final int TRACE_STATE = 1;
+    private static final int TAGS = 2;
+    private static final int IGNORE = -1;
+
+    private W3CContextInterpreter(final Map<String, String> taggedHeaders) {
+      super(taggedHeaders);
+    }
+
+    @Override
+    public boolean accept(final String key, final String value) {
+      if (null == key || key.isEmpty()) {
+        return true;
+      }
+      if (LOG_EXTRACT_HEADER_NAMES) {
+        log.debug("Header: {}", key);
+      }
+      String lowerCaseKey = null;
+      int classification = IGNORE;
+      final char first = Character.toLowerCase(key.charAt(0));
+      switch (first) {
+        case 't':
+          if (TRACE_PARENT_KEY.equalsIgnoreCase(key)) {
+            classification = TRACE_PARENT;
+          } else if (TRACE_STATE_KEY.equalsIgnoreCase(key)) {
+            classification = TRACE_STATE;
+          }
+          break;
+        case 'x':
+          if (handledXForwarding(key, value)) {
+            return true;
+          }
+          break;
+        case 'f':
+          if (handledForwarding(key, value)) {
+            return true;
+          }
+          break;
+        default:
+      }
+      if (!taggedHeaders.isEmpty() && classification == IGNORE) {
+        lowerCaseKey = toLowerCase(key);
+        if (taggedHeaders.containsKey(lowerCaseKey)) {
+          classification = TAGS;
+        }
+      }
+      if (classification != IGNORE && null != value) {
+        try {
+          switch (classification) {
+            case TRACE_PARENT:
+              if (!extractTraceParent(value.trim())) {
+                invalidateContext();
+                return false;
+              }
+              break;
+            case TRACE_STATE:
+              extractTraceState(value);
+              break;
+            case TAGS:
+              {
+                final String mappedKey = taggedHeaders.get(lowerCaseKey);
+                if (null != mappedKey) {
+                  if (tags.isEmpty()) {
+                    tags = new TreeMap<>();
+                  }
+                  tags.put(mappedKey, HttpCodec.decode(firstHeaderValue(value)));
+                }
+                break;
+              }
+            default:
+          }
+        } catch (final RuntimeException e) {
+          invalidateContext();
+          log.debug("Exception when extracting context", e);
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** @return false if the header is malformed, in which case the context must be discarded */
+    private boolean extractTraceParent(final String value) {
+      final int length = value.length();
+      if (length < TRACE_PARENT_LENGTH
+          || value.charAt(TRACE_ID_OFFSET - 1) != '-'
+          || value.charAt(PARENT_ID_OFFSET - 1) != '-'
+          || value.charAt(FLAGS_OFFSET - 1) != '-') {
+        log.debug("Malformed {} header: {}", TRACE_PARENT_KEY, value);
+        return false;
+      }
+      final int version = (int) parseHex(value, 0, VERSION_LENGTH);
+      if (version == 0xff
+          || (version == 0 && length != TRACE_PARENT_LENGTH)
+          || (length > TRACE_PARENT_LENGTH && value.charAt(TRACE_PARENT_LENGTH) != '-')) {
+        log.debug("Unsupported {} header: {}", TRACE_PARENT_KEY, value);
+        return false;
+      }
+      final int traceIdEnd = TRACE_ID_OFFSET + TRACE_ID_LENGTH;
+      final long traceIdHigh = parseHex(value, TRACE_ID_OFFSET, TRACE_ID_OFFSET + 16);
+      final long traceIdLow = parseHex(value, TRACE_ID_OFFSET + 16, traceIdEnd);
+      final long parentId = parseHex(value, PARENT_ID_OFFSET, PARENT_ID_OFFSET + PARENT_ID_LENGTH);
+      final int flags = (int) parseHex(value, FLAGS_OFFSET, FLAGS_OFFSET + 2);
+      if ((traceIdHigh == 0 && traceIdLow == 0) || parentId == 0) {
+        log.debug("Invalid ids in {} header: {}", TRACE_PARENT_KEY, value);
+        return false;
+      }
+      // only keep the original when the id has more than 64 bits, which needs the substring
+      traceId =
+          traceIdHigh == 0
+              ? DDId.from(traceIdLow)
+              : DDId.fromHexTruncatedWithOriginal(value.substring(TRACE_ID_OFFSET, traceIdEnd));
+      spanId = DDId.from(parentId);
+      // an explicit priority in the trace state takes precedence
+      if (samplingPriority == defaultSamplingPriority()) {
+        samplingPriority =
+            (flags & SAMPLED_FLAG) != 0
+                ? PrioritySampling.SAMPLER_KEEP
+                : PrioritySampling.SAMPLER_DROP;
+      }
+      return true;
+    }
+
+    private void extractTraceState(final String value) {
+      // list members are separated by commas, and the dd member holds ; separated fields
+      int memberStart = 0;
+      final int length = value.length();
+      while (memberStart < length) {
+        int memberEnd = value.indexOf(',', memberStart);
+        if (memberEnd < 0) {
+          memberEnd = length;
+        }
+        while (memberStart < memberEnd && value.charAt(memberStart) == ' ') {
+          ++memberStart;
+        }
+        if (value.startsWith(DD_STATE_PREFIX, memberStart)) {
+          extractDatadogState(value, memberStart + DD_STATE_PREFIX.length(), memberEnd);
+          return;
+        }
+        memberStart = memberEnd + 1;
+      }
+    }
+
+    private void extractDatadogState(final String value, int start, final int end) {
+      while (start < end) {
+        int fieldEnd = value.indexOf(';', start);
+        if (fieldEnd < 0 || fieldEnd > end) {
+          fieldEnd = end;
+        }
+        if (value.startsWith(SAMPLING_PRIORITY_PREFIX, start)) {
+          samplingPriority =
+              Integer.parseInt(
+                  value.substring(start + SAMPLING_PRIORITY_PREFIX.length(), fieldEnd).trim());
+        } else if (value.startsWith(ORIGIN_PREFIX, start)) {
+          origin = value.substring(start + ORIGIN_PREFIX.length(), fieldEnd).trim();
+        }
+        start = fieldEnd + 1;
+      }
+    }
+  }
+}
@@ -252,6 +252,9 @@ public final class ContinuableScopeManager implements AgentScopeManager {
 
     private short referenceCount = 1;
 
+    /** The stack this scope was pushed onto, so closing it does not need to look the stack up. */
+    private ScopeStack scopeStack;
+
     private volatile Object wrapper;
     private static final AtomicReferenceFieldUpdater<ContinuableScope, Object>
         WRAPPER_FIELD_UPDATER =
@@ -270,7 +273,7 @@ public final class ContinuableScopeManager implements AgentScopeManager {
 
     @Override
     public final void close() {
-      final ScopeStack scopeStack = scopeManager.scopeStack();
+      final ScopeStack scopeStack = scopeStack();
 
       // fast check first, only perform slower check when there's an inconsistency with the stack
       if (!scopeStack.checkTop(this) && !scopeStack.checkOverdueScopes(this)) {
@@ -300,6 +303,16 @@ public final class ContinuableScopeManager implements AgentScopeManager {
       scopeStack.cleanup();
     }
 
+    /**
+     * Scopes are nearly always closed on the thread which activated them, typically from the
+     * advice holding the scope, in which case the stack the scope was pushed onto is the current
+     * stack and the thread local lookup can be skipped.
+     */
+    private ScopeStack scopeStack() {
+      final ScopeStack scopeStack = this.scopeStack;
+      return null != scopeStack && scopeStack.isCurrent() ? scopeStack : scopeManager.scopeStack();
+    }
+
     /*
      * Exists to allow stack unwinding to do a delayed call to close when the close is
      * finished properly.  e.g. When the scope is back on the top of the stack.
@@ -471,7 +484,13 @@ public final class ContinuableScopeManager implements AgentScopeManager {
    * cleanup() is called to ensure the invariant
    */
   static final class ScopeStack {
-    private final ArrayDeque<ContinuableScope> stack = new ArrayDeque<>(); // previous scopes
+    // previous scopes, created on first nested activation because most stacks never need it;
+    // this matters when there is a stack for each of a large number of short-lived (virtual)
+    // threads which typically only activate a single continuation or span
+    private ArrayDeque<ContinuableScope> stack;
+
+    // stacks are created by the thread local, so this is the thread the stack belongs to
+    private final Thread owner = Thread.currentThread();
 
     ContinuableScope top; // current scope
 
@@ -491,7 +510,7 @@ public final class ContinuableScopeManager implements AgentScopeManager {
         // no longer alive -- trigger listener & null out
         curScope.onProperClose();
         changedTop = true;
-        curScope = stack.poll();
+        curScope = null != stack ? stack.poll() : null;
       }
       if (curScope != null && curScope == overdueRootScope) {
         // we know this scope is the last on the stack and is overdue
@@ -506,11 +525,20 @@ public final class ContinuableScopeManager implements AgentScopeManager {
       }
     }
 
+    /** Returns true if this is the stack of the current thread */
+    boolean isCurrent() {
+      return owner == Thread.currentThread();
+    }
+
     /** Marks a new scope as current, pushing the previous onto the stack */
     void push(final ContinuableScope scope) {
       if (top != null) {
+        if (null == stack) {
+          stack = new ArrayDeque<>(4);
+        }
         stack.push(top);
       }
+      scope.scopeStack = this;
       top = scope;
       scope.afterActivated();
     }
@@ -533,6 +561,9 @@ public final class ContinuableScopeManager implements AgentScopeManager {
       // remaining references so the scope gets removed in the subsequent cleanup() call
       top.clearReferences();
       top.span.finishWithEndToEnd();
+      if (null == stack) {
+        return false; // we didn't find the expected scope
+      }
       // now do the same for any previous iteration scopes ahead of the expected scope
       for (ContinuableScope scope : stack) {
         if (scope.source() != ScopeSource.ITERATION.id()) {
@@ -547,12 +578,12 @@ public final class ContinuableScopeManager implements AgentScopeManager {
 
     /** Returns the current depth, including the top scope */
     int depth() {
-      return top != null ? 1 + stack.size() : 0;
+      return top != null ? 1 + (null != stack ? stack.size() : 0) : 0;
     }
 
     // DQH - regrettably needed for pre-existing tests
     void clear() {
-      stack.clear();
+      stack = null;
       top = null;
     }
   }
@@ -24,11 +24,28 @@ import java.util.Set;
 
 public class TagInterceptor {
 
+  // dispatch codes, NONE must stay zero so that misses need no explicit entry
+  private static final byte NONE = 0;
+  private static final byte RESOURCE_NAME_TAG = 1;
+  private static final byte DB_STATEMENT_TAG = 2;
+  private static final byte SERVICE_NAME_TAG = 3;
+  private static final byte PEER_SERVICE_TAG = 4;
+  private static final byte MANUAL_KEEP_TAG = 5;
+  private static final byte MANUAL_DROP_TAG = 6;
+  private static final byte SERVLET_CONTEXT_TAG = 7;
+  private static final byte SPAN_TYPE_TAG = 8;
+  private static final byte ANALYTICS_SAMPLE_RATE_TAG = 9;
+  private static final byte ERROR_TAG = 10;
+  private static final byte HTTP_STATUS_TAG = 11;
+  private static final byte ORIGIN_TAG = 12;
+  private static final byte SPLIT_SERVICE_TAG = 13;
+
   private final RuleFlags ruleFlags;
   private final boolean isServiceNameSetByUser;
   private final boolean splitByServletContext;
   private final String inferredServiceName;
   private final Set<String> splitServiceTags;
+  private final DispatchTable dispatchTable;
 
   public TagInterceptor(RuleFlags ruleFlags) {
     this(
@@ -48,64 +65,85 @@ public class TagInterceptor {
     this.splitServiceTags = splitServiceTags;
     this.ruleFlags = ruleFlags;
     splitByServletContext = splitServiceTags.contains(InstrumentationTags.SERVLET_CONTEXT);
+    this.dispatchTable = compile(splitServiceTags, ruleFlags);
+  }
+
+  /**
+   * Builds the table of tags which need intercepting, so the vast majority of tags, which need no
+   * interception, are rejected by a single lookup. Tags belonging to disabled features are mapped
+   * to {@link #NONE} explicitly so they are never treated as split-by tags.
+   */
+  private static DispatchTable compile(Set<String> splitServiceTags, RuleFlags ruleFlags) {
+    DispatchTable table = new DispatchTable(splitServiceTags.size() + 16);
+    for (String tag : splitServiceTags) {
+      table.put(tag, SPLIT_SERVICE_TAG);
+    }
+    table.put(DDTags.RESOURCE_NAME, ruleFlags.isEnabled(RESOURCE_NAME) ? RESOURCE_NAME_TAG : NONE);
+    table.put(Tags.DB_STATEMENT, DB_STATEMENT_TAG);
+    byte serviceName = ruleFlags.isEnabled(SERVICE_NAME) ? SERVICE_NAME_TAG : NONE;
+    table.put(DDTags.SERVICE_NAME, serviceName);
+    table.put("service", serviceName);
+    table.put(Tags.PEER_SERVICE, ruleFlags.isEnabled(PEER_SERVICE) ? PEER_SERVICE_TAG : NONE);
+    table.put(DDTags.MANUAL_KEEP, MANUAL_KEEP_TAG);
+    table.put(DDTags.MANUAL_DROP, ruleFlags.isEnabled(FORCE_MANUAL_DROP) ? MANUAL_DROP_TAG : NONE);
+    table.put(InstrumentationTags.SERVLET_CONTEXT, SERVLET_CONTEXT_TAG);
+    table.put(SPAN_TYPE, SPAN_TYPE_TAG);
+    table.put(ANALYTICS_SAMPLE_RATE, ANALYTICS_SAMPLE_RATE_TAG);
+    table.put(Tags.ERROR, ERROR_TAG);
+    table.put(HTTP_STATUS, HTTP_STATUS_TAG);
+    table.put(ORIGIN_KEY, ORIGIN_TAG);
+    return table;
   }
 
   public boolean interceptTag(DDSpanContext span, String tag, Object value) {
-    switch (tag) {
-      case DDTags.RESOURCE_NAME:
+    switch (dispatchTable.get(tag)) {
+      case NONE:
+        return false;
+      case RESOURCE_NAME_TAG:
         return interceptResourceName(span, value);
-      case Tags.DB_STATEMENT:
+      case DB_STATEMENT_TAG:
         return interceptDbStatement(span, value);
-      case DDTags.SERVICE_NAME:
-      case "service":
-        return interceptServiceName(SERVICE_NAME, span, value);
-      case Tags.PEER_SERVICE:
-        return interceptServiceName(PEER_SERVICE, span, value);
-      case DDTags.MANUAL_KEEP:
+      case SERVICE_NAME_TAG:
+      case PEER_SERVICE_TAG:
+      case SPLIT_SERVICE_TAG:
+        span.setServiceName(String.valueOf(value));
+        return true;
+      case MANUAL_KEEP_TAG:
         if (asBoolean(value)) {
           span.forceKeep();
           return true;
         }
         return false;
-      case DDTags.MANUAL_DROP:
-        return interceptSamplingPriority(
-            FORCE_MANUAL_DROP, USER_DROP, SamplingMechanism.MANUAL, span, value);
-      case InstrumentationTags.SERVLET_CONTEXT:
+      case MANUAL_DROP_TAG:
+        if (asBoolean(value)) {
+          span.setSamplingPriority(USER_DROP, SamplingMechanism.MANUAL);
+        }
+        return true;
+      case SERVLET_CONTEXT_TAG:
         return interceptServletContext(span, value);
-      case SPAN_TYPE:
+      case SPAN_TYPE_TAG:
         return interceptSpanType(span, value);
-      case ANALYTICS_SAMPLE_RATE:
+      case ANALYTICS_SAMPLE_RATE_TAG:
         return interceptAnalyticsSampleRate(span, value);
-      case Tags.ERROR:
+      case ERROR_TAG:
         return interceptError(span, value);
-      case HTTP_STATUS:
+      case HTTP_STATUS_TAG:
         // not set internally but may come from manual instrumentation
         return interceptHttpStatusCode(span, value);
-      case ORIGIN_KEY:
+      case ORIGIN_TAG:
         return interceptOrigin(span, value);
       default:
-        return intercept(span, tag, value);
-    }
-  }
-
-  private boolean intercept(DDSpanContext span, String tag, Object value) {
-    if (splitServiceTags.contains(tag)) {
-      span.setServiceName(String.valueOf(value));
-      return true;
+        return false;
     }
-    return false;
   }
 
   private boolean interceptResourceName(DDSpanContext span, Object value) {
-    if (ruleFlags.isEnabled(RESOURCE_NAME)) {
-      if (value instanceof CharSequence) {
-        span.setResourceName((CharSequence) value, ResourceNamePriorities.TAG_INTERCEPTOR);
-      } else {
-        span.setResourceName(String.valueOf(value), ResourceNamePriorities.TAG_INTERCEPTOR);
-      }
-      return true;
+    if (value instanceof CharSequence) {
+      span.setResourceName((CharSequence) value, ResourceNamePriorities.TAG_INTERCEPTOR);
+    } else {
+      span.setResourceName(String.valueOf(value), ResourceNamePriorities.TAG_INTERCEPTOR);
     }
-    return false;
+    return true;
   }
 
   private boolean interceptDbStatement(DDSpanContext span, Object value) {
@@ -140,30 +178,6 @@ public class TagInterceptor {
     return true;
   }
 
-  private boolean interceptServiceName(
-      RuleFlags.Feature feature, DDSpanContext span, Object value) {
-    if (ruleFlags.isEnabled(feature)) {
-      span.setServiceName(String.valueOf(value));
-      return true;
-    }
-    return false;
-  }
-
-  private boolean interceptSamplingPriority(
-      RuleFlags.Feature feature,
-      int samplingPriority,
-      int samplingMechanism,
-      DDSpanContext span,
-      Object value) {
-    if (ruleFlags.isEnabled(feature)) {
-      if (asBoolean(value)) {
-        span.setSamplingPriority(samplingPriority, samplingMechanism);
-      }
-      return true;
-    }
-    return false;
-  }
-
   private boolean interceptServletContext(DDSpanContext span, Object value) {
     // even though this tag is sometimes used to set the service name
     // (which has the side effect of marking the span as eligible for metrics
@@ -231,4 +245,51 @@ public class TagInterceptor {
     }
     return null;
   }
+
+  /**
+   * Open addressing table from tag name to dispatch code. Tag names are almost always constants,
+   * so keys are compared by identity before falling back to {@link String#equals}.
+   */
+  private static final class DispatchTable {
+    private final String[] keys;
+    private final int[] hashes;
+    private final byte[] codes;
+    private final int mask;
+
+    DispatchTable(int expectedSize) {
+      int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 4 - 1);
+      this.keys = new String[capacity];
+      this.hashes = new int[capacity];
+      this.codes = new byte[capacity];
+      this.mask = capacity - 1;
+    }
+
+    void put(String key, byte code) {
+      int hash = key.hashCode();
+      int index = spread(hash) & mask;
+      while (null != keys[index] && !keys[index].equals(key)) {
+        index = (index + 1) & mask;
+      }
+      keys[index] = key;
+      hashes[index] = hash;
+      codes[index] = code;
+    }
+
+    byte get(String key) {
+      int hash = key.hashCode();
+      int index = spread(hash) & mask;
+      String candidate;
+      while (null != (candidate = keys[index])) {
+        if (candidate == key || (hashes[index] == hash && candidate.equals(key))) {
+          return codes[index];
+        }
+        index = (index + 1) & mask;
+      }
+      return NONE;
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+  }
 }
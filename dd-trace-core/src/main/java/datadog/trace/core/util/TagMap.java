@@ -0,0 +1,552 @@
+package datadog.trace.core.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Open-addressing map used to store span tags.
+ *
+ * <p>Reads never block: the table is published through a volatile field and entries are immutable
+ * apart from their volatile value, so {@link #get(Object)} and iteration can run concurrently with
+ * writers and observe a weakly consistent view, similar to {@code ConcurrentHashMap}.
+ *
+ * <p>Writers are expected to be mostly single threaded (the thread which owns the span), so they
+ * serialize on a single CAS'd flag instead of a monitor. An uncontended write costs one CAS, and
+ * overwriting the value of an existing key reuses its entry, so re-tagging does not allocate.
+ *
+ * <p>Removed keys keep their entry with a {@code null} value so that probe sequences stay intact;
+ * those tombstones are dropped the next time the table is rebuilt.
+ *
+ * <p>Iterating over {@link #entrySet()} returns the entries stored in the table, which lets the
+ * trace mappers serialize tags without copying them to an intermediate map.
+ *
+ * <p>Metrics set through {@link #putLong(String, long)} and {@link #putDouble(String, double)} are
+ * kept unboxed in their entry and only boxed if read back through the {@link Map} API. The map
+ * also counts its numeric values, so serializers can size the metrics and meta sections without
+ * inspecting every value first.
+ *
+ * <p>When span recycling is enabled, maps are returned to a {@link TagMapPool} once their span has
+ * been serialized. Writes to a released map are dropped and logged at debug level, since they
+ * reveal a span that is still being modified after it was written. Recycled spans swap their map
+ * for {@link #RELEASED} before returning it to the pool, so those writes never reach a map which
+ * has been reused.
+ */
+public final class TagMap extends AbstractMap<String, Object> {
+
+  private static final Logger log = LoggerFactory.getLogger(TagMap.class);
+
+  private static final int MIN_CAPACITY = 8;
+
+  static final byte OBJECT = 0;
+  static final byte LONG = 1;
+  static final byte DOUBLE = 2;
+
+  /** Value of entries whose actual value is stored unboxed */
+  private static final Object PRIMITIVE = new Object();
+
+  // writes are short, so contended writers spin briefly before parking, which they only end up
+  // doing while the tags are locked for serialization
+  private static final int MAX_SPINS = 64;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private static final AtomicIntegerFieldUpdater<TagMap> WRITING =
+      AtomicIntegerFieldUpdater.newUpdater(TagMap.class, "writing");
+
+  /** Empty map which ignores writes, held by spans whose tags have been recycled */
+  public static final TagMap RELEASED = new TagMap(0);
+
+  static {
+    RELEASED.release();
+  }
+
+  private volatile Entry[] table;
+  private volatile int size;
+  private volatile int numericSize;
+  // number of occupied slots, including tombstones; only accessed by the writer
+  private int used;
+
+  private volatile int writing;
+  // the thread holding the write lock, only compared to the current thread when the lock is busy
+  private Thread owner;
+  // only accessed by the writer
+  private boolean released;
+
+  private EntrySet entrySet;
+
+  public TagMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /** @param expectedSize number of tags expected to be stored without resizing */
+  public TagMap(int expectedSize) {
+    this.table = new Entry[tableSizeFor(expectedSize)];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** @return the number of values which are numbers, whether boxed or not */
+  public int numericSize() {
+    return numericSize;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Entry entry = find(table, (String) key);
+    return null == entry ? null : entry.getValue();
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    if (null == key) {
+      throw new NullPointerException("key");
+    }
+    if (null == value) {
+      return remove(key);
+    }
+    lock();
+    try {
+      if (released) {
+        onWriteAfterRelease(key);
+        return null;
+      }
+      Entry entry = entryForWrite(key, OBJECT);
+      Object previous = entry.getValue();
+      if (value instanceof Number) {
+        if (!(previous instanceof Number)) {
+          ++numericSize;
+        }
+      } else if (previous instanceof Number) {
+        --numericSize;
+      }
+      entry.value = value;
+      if (null == previous) {
+        ++size;
+      }
+      rebuildIfNeeded();
+      return previous;
+    } finally {
+      unlock();
+    }
+  }
+
+  /** Stores the value without boxing it, unlike {@link #put(String, Object)}. */
+  public void putLong(String key, long value) {
+    putPrimitive(key, LONG, value);
+  }
+
+  /** Stores the value without boxing it, unlike {@link #put(String, Object)}. */
+  public void putDouble(String key, double value) {
+    putPrimitive(key, DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  private void putPrimitive(String key, byte kind, long bits) {
+    if (null == key) {
+      throw new NullPointerException("key");
+    }
+    lock();
+    try {
+      if (released) {
+        onWriteAfterRelease(key);
+        return;
+      }
+      Entry entry = entryForWrite(key, kind);
+      Object previous = entry.value;
+      entry.bits = bits;
+      if (PRIMITIVE != previous) {
+        // publish after the bits so readers never see the marker without them
+        entry.value = PRIMITIVE;
+        if (null == previous) {
+          ++size;
+        }
+        if (!(previous instanceof Number)) {
+          ++numericSize;
+        }
+      }
+      rebuildIfNeeded();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Finds the entry for the key, or adds an empty one without rebuilding the table. Entries only
+   * ever hold one kind of value, so when the kind changes the entry is replaced by one holding the
+   * previous value boxed, which the caller then accounts for and overwrites. Must be called while
+   * holding the write lock.
+   */
+  private Entry entryForWrite(String key, byte kind) {
+    Entry[] tab = table;
+    int hash = spread(key.hashCode());
+    int mask = tab.length - 1;
+    int index = hash & mask;
+    Entry entry;
+    while (null != (entry = tab[index])) {
+      if (entry.hash == hash && key.equals(entry.key)) {
+        if (entry.kind != kind) {
+          entry = new Entry(key, hash, kind, entry.getValue());
+          tab[index] = entry;
+        }
+        return entry;
+      }
+      index = (index + 1) & mask;
+    }
+    entry = new Entry(key, hash, kind, null);
+    tab[index] = entry;
+    ++used;
+    return entry;
+  }
+
+  /** Must be called after the written entry holds its value, so that it survives the rebuild */
+  private void rebuildIfNeeded() {
+    Entry[] tab = table;
+    if (used > threshold(tab.length)) {
+      rebuild(tab);
+    }
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ?> map) {
+    for (Map.Entry<? extends String, ?> entry : map.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    lock();
+    try {
+      if (released) {
+        onWriteAfterRelease((String) key);
+        return null;
+      }
+      Entry entry = find(table, (String) key);
+      if (null == entry) {
+        return null;
+      }
+      Object previous = entry.getValue();
+      if (null != previous) {
+        entry.value = null;
+        --size;
+        if (previous instanceof Number) {
+          --numericSize;
+        }
+      }
+      return previous;
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock();
+    try {
+      clearTable();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Clears the map and rejects further writes until {@link #reuse()} is called.
+   *
+   * @return the capacity of the table, which can be used to decide whether to keep the map
+   */
+  int release() {
+    lock();
+    try {
+      released = true;
+      clearTable();
+      return table.length;
+    } finally {
+      unlock();
+    }
+  }
+
+  void reuse() {
+    lock();
+    try {
+      released = false;
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    EntrySet entries = entrySet;
+    if (null == entries) {
+      entrySet = entries = new EntrySet();
+    }
+    return entries;
+  }
+
+  /**
+   * Blocks writers until {@link #unlockWrites()} is called. Used when a stable view of the tags is
+   * required, for example while serializing them after writing the number of entries.
+   *
+   * <p>The lock is not reentrant: the calling thread must not modify the map until it unlocks it.
+   * Such writes fail with an {@link IllegalStateException} rather than waiting forever.
+   */
+  public void lockWrites() {
+    lock();
+  }
+
+  public void unlockWrites() {
+    unlock();
+  }
+
+  private void lock() {
+    if (!WRITING.compareAndSet(this, 0, 1)) {
+      lockContended();
+    }
+    owner = Thread.currentThread();
+  }
+
+  private void lockContended() {
+    if (owner == Thread.currentThread()) {
+      throw new IllegalStateException("Tags modified while their writes are locked");
+    }
+    int spins = 0;
+    while (!WRITING.compareAndSet(this, 0, 1)) {
+      if (++spins < MAX_SPINS) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, PARK_NANOS);
+      }
+    }
+  }
+
+  private void unlock() {
+    owner = null;
+    writing = 0;
+  }
+
+  private void clearTable() {
+    Arrays.fill(table, null);
+    size = 0;
+    numericSize = 0;
+    used = 0;
+  }
+
+  private void onWriteAfterRelease(String key) {
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Ignoring write to tag {} of a span which has already been written",
+          key,
+          new IllegalStateException("span modified after being written"));
+    }
+  }
+
+  /** Copies the live entries to a new table, dropping tombstones and growing if necessary */
+  private void rebuild(Entry[] tab) {
+    int capacity = tab.length;
+    if (size > threshold(capacity) / 2) {
+      capacity <<= 1;
+    }
+    Entry[] rebuilt = new Entry[capacity];
+    int mask = capacity - 1;
+    for (Entry entry : tab) {
+      if (null != entry && null != entry.value) {
+        int index = entry.hash & mask;
+        while (null != rebuilt[index]) {
+          index = (index + 1) & mask;
+        }
+        rebuilt[index] = entry;
+      }
+    }
+    used = size;
+    table = rebuilt;
+  }
+
+  private static Entry find(Entry[] tab, String key) {
+    int hash = spread(key.hashCode());
+    int mask = tab.length - 1;
+    int index = hash & mask;
+    Entry entry;
+    while (null != (entry = tab[index])) {
+      if (entry.hash == hash && key.equals(entry.key)) {
+        return entry;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int threshold(int capacity) {
+    return capacity - (capacity >>> 2);
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (threshold(capacity) < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /**
+   * Entries hold either an object or an unboxed long or double. Serializers can check {@link
+   * #isNumber()} and read primitive values through {@link #longValue()} and {@link #doubleValue()}
+   * to avoid boxing them.
+   */
+  public static final class Entry implements Map.Entry<String, Object> {
+    final String key;
+    final int hash;
+    final byte kind;
+    volatile long bits;
+    volatile Object value;
+
+    Entry(String key, int hash, byte kind, Object value) {
+      this.key = key;
+      this.hash = hash;
+      this.kind = kind;
+      this.value = value;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      Object v = value;
+      if (PRIMITIVE == v) {
+        long bits = this.bits;
+        return kind == LONG ? (Object) bits : (Object) Double.longBitsToDouble(bits);
+      }
+      return v;
+    }
+
+    public boolean isNumber() {
+      return kind != OBJECT || value instanceof Number;
+    }
+
+    /** @return true when the value is stored as an unboxed long */
+    public boolean isLong() {
+      return kind == LONG;
+    }
+
+    /** @return true when the value is stored as an unboxed double */
+    public boolean isDouble() {
+      return kind == DOUBLE;
+    }
+
+    public long longValue() {
+      return kind == LONG ? bits : ((Number) getValue()).longValue();
+    }
+
+    public double doubleValue() {
+      return kind == DOUBLE ? Double.longBitsToDouble(bits) : ((Number) getValue()).doubleValue();
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+      Object v = getValue();
+      return key.equals(that.getKey()) && null != v && v.equals(that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      Object v = getValue();
+      return key.hashCode() ^ (null == v ? 0 : v.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+      return new EntryIterator(table);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private static final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+    private final Entry[] tab;
+    private int index;
+    private Entry next;
+
+    EntryIterator(Entry[] tab) {
+      this.tab = tab;
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return null != next;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      Entry current = next;
+      if (null == current) {
+        throw new NoSuchElementException();
+      }
+      advance();
+      return current;
+    }
+
+    private void advance() {
+      next = null;
+      while (index < tab.length) {
+        Entry entry = tab[index++];
+        if (null != entry && null != entry.value) {
+          next = entry;
+          return;
+        }
+      }
+    }
+  }
+}
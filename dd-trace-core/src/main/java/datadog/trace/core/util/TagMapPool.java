@@ -0,0 +1,62 @@
+package datadog.trace.core.util;
+
+import datadog.trace.api.Config;
+import org.jctools.queues.MpmcArrayQueue;
+
+/**
+ * Pool of {@link TagMap}s, used when span recycling is enabled.
+ *
+ * <p>Maps are acquired on application threads when spans are created, and released by the trace
+ * serializing threads once the span has been written, so the pool is a bounded MPMC queue rather
+ * than a thread local. Only maps which did not grow beyond {@link #MAX_POOLED_CAPACITY} slots are
+ * kept, so that a single very large span does not pin a large table forever.
+ *
+ * <p>Spans which are still referenced once they have been written no longer see their tags: their
+ * map is replaced by {@link TagMap#RELEASED} before it is returned to the pool, so late writes are
+ * dropped instead of landing in the tags of whichever span reused the map.
+ */
+public final class TagMapPool {
+
+  private static final int POOL_SIZE = 4096;
+  static final int MAX_POOLED_CAPACITY = 64;
+
+  private static final TagMapPool INSTANCE =
+      new TagMapPool(Config.get().isTraceSpanRecyclingEnabled(), POOL_SIZE);
+
+  private final boolean enabled;
+  private final MpmcArrayQueue<TagMap> pool;
+
+  TagMapPool(boolean enabled, int poolSize) {
+    this.enabled = enabled;
+    this.pool = enabled ? new MpmcArrayQueue<TagMap>(poolSize) : null;
+  }
+
+  public static boolean isEnabled() {
+    return INSTANCE.enabled;
+  }
+
+  public static TagMap acquire(int expectedSize) {
+    return INSTANCE.acquireMap(expectedSize);
+  }
+
+  public static void release(TagMap tags) {
+    INSTANCE.releaseMap(tags);
+  }
+
+  TagMap acquireMap(int expectedSize) {
+    if (enabled) {
+      TagMap tags = pool.relaxedPoll();
+      if (null != tags) {
+        tags.reuse();
+        return tags;
+      }
+    }
+    return new TagMap(expectedSize);
+  }
+
+  void releaseMap(TagMap tags) {
+    if (enabled && tags != TagMap.RELEASED && tags.release() <= MAX_POOLED_CAPACITY) {
+      pool.relaxedOffer(tags);
+    }
+  }
+}
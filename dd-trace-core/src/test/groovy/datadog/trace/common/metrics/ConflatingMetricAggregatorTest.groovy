@@ -197,6 +197,91 @@ class ConflatingMetricAggregatorTest extends DDSpecification {
     count << [10, 100]
   }
 
+  def "spans published concurrently are all aggregated"() {
+    setup:
+    MetricWriter writer = Mock(MetricWriter)
+    Sink sink = Stub(Sink)
+    DDAgentFeaturesDiscovery features = Mock(DDAgentFeaturesDiscovery)
+    features.supportsMetrics() >> true
+    ConflatingMetricsAggregator aggregator = new ConflatingMetricsAggregator(empty,
+      features, sink, writer, 10, queueSize, reportingInterval, SECONDS)
+    long duration = 100
+    int threadCount = 8
+    int spansPerThread = 1000
+    aggregator.start()
+
+    when:
+    CountDownLatch latch = new CountDownLatch(1)
+    def threads = (1..threadCount).collect {
+      Thread.start {
+        for (int i = 0; i < spansPerThread; ++i) {
+          aggregator.publish([
+            new SimpleSpan("service", "operation", "resource", "type", true, false, false, 0, duration, HTTP_OK)
+          ])
+        }
+      }
+    }
+    threads*.join()
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then: "no span is lost between the stripes and the aggregator"
+    1 * writer.startBucket(1, _, SECONDS.toNanos(reportingInterval))
+    1 * writer.add(new MetricKey("resource", "service", "operation", "type", HTTP_OK), _) >> { MetricKey key, AggregateMetric value ->
+      assert value.getHitCount() == threadCount * spansPerThread
+      assert value.getDuration() == threadCount * spansPerThread * duration
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+
+    cleanup:
+    aggregator.close()
+  }
+
+  def "pending batches across stripes are bounded by the maximum number of aggregates"() {
+    setup:
+    int maxAggregates = 10
+    MetricWriter writer = Mock(MetricWriter)
+    Sink sink = Stub(Sink)
+    DDAgentFeaturesDiscovery features = Mock(DDAgentFeaturesDiscovery)
+    features.supportsMetrics() >> true
+    ConflatingMetricsAggregator aggregator = new ConflatingMetricsAggregator(empty,
+      features, sink, writer, maxAggregates, queueSize, reportingInterval, SECONDS)
+    long duration = 100
+    int threadCount = 8
+    aggregator.start()
+
+    when: "every thread publishes a span for every key"
+    CountDownLatch latch = new CountDownLatch(1)
+    def threads = (1..threadCount).collect {
+      Thread.start {
+        for (int i = 0; i < maxAggregates; ++i) {
+          aggregator.publish([
+            new SimpleSpan("service" + i, "operation", "resource", "type", true, false, false, 0, duration, HTTP_OK)
+          ])
+        }
+      }
+    }
+    threads*.join()
+
+    then:
+    aggregator.pending.sum { it.size() } <= maxAggregates
+
+    when:
+    aggregator.report()
+    latch.await(2, SECONDS)
+
+    then: "spans which could not be conflated are still aggregated"
+    1 * writer.startBucket(maxAggregates, _, SECONDS.toNanos(reportingInterval))
+    maxAggregates * writer.add(_, _) >> { MetricKey key, AggregateMetric value ->
+      assert value.getHitCount() == threadCount
+      assert value.getDuration() == threadCount * duration
+    }
+    1 * writer.finishBucket() >> { latch.countDown() }
+
+    cleanup:
+    aggregator.close()
+  }
+
   def "test least recently written to aggregate flushed when size limit exceeded"() {
     setup:
     int maxAggregates = 10
@@ -434,6 +519,19 @@ class ConflatingMetricAggregatorTest extends DDSpecification {
     aggregator.close()
   }
 
+  def "sketches are sized to fit the memory budget"() {
+    expect:
+    ConflatingMetricsAggregator.maxSketchBins(budget, maxAggregates) == bins
+
+    where:
+    budget     | maxAggregates | bins
+    32L << 20  | 2048          | 1024
+    32L << 20  | 4096          | 512
+    32L << 20  | 1 << 20       | 64
+    1L << 40   | 1             | 1024
+    0          | 0             | 64
+  }
+
   def reportAndWaitUntilEmpty(ConflatingMetricsAggregator aggregator) {
     waitUntilEmpty(aggregator)
     aggregator.report()
@@ -0,0 +1,71 @@
+package datadog.trace.common.metrics
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString
+import datadog.trace.test.util.DDSpecification
+
+class MetricKeyCacheTest extends DDSpecification {
+
+  def "keys are only created on a miss"() {
+    setup:
+    def cache = new MetricKeyCache(64, 16)
+
+    when:
+    def first = cache.get(resource, service, operation, type, 200)
+    def second = cache.get(resource, service, operation, type, 200)
+
+    then:
+    first.is(second)
+    first == new MetricKey(resource, service, operation, type, 200)
+    first.hashCode() == MetricKey.hashOf(resource, service, operation, type, 200)
+
+    where:
+    resource                              | service   | operation                              | type
+    "resource"                            | "service" | "operation"                            | "web"
+    UTF8BytesString.create("resource")    | "service" | UTF8BytesString.create("operation")    | null
+    new StringBuilder("resource")         | "service" | "operation"                            | ""
+    null                                  | null      | null                                   | null
+  }
+
+  def "keys with different fields are distinct"() {
+    setup:
+    def cache = new MetricKeyCache(64, 16)
+    def key = cache.get("resource", "service", "operation", "web", 200)
+
+    expect:
+    !cache.get(resource, service, operation, type, status).is(key)
+    cache.get(resource, service, operation, type, status) == new MetricKey(resource, service, operation, type, status)
+
+    where:
+    resource    | service    | operation    | type  | status
+    "resource2" | "service"  | "operation"  | "web" | 200
+    "resource"  | "service2" | "operation"  | "web" | 200
+    "resource"  | "service"  | "operation2" | "web" | 200
+    "resource"  | "service"  | "operation"  | "db"  | 200
+    "resource"  | "service"  | "operation"  | "web" | 404
+  }
+
+  def "keys share encoded names"() {
+    setup:
+    def cache = new MetricKeyCache(64, 16)
+
+    when:
+    def ok = cache.get("resource", "service", "operation", "web", 200)
+    def notFound = cache.get("resource", "service", "operation", "web", 404)
+
+    then:
+    ok.getResource().is(notFound.getResource())
+    ok.getService().is(notFound.getService())
+    ok.getOperationName().is(notFound.getOperationName())
+  }
+
+  def "colliding keys are still correct"() {
+    setup:
+    def cache = new MetricKeyCache(1, 16)
+
+    expect:
+    (0..100).every {
+      def key = cache.get("resource" + (it % 3), "service", "operation", "web", 200)
+      key == new MetricKey("resource" + (it % 3), "service", "operation", "web", 200)
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package datadog.trace.common.sampling
+
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString
+import datadog.trace.core.DDSpan
+import datadog.trace.test.util.DDSpecification
+
+import static datadog.trace.common.sampling.SamplingRule.AlwaysMatchesSamplingRule
+import static datadog.trace.common.sampling.SamplingRule.OperationSamplingRule
+import static datadog.trace.common.sampling.SamplingRule.ServiceSamplingRule
+
+class CompiledSamplingRulesTest extends DDSpecification {
+
+  static final List<SamplingRule<DDSpan>> RULES = [
+    new ServiceSamplingRule<DDSpan>("service-a", new DeterministicSampler<DDSpan>(0.1)),
+    new OperationSamplingRule<DDSpan>("http.*", new DeterministicSampler<DDSpan>(0.2)),
+    new OperationSamplingRule<DDSpan>("db.query", new DeterministicSampler<DDSpan>(0.3)),
+    new ServiceSamplingRule<DDSpan>("service-[bc]", new DeterministicSampler<DDSpan>(0.4)),
+    new ServiceSamplingRule<DDSpan>("service-a", new DeterministicSampler<DDSpan>(0.5)),
+    new ServiceSamplingRule<DDSpan>("service-d", new DeterministicSampler<DDSpan>(0.6))
+  ]
+
+  def "matches the same rule as the rules in order: #service #operation"() {
+    setup:
+    CompiledSamplingRules<DDSpan> compiled = CompiledSamplingRules.compile(RULES)
+    DDSpan span = newSpan(service, operation)
+    CharSequence encoded = null == operation ? null : UTF8BytesString.create(operation)
+
+    expect:
+    compiled.match(span) == RULES.find { it.matches(span) }
+    // decisions are memoized
+    compiled.match(newSpan(service, encoded)) == RULES.find { it.matches(span) }
+
+    where:
+    service     | operation
+    "service-a" | "http.request"
+    "service-b" | "http.request"
+    "service-b" | "db.query"
+    "service-c" | "servlet.request"
+    "service-d" | "db.query"
+    "service-d" | "servlet.request"
+    "service-e" | "servlet.request"
+    "service-e" | null
+    null        | "db.query"
+  }
+
+  def "rules after an always matching rule are ignored"() {
+    setup:
+    def always = new AlwaysMatchesSamplingRule<DDSpan>(new DeterministicSampler<DDSpan>(1.0))
+    def rules = [RULES[0], always, RULES[2]]
+    CompiledSamplingRules<DDSpan> compiled = CompiledSamplingRules.compile(rules)
+
+    expect:
+    compiled.match(newSpan("service-a", "db.query")) == RULES[0]
+    compiled.match(newSpan("service-b", "db.query")) == always
+  }
+
+  def "rules depending on more than names are not compiled"() {
+    setup:
+    def custom = new SamplingRule<DDSpan>(new DeterministicSampler<DDSpan>(1.0)) {
+        @Override
+        boolean matches(DDSpan span) {
+          return span.getTag("env") == "prod"
+        }
+      }
+
+    expect:
+    CompiledSamplingRules.compile(RULES + [custom]) == null
+  }
+
+  DDSpan newSpan(String service, CharSequence operation) {
+    return Stub(DDSpan) {
+      getServiceName() >> service
+      getOperationName() >> operation
+    }
+  }
+}
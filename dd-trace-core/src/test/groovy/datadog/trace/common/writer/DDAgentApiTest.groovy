@@ -29,10 +29,12 @@ import org.msgpack.jackson.dataformat.MessagePackFactory
 import spock.lang.Shared
 import spock.lang.Timeout
 import java.nio.ByteBuffer
+import java.nio.channels.Channels
 import java.util.concurrent.RejectedExecutionException
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicLong
 import java.util.concurrent.atomic.AtomicReference
+import java.util.zip.GZIPInputStream
 
 import static datadog.trace.agent.test.server.http.TestHttpServer.httpServer
 
@@ -325,6 +327,35 @@ class DDAgentApiTest extends DDCoreSpecification {
     // spotless:on
   }
 
+  def "content is gzipped when compression is enabled"() {
+    setup:
+    def agent = httpServer {
+      handlers {
+        put(agentVersion) {
+          response.send()
+        }
+      }
+    }
+    def client = createAgentApi(agent.address.toString(), true)[1]
+    def traces = [[buildSpan(1L, "service.name", "my-service")]]
+    traces.each { it.each { it.finish() } }
+    def expected = prepareTraces(agentVersion, traces)
+    def expectedBytes = new ByteArrayOutputStream()
+    expected.writeTo(Channels.newChannel(expectedBytes))
+
+    expect:
+    client.sendSerializedTraces(prepareTraces(agentVersion, traces)).success()
+    agent.lastRequest.headers.get("Content-Encoding") == "gzip"
+    agent.lastRequest.contentType == "application/msgpack"
+    new GZIPInputStream(new ByteArrayInputStream(agent.lastRequest.body)).bytes == expectedBytes.toByteArray()
+
+    cleanup:
+    agent.close()
+
+    where:
+    agentVersion << ["v0.4/traces", "v0.5/traces"]
+  }
+
   def "Embedded HTTP client rejects async requests"() {
     setup:
     def agent = newAgent("v0.5/traces")
@@ -413,11 +444,11 @@ class DDAgentApiTest extends DDCoreSpecification {
     }
   }
 
-  def createAgentApi(String url) {
+  def createAgentApi(String url, boolean gzipEnabled = false) {
     HttpUrl agentUrl = HttpUrl.get(url)
     OkHttpClient client = OkHttpUtils.buildHttpClient(agentUrl, 1000)
     DDAgentFeaturesDiscovery discovery = new DDAgentFeaturesDiscovery(client, monitoring, agentUrl, true, true)
-    return [discovery, new DDAgentApi(client, agentUrl, discovery, monitoring, false)]
+    return [discovery, new DDAgentApi(client, agentUrl, discovery, monitoring, false, gzipEnabled)]
   }
 
   DDSpan buildSpan(long timestamp, String tag, String value) {
@@ -66,4 +66,17 @@ class MultiWriterTest extends DDSpecification {
     1 * mockW2.incrementDropCounts(0)
     0 * _
   }
+
+  def "agent writers sharing traces with other writers do not recycle tags"() {
+    setup:
+    DDAgentWriter agentWriter = Mock()
+    Writer otherWriter = Mock()
+
+    when:
+    new MultiWriter([agentWriter, otherWriter] as Writer[])
+
+    then:
+    1 * agentWriter.disableTagRecycling()
+    0 * _
+  }
 }
@@ -8,6 +8,7 @@ import datadog.trace.common.writer.ddagent.DDAgentApi
 import datadog.communication.ddagent.DDAgentFeaturesDiscovery
 import datadog.trace.common.writer.ddagent.Payload
 import datadog.trace.common.writer.ddagent.PayloadDispatcher
+import datadog.trace.common.writer.ddagent.PayloadSpillBuffer
 import datadog.trace.core.CoreTracer
 import datadog.trace.core.DDSpan
 import datadog.trace.core.DDSpanContext
@@ -19,6 +20,8 @@ import spock.lang.Shared
 import spock.lang.Timeout
 
 import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 
@@ -53,6 +56,36 @@ class PayloadDispatcherTest extends DDSpecification {
     traceEndpoint << ["v0.5/traces", "v0.4/traces"]
   }
 
+  @Timeout(5)
+  def "flush small payloads when adaptive batching is enabled"() {
+    setup:
+    AtomicBoolean flushed = new AtomicBoolean()
+    int sizeInBytes = 0
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery)
+    discovery.getTraceEndpoint() >> traceEndpoint
+    DDAgentApi api = Mock(DDAgentApi)
+    api.sendSerializedTraces(_) >> {
+      Payload payload = it[0]
+      sizeInBytes = payload.sizeInBytes()
+      flushed.set(true)
+      return DDAgentApi.Response.success(200)
+    }
+    PayloadDispatcher dispatcher = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, null, true)
+    List<DDSpan> trace = [realSpan()]
+    when:
+    while (!flushed.get()) {
+      dispatcher.addTrace(trace)
+    }
+
+    then: "the dispatcher has flushed well before its buffer is full"
+    sizeInBytes >= 64 << 10
+    sizeInBytes < 128 << 10
+
+    where:
+    traceEndpoint << ["v0.5/traces", "v0.4/traces"]
+  }
+
   def "should flush buffer on demand"() {
     setup:
     HealthMetrics healthMetrics = Mock(HealthMetrics)
@@ -145,6 +178,214 @@ class PayloadDispatcherTest extends DDSpecification {
     newPayload.droppedTraces() == 0
   }
 
+  def "dropped counts are shared by dispatchers and reported once"() {
+    setup:
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentApi api = Mock(DDAgentApi)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery) {
+      it.getTraceEndpoint() >> "v0.4/traces"
+    }
+    PayloadDispatcher.DroppedCounts droppedCounts = new PayloadDispatcher.DroppedCounts()
+    PayloadDispatcher first = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, null, false, droppedCounts)
+    PayloadDispatcher second = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, null, false, droppedCounts)
+
+    when:
+    first.addTrace([])
+    second.addTrace([])
+    first.onDroppedTrace(3)
+    second.onDroppedTrace(4)
+    Payload payload = second.newPayload(1, ByteBuffer.allocate(0))
+    Payload otherPayload = first.newPayload(1, ByteBuffer.allocate(0))
+
+    then:
+    payload.droppedSpans() == 7
+    payload.droppedTraces() == 2
+    otherPayload.droppedSpans() == 0
+    otherPayload.droppedTraces() == 0
+  }
+
+  @Timeout(10)
+  def "dispatchers sharing a spill buffer replay each payload once and in order"() {
+    setup:
+    def dir = Files.createTempDirectory("spill")
+    PayloadSpillBuffer spillBuffer = PayloadSpillBuffer.create(dir.toString(), 1 << 20)
+    AtomicBoolean agentAvailable = new AtomicBoolean()
+    List<Integer> sent = Collections.synchronizedList([])
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery) {
+      it.getTraceEndpoint() >> "v0.4/traces"
+    }
+    DDAgentApi api = Stub(DDAgentApi) {
+      it.sendSerializedTraces(_) >> { Payload payload ->
+        if (!agentAvailable.get()) {
+          return DDAgentApi.Response.failed(503)
+        }
+        sent.add(payload.traceCount())
+        // widen the window between sending and removing a replayed payload
+        Thread.sleep(5)
+        return DDAgentApi.Response.success(200)
+      }
+    }
+    List<PayloadDispatcher> dispatchers = (0..<PayloadDispatcher.MAX_REPLAYED_PAYLOADS).collect {
+      new PayloadDispatcher(discovery, api, healthMetrics, monitoring, spillBuffer)
+    }
+    List<DDSpan> trace = [realSpan()]
+
+    when: "each dispatcher spills a payload with a distinct trace count, greater than one"
+    dispatchers.eachWithIndex { dispatcher, i ->
+      (i + 2).times { dispatcher.addTrace(trace) }
+      dispatcher.flush()
+    }
+
+    then:
+    spillBuffer.size() == dispatchers.size()
+    sent.isEmpty()
+
+    when: "all dispatchers send a single trace and replay at the same time"
+    agentAvailable.set(true)
+    CountDownLatch start = new CountDownLatch(1)
+    List<Thread> threads = dispatchers.collect { dispatcher ->
+      Thread.start {
+        start.await()
+        dispatcher.addTrace(trace)
+        dispatcher.flush()
+      }
+    }
+    start.countDown()
+    threads*.join()
+    while (!spillBuffer.isEmpty()) {
+      dispatchers[0].flush()
+    }
+
+    then:
+    sent.findAll { it > 1 } == (2..dispatchers.size() + 1).toList()
+
+    cleanup:
+    spillBuffer?.close()
+    dir.toFile().deleteDir()
+  }
+
+  def "replay is bounded per call and waits for the agent to accept a payload"() {
+    setup:
+    def dir = Files.createTempDirectory("spill")
+    PayloadSpillBuffer spillBuffer = PayloadSpillBuffer.create(dir.toString(), 1 << 20)
+    AtomicBoolean agentAvailable = new AtomicBoolean()
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery) {
+      it.getTraceEndpoint() >> "v0.4/traces"
+    }
+    DDAgentApi api = Stub(DDAgentApi) {
+      it.sendSerializedTraces(_) >> {
+        agentAvailable.get() ? DDAgentApi.Response.success(200) : DDAgentApi.Response.failed(503)
+      }
+    }
+    PayloadDispatcher dispatcher = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, spillBuffer)
+    int spilled = PayloadDispatcher.MAX_REPLAYED_PAYLOADS * 3
+    spilled.times {
+      dispatcher.addTrace([realSpan()])
+      dispatcher.flush()
+    }
+
+    when: "the agent is back, but the last payload was not accepted"
+    agentAvailable.set(true)
+    dispatcher.flush()
+
+    then:
+    spillBuffer.size() == spilled
+
+    when: "a payload is accepted, then the dispatcher is flushed"
+    dispatcher.addTrace([realSpan()])
+    dispatcher.flush()
+
+    then: "replayed once after the send and once by the flush"
+    spillBuffer.size() == spilled - 2 * PayloadDispatcher.MAX_REPLAYED_PAYLOADS
+
+    when:
+    dispatcher.flush()
+
+    then:
+    spillBuffer.isEmpty()
+
+    cleanup:
+    spillBuffer?.close()
+    dir.toFile().deleteDir()
+  }
+
+  def "rejected payloads are reported and not spilled"() {
+    setup:
+    def dir = Files.createTempDirectory("spill")
+    PayloadSpillBuffer spillBuffer = PayloadSpillBuffer.create(dir.toString(), 1 << 20)
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery) {
+      it.getTraceEndpoint() >> "v0.4/traces"
+    }
+    DDAgentApi api = Stub(DDAgentApi) {
+      it.sendSerializedTraces(_) >> DDAgentApi.Response.failed(status)
+    }
+    PayloadDispatcher dispatcher = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, spillBuffer)
+
+    when:
+    dispatcher.addTrace([realSpan()])
+    dispatcher.flush()
+
+    then:
+    1 * healthMetrics.onFailedSend(1, _, _)
+    spillBuffer.size() == spilledCount
+
+    cleanup:
+    spillBuffer?.close()
+    dir.toFile().deleteDir()
+
+    where:
+    status | spilledCount
+    400    | 0
+    413    | 0
+    429    | 1
+    503    | 1
+  }
+
+  def "spilled payloads which keep failing are dropped"() {
+    setup:
+    def dir = Files.createTempDirectory("spill")
+    PayloadSpillBuffer spillBuffer = PayloadSpillBuffer.create(dir.toString(), 1 << 20)
+    AtomicBoolean agentAvailable = new AtomicBoolean()
+    HealthMetrics healthMetrics = Mock(HealthMetrics)
+    DDAgentFeaturesDiscovery discovery = Mock(DDAgentFeaturesDiscovery) {
+      it.getTraceEndpoint() >> "v0.4/traces"
+    }
+    DDAgentApi api = Stub(DDAgentApi) {
+      it.sendSerializedTraces(_) >> { Payload payload ->
+        // only the spilled payload, which has two traces, keeps failing
+        agentAvailable.get() && payload.traceCount() == 1 ? DDAgentApi.Response.success(200) : DDAgentApi.Response.failed(503)
+      }
+    }
+    PayloadDispatcher dispatcher = new PayloadDispatcher(discovery, api, healthMetrics, monitoring, spillBuffer)
+    dispatcher.addTrace([realSpan()])
+    dispatcher.addTrace([realSpan()])
+    dispatcher.flush()
+    agentAvailable.set(true)
+
+    when:
+    (PayloadDispatcher.MAX_REPLAY_ATTEMPTS - 1).times {
+      dispatcher.addTrace([realSpan()])
+      dispatcher.flush()
+    }
+
+    then:
+    spillBuffer.size() == 1
+
+    when:
+    dispatcher.addTrace([realSpan()])
+    dispatcher.flush()
+
+    then:
+    spillBuffer.isEmpty()
+    1 * healthMetrics.onFailedSend(2, _, _)
+
+    cleanup:
+    spillBuffer?.close()
+    dir.toFile().deleteDir()
+  }
 
   def realSpan() {
     CoreTracer tracer = Mock(CoreTracer)
@@ -1,5 +1,6 @@
 package datadog.trace.common.writer
 
+import datadog.trace.api.DDId
 import datadog.trace.api.StatsDClient
 import datadog.trace.common.writer.ddagent.PayloadDispatcher
 import datadog.trace.common.writer.ddagent.TraceProcessingWorker
@@ -10,6 +11,7 @@ import datadog.trace.test.util.DDSpecification
 import spock.lang.Shared
 import spock.util.concurrent.PollingConditions
 
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
@@ -97,14 +99,14 @@ class TraceProcessingWorkerTest extends DDSpecification {
     when: "there is pending work it is completed before a flush"
     // processing this span will throw an exception, but it should be caught
     // and not disrupt the flush
-    worker.primaryQueue.offer([Mock(DDSpan)])
+    worker.shards[0].primaryQueue.offer([Mock(DDSpan)])
     worker.start()
     boolean flushed = worker.flush(10, TimeUnit.SECONDS)
 
     then: "the flush succeeds, triggers a dispatch, and the queue is empty"
     flushed
     flushCount.get() == 1
-    worker.primaryQueue.isEmpty()
+    worker.shards[0].primaryQueue.isEmpty()
 
     cleanup:
     worker.close()
@@ -216,7 +218,7 @@ class TraceProcessingWorkerTest extends DDSpecification {
     worker.start()
     worker.close()
     int queueSize = 0
-    while (worker.primaryQueue.offer([Mock(DDSpan)])) {
+    while (worker.shards[0].primaryQueue.offer([Mock(DDSpan)])) {
       queueSize++
     }
 
@@ -226,4 +228,45 @@ class TraceProcessingWorkerTest extends DDSpecification {
     !flushed
   }
 
+  def "sharded worker spreads traces by trace id and flushes every shard"() {
+    setup:
+    int shardCount = 4
+    AtomicInteger acceptedCount = new AtomicInteger()
+    AtomicInteger flushCount = new AtomicInteger()
+    Set<PayloadDispatcher> usedDispatchers = Collections.newSetFromMap(new ConcurrentHashMap())
+    PayloadDispatcher[] dispatchers = new PayloadDispatcher[shardCount]
+    for (int i = 0; i < shardCount; ++i) {
+      PayloadDispatcher dispatcher = Mock(PayloadDispatcher)
+      dispatcher.addTrace(_) >> {
+        usedDispatchers.add(dispatcher)
+        acceptedCount.getAndIncrement()
+      }
+      dispatcher.flush() >> {
+        flushCount.incrementAndGet()
+      }
+      dispatchers[i] = dispatcher
+    }
+    TraceProcessingWorker worker = new TraceProcessingWorker(100, Stub(HealthMetrics),
+      dispatchers, {
+        false
+      }, FAST_LANE, 100, TimeUnit.SECONDS)
+    worker.start()
+
+    when: "traces with different trace ids are submitted"
+    for (int i = 0; i < 20; ++i) {
+      DDSpan root = Stub(DDSpan)
+      root.getTraceId() >> DDId.from(i)
+      assert worker.publish(root, SAMPLER_KEEP, [root])
+    }
+    boolean flushed = worker.flush(10, TimeUnit.SECONDS)
+
+    then: "all shards received traces and were flushed"
+    flushed
+    acceptedCount.get() == 20
+    usedDispatchers.size() == shardCount
+    flushCount.get() == shardCount
+
+    cleanup:
+    worker.close()
+  }
 }
@@ -0,0 +1,64 @@
+package datadog.trace.common.writer.ddagent
+
+import datadog.trace.test.util.DDSpecification
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS
+
+class AdaptiveBatchSizeTest extends DDSpecification {
+
+  static final int MAX_SIZE = 2 << 20
+
+  def "batches start small"() {
+    expect:
+    new AdaptiveBatchSize(MAX_SIZE).targetSize() == AdaptiveBatchSize.MIN_BATCH_SIZE
+    new AdaptiveBatchSize(1024).targetSize() == 1024
+  }
+
+  def "batches grow up to the buffer size while the agent is slow"() {
+    setup:
+    def batchSize = new AdaptiveBatchSize(MAX_SIZE)
+
+    when:
+    batchSize.onResponse(MILLISECONDS.toNanos(500))
+
+    then:
+    batchSize.targetSize() == 2 * AdaptiveBatchSize.MIN_BATCH_SIZE
+
+    when:
+    20.times { batchSize.onResponse(MILLISECONDS.toNanos(500)) }
+
+    then:
+    batchSize.targetSize() == MAX_SIZE
+  }
+
+  def "batches shrink once the agent is fast again"() {
+    setup:
+    def batchSize = new AdaptiveBatchSize(MAX_SIZE)
+    20.times { batchSize.onResponse(MILLISECONDS.toNanos(500)) }
+
+    when:
+    50.times { batchSize.onResponse(MILLISECONDS.toNanos(1)) }
+
+    then:
+    batchSize.targetSize() == AdaptiveBatchSize.MIN_BATCH_SIZE
+  }
+
+  def "batches grow while the queue is backlogged"() {
+    setup:
+    def batchSize = new AdaptiveBatchSize(MAX_SIZE)
+
+    when:
+    batchSize.onQueueDepth(900, 1024)
+    batchSize.onResponse(MILLISECONDS.toNanos(1))
+
+    then:
+    batchSize.targetSize() == 2 * AdaptiveBatchSize.MIN_BATCH_SIZE
+
+    when:
+    batchSize.onQueueDepth(0, 1024)
+    batchSize.onResponse(MILLISECONDS.toNanos(1))
+
+    then:
+    batchSize.targetSize() == AdaptiveBatchSize.MIN_BATCH_SIZE
+  }
+}
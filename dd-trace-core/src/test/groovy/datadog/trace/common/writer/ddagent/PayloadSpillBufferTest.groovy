@@ -0,0 +1,137 @@
+package datadog.trace.common.writer.ddagent
+
+import datadog.trace.test.util.DDSpecification
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.file.Files
+
+class PayloadSpillBufferTest extends DDSpecification {
+
+  def "spilled payloads are replayed in order with the same bytes"() {
+    setup:
+    def spillBuffer = newSpillBuffer(1024)
+    def first = payload(1, 10)
+    def second = payload(2, 20)
+    def expectedFirst = bytesOf(payload(1, 10))
+    def expectedSecond = bytesOf(payload(2, 20))
+
+    when:
+    spillBuffer.spill(first, "v0.4")
+    spillBuffer.spill(second, "v0.4")
+
+    then:
+    spillBuffer.size() == 2
+
+    when:
+    def replayed = spillBuffer.peek()
+
+    then:
+    replayed.endpoint() == "v0.4"
+    replayed.traceCount() == 1
+    bytesOf(replayed) == expectedFirst
+
+    when:
+    spillBuffer.remove()
+    replayed = spillBuffer.peek()
+
+    then:
+    replayed.traceCount() == 2
+    bytesOf(replayed) == expectedSecond
+
+    when:
+    spillBuffer.remove()
+
+    then:
+    spillBuffer.isEmpty()
+    spillBuffer.peek() == null
+
+    cleanup:
+    spillBuffer.close()
+  }
+
+  def "rejects payloads when full and wraps around once space is released"() {
+    setup:
+    def spillBuffer = newSpillBuffer(100)
+
+    expect:
+    spillBuffer.spill(payload(1, 39), "v0.4") // 40 bytes with the array header
+    spillBuffer.spill(payload(1, 39), "v0.4")
+    !spillBuffer.spill(payload(1, 39), "v0.4")
+    spillBuffer.getRejectedPayloads() == 1
+
+    when: "the oldest payload is replayed"
+    spillBuffer.remove()
+
+    then: "its space is reused"
+    spillBuffer.spill(payload(3, 39), "v0.4")
+    spillBuffer.size() == 2
+    spillBuffer.peek().traceCount() == 1
+
+    when:
+    spillBuffer.remove()
+
+    then:
+    spillBuffer.peek().traceCount() == 3
+
+    cleanup:
+    spillBuffer.close()
+  }
+
+  def "buffers sharing a directory spill to their own files"() {
+    setup:
+    def dir = Files.createTempDirectory("spill").toFile()
+    def first = PayloadSpillBuffer.create(dir.getAbsolutePath(), 1024)
+    def second = PayloadSpillBuffer.create(dir.getAbsolutePath(), 1024)
+    def expected = bytesOf(payload(1, 10))
+
+    when:
+    first.spill(payload(1, 10), "v0.4")
+    second.spill(payload(2, 20), "v0.4")
+
+    then:
+    dir.listFiles().size() == 2
+    bytesOf(first.peek()) == expected
+
+    cleanup:
+    first.close()
+    second.close()
+    dir.deleteDir()
+  }
+
+  def "closed buffers neither spill nor replay"() {
+    setup:
+    def spillBuffer = newSpillBuffer(1024)
+    spillBuffer.spill(payload(1, 10), "v0.4")
+
+    when:
+    spillBuffer.close()
+
+    then:
+    spillBuffer.peek() == null
+    !spillBuffer.spill(payload(1, 10), "v0.4")
+  }
+
+  def "disabled without a directory"() {
+    expect:
+    PayloadSpillBuffer.create(null, 1024) == null
+  }
+
+  def newSpillBuffer(int capacity) {
+    def dir = Files.createTempDirectory("spill").toFile()
+    dir.deleteOnExit()
+    return PayloadSpillBuffer.create(dir.getAbsolutePath(), capacity)
+  }
+
+  def payload(int traceCount, int bodySize) {
+    byte[] body = new byte[bodySize]
+    Arrays.fill(body, (byte) traceCount)
+    return new TraceMapperV0_4().newPayload().withBody(traceCount, ByteBuffer.wrap(body))
+  }
+
+  def bytesOf(Payload payload) {
+    def out = new ByteArrayOutputStream()
+    payload.writeTo(Channels.newChannel(out))
+    return out.toByteArray()
+  }
+}
@@ -0,0 +1,66 @@
+package datadog.trace.common.writer.ddagent
+
+import datadog.trace.api.DDTags
+import datadog.trace.bootstrap.instrumentation.api.InstrumentationTags
+import datadog.trace.bootstrap.instrumentation.api.Tags
+import datadog.trace.bootstrap.instrumentation.api.UTF8BytesString
+import datadog.trace.test.util.DDSpecification
+
+import static java.nio.charset.StandardCharsets.UTF_8
+
+class TagKeyEncodingCacheTest extends DDSpecification {
+
+  def "well known keys are encoded up front and shared"() {
+    setup:
+    def cache = new TagKeyEncodingCache(16)
+
+    expect:
+    cache.encode(key) == key.toString().getBytes(UTF_8)
+    cache.encode(key).is(cache.encode(new String(key.toString())))
+
+    where:
+    key << [
+      Tags.HTTP_URL,
+      Tags.COMPONENT,
+      DDTags.SPAN_TYPE,
+      DDTags.ORIGIN_KEY,
+      InstrumentationTags.DD_MEASURED,
+      InstrumentationTags.DD_TOP_LEVEL
+    ]
+  }
+
+  def "tag values are not encoded up front"() {
+    setup:
+    def cache = new TagKeyEncodingCache(16)
+
+    expect:
+    !cache.wellKnownKeys.containsKey(value)
+    cache.encode(value) == value.getBytes(UTF_8)
+
+    where:
+    value << [Tags.SPAN_KIND_SERVER, Tags.SPAN_KIND_CLIENT, DDTags.LANGUAGE_TAG_VALUE]
+  }
+
+  def "other keys are encoded on demand"() {
+    setup:
+    def cache = new TagKeyEncodingCache(16)
+
+    expect:
+    cache.encode(key) == key.getBytes(UTF_8)
+    cache.encode(UTF8BytesString.create(key)) == key.getBytes(UTF_8)
+
+    where:
+    key << ["custom.tag", "ключ", ""]
+  }
+
+  def "encoding is correct when more keys than the capacity are used"() {
+    setup:
+    def cache = new TagKeyEncodingCache(4)
+
+    expect:
+    (0..100).every {
+      def key = "key-" + it
+      cache.encode(key) == key.getBytes(UTF_8)
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package datadog.trace.core
+
+import datadog.trace.test.util.DDSpecification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ChunkedSpanQueueTest extends DDSpecification {
+
+  def "spans are drained most recent first across chunks"() {
+    setup:
+    def queue = new ChunkedSpanQueue()
+    def spans = (0..<count).collect { Mock(DDSpan) }
+
+    when:
+    spans.each { queue.add(it) }
+
+    then:
+    queue.size() == count
+    queue.asList() == spans
+
+    when:
+    def drained = []
+    int size = queue.drainTo(drained)
+
+    then:
+    size == count
+    drained == spans.reverse()
+    queue.isEmpty()
+    queue.asList() == []
+
+    where:
+    count << [0, 1, 8, 9, 100, 1000]
+  }
+
+  def "later drains only return spans added since the previous drain"() {
+    setup:
+    def queue = new ChunkedSpanQueue()
+    def first = (1..10).collect { Mock(DDSpan) }
+    def second = (1..30).collect { Mock(DDSpan) }
+
+    when:
+    first.each { queue.add(it) }
+    def drained = []
+    queue.drainTo(drained)
+    second.each { queue.add(it) }
+    drained = []
+    queue.drainTo(drained)
+
+    then:
+    drained == second.reverse()
+    queue.size() == 0
+  }
+
+  def "spans added concurrently are all drained"() {
+    setup:
+    def queue = new ChunkedSpanQueue()
+    int threads = 8
+    int perThread = 1000
+    def span = Mock(DDSpan)
+    def start = new CountDownLatch(1)
+    def done = new CountDownLatch(threads)
+    def drained = []
+
+    when:
+    threads.times {
+      Thread.start {
+        start.await()
+        perThread.times {
+          queue.add(span)
+        }
+        done.countDown()
+      }
+    }
+    start.countDown()
+    while (!done.await(1, TimeUnit.MILLISECONDS)) {
+      queue.drainTo(drained)
+    }
+    queue.drainTo(drained)
+
+    then:
+    drained.size() == threads * perThread
+    queue.isEmpty()
+  }
+}
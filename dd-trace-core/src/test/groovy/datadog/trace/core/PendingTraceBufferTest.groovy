@@ -294,8 +294,8 @@ class PendingTraceBufferTest extends DDSpecification {
         }
 
         @Override
-        boolean lastReferencedNanosAgo(long nanos) {
-          return false
+        long lastReferenced() {
+          return System.nanoTime()
         }
 
         @Override
@@ -329,6 +329,73 @@ class PendingTraceBufferTest extends DDSpecification {
     counter.get() == 3
   }
 
+  def "idle elements are written once the send delay elapsed"() {
+    setup:
+    buffer.start()
+    def written = new AtomicInteger(0)
+    def element = newElement(System.nanoTime(), written, new AtomicInteger(0))
+
+    when:
+    buffer.enqueue(element)
+
+    then:
+    new PollingConditions(timeout: 3, initialDelay: 0, delay: 0.1, factor: 1).eventually {
+      assert written.get() == 1
+    }
+  }
+
+  def "referenced elements are only looked at when due"() {
+    setup:
+    buffer.start()
+    def written = new AtomicInteger(0)
+    def checks = new AtomicInteger(0)
+    def element = newElement(-1, written, checks)
+
+    when:
+    buffer.enqueue(element)
+    Thread.sleep(1200)
+
+    then: "checked on arrival and about every send delay since"
+    written.get() == 0
+    checks.get() <= 5
+
+    when:
+    buffer.flush()
+
+    then:
+    written.get() == 1
+  }
+
+  def "elements beyond the buffer size are written rather than held"() {
+    setup:
+    buffer.start()
+    def written = new AtomicInteger(0)
+    def checks = new AtomicInteger(0)
+    int overflow = 10
+
+    when: "more elements than the buffer holds are referenced indefinitely"
+    for (int i = 0; i < BUFFER_SIZE + overflow; ++i) {
+      buffer.enqueue(newElement(-1, written, checks))
+    }
+
+    then:
+    new PollingConditions(timeout: 3, initialDelay: 0, delay: 0.1, factor: 1).eventually {
+      assert written.get() == overflow
+    }
+
+    when:
+    Thread.sleep(600)
+
+    then: "the elements which fit stay buffered"
+    written.get() == overflow
+
+    when:
+    buffer.flush()
+
+    then:
+    written.get() == BUFFER_SIZE + overflow
+  }
+
   def "the same pending thrace is not enqueued multiple times"() {
     setup:
     // Don't start the buffer thread
@@ -374,6 +441,41 @@ class PendingTraceBufferTest extends DDSpecification {
     }
   }
 
+  /**
+   * @param lastReferenced the nano ticks the element was last referenced at, or -1 if it is
+   * referenced every time it is looked at
+   */
+  static PendingTraceBuffer.Element newElement(long lastReferenced, AtomicInteger written,
+    AtomicInteger checks) {
+    return new PendingTraceBuffer.Element() {
+        @Override
+        long oldestFinishedTime() {
+          return Long.MAX_VALUE
+        }
+
+        @Override
+        long lastReferenced() {
+          checks.incrementAndGet()
+          return lastReferenced == -1 ? System.nanoTime() : lastReferenced
+        }
+
+        @Override
+        void write() {
+          written.incrementAndGet()
+        }
+
+        @Override
+        DDSpan getRootSpan() {
+          return null
+        }
+
+        @Override
+        boolean setEnqueued(boolean enqueued) {
+          return true
+        }
+      }
+  }
+
   def addContinuation(DDSpan span) {
     def scope = scopeManager.activate(span, ScopeSource.INSTRUMENTATION, true)
     continuations << scope.capture()
@@ -12,6 +12,7 @@ import java.util.concurrent.TimeUnit
 
 import static datadog.trace.api.Checkpointer.END
 import static datadog.trace.api.Checkpointer.SPAN
+import static datadog.trace.api.config.TracerConfig.PARTIAL_FLUSH_MAX_BYTES
 import static datadog.trace.api.config.TracerConfig.PARTIAL_FLUSH_MIN_SPANS
 
 abstract class PendingTraceTestBase extends DDCoreSpecification {
@@ -162,6 +163,50 @@ abstract class PendingTraceTestBase extends DDCoreSpecification {
     quickTracer.close()
   }
 
+  def "partial flush bounded by estimated size"() {
+    when:
+    injectSysConfig(PARTIAL_FLUSH_MIN_SPANS, "0")
+    injectSysConfig(PARTIAL_FLUSH_MAX_BYTES, "1000")
+    def quickTracer = tracerBuilder().writer(writer).build()
+    def rootSpan = quickTracer.buildSpan("root").start()
+    def trace = rootSpan.context().trace
+    def child1 = quickTracer.buildSpan("child1").asChildOf(rootSpan).start()
+    def child2 = quickTracer.buildSpan("child2").asChildOf(rootSpan).start()
+    child2.setTag("large", "x" * 2000)
+
+    then:
+    trace.pendingReferenceCount == 3
+
+    when:
+    child1.finish()
+
+    then:
+    trace.pendingReferenceCount == 2
+    trace.finishedSpans.asList() == [child1]
+    writer == []
+
+    when:
+    child2.finish()
+    writer.waitForTraces(1)
+
+    then:
+    trace.pendingReferenceCount == 1
+    trace.finishedSpans.isEmpty()
+    trace.finishedBytes == 0
+    writer == [[child2, child1]]
+
+    when:
+    rootSpan.finish()
+    writer.waitForTraces(2)
+
+    then:
+    trace.pendingReferenceCount == 0
+    writer == [[child2, child1], [rootSpan]]
+
+    cleanup:
+    quickTracer.close()
+  }
+
   def "partial flush with root span closed last"() {
     when:
     injectSysConfig(PARTIAL_FLUSH_MIN_SPANS, "1")
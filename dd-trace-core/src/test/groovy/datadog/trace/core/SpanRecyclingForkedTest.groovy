@@ -0,0 +1,85 @@
+package datadog.trace.core
+
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.core.test.DDCoreSpecification
+import datadog.trace.core.util.TagMap
+import datadog.trace.core.util.TagMapPool
+
+import java.util.concurrent.CountDownLatch
+
+class SpanRecyclingForkedTest extends DDCoreSpecification {
+
+  def writer = new ListWriter()
+  CoreTracer tracer
+
+  def setup() {
+    injectSysConfig("dd.trace.span.recycling.enabled", "true")
+    tracer = tracerBuilder().writer(writer).build()
+  }
+
+  def cleanup() {
+    tracer.close()
+  }
+
+  def "stale span does not modify the tags of the span which reused its map"() {
+    setup:
+    def stale = tracer.buildSpan("stale").start()
+    stale.setTag("stale.tag", "value")
+    stale.finish()
+    writer.waitForTraces(1)
+    def recycledTags = stale.context().@unsafeTags
+
+    when:
+    stale.context().recycleTags()
+    def span = tracer.buildSpan("fresh").start()
+    span.setTag("fresh.tag", "value")
+
+    then:
+    span.context().@unsafeTags.is(recycledTags)
+    stale.context().@unsafeTags.is(TagMap.RELEASED)
+
+    when:
+    stale.setTag("late.tag", "late")
+    stale.context().setMetric("late.metric", 1L)
+    stale.context().setTag("fresh.tag", null)
+
+    then:
+    span.getTag("fresh.tag") == "value"
+    span.getTag("late.tag") == null
+    span.getTag("late.metric") == null
+    stale.getTag("late.tag") == null
+    stale.context().getTags().keySet().every { !it.startsWith("late.") }
+    TagMap.RELEASED.isEmpty()
+
+    cleanup:
+    span.finish()
+  }
+
+  def "concurrently recycled tags are returned to the pool once"() {
+    setup:
+    int spanCount = 100
+    def contexts = (1..spanCount).collect {
+      def span = tracer.buildSpan("recycled").start()
+      span.finish()
+      span.context()
+    }
+    writer.waitForTraces(spanCount)
+    def start = new CountDownLatch(1)
+
+    when:
+    def threads = (1..4).collect {
+      Thread.start {
+        start.await()
+        contexts.each { it.recycleTags() }
+      }
+    }
+    start.countDown()
+    threads*.join()
+    def acquired = (1..spanCount * 2).collect { TagMapPool.acquire(4) }
+    Set<TagMap> distinct = Collections.newSetFromMap(new IdentityHashMap<TagMap, Boolean>())
+    distinct.addAll(acquired)
+
+    then: "no map is handed out twice"
+    distinct.size() == acquired.size()
+  }
+}
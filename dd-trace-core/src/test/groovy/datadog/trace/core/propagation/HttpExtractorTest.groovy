@@ -2,6 +2,7 @@ package datadog.trace.core.propagation
 
 import datadog.trace.api.Config
 import datadog.trace.api.DDId
+import datadog.trace.bootstrap.instrumentation.api.AgentPropagation
 import datadog.trace.bootstrap.instrumentation.api.TagContext
 import datadog.trace.bootstrap.instrumentation.api.ContextVisitors
 import datadog.trace.test.util.DDSpecification
@@ -9,6 +10,8 @@ import spock.lang.Shared
 
 import static datadog.trace.api.PropagationStyle.B3
 import static datadog.trace.api.PropagationStyle.DATADOG
+import static datadog.trace.api.PropagationStyle.HAYSTACK
+import static datadog.trace.api.PropagationStyle.XRAY
 import static datadog.trace.core.CoreTracer.TRACE_ID_MAX
 
 class HttpExtractorTest extends DDSpecification {
@@ -84,4 +87,43 @@ class HttpExtractorTest extends DDSpecification {
     [DATADOG, B3] | "1"               | "2"               | "a"               | outOfRangeTraceId | "1"             | "2"            | true             | false               | false
     // spotless:on
   }
+
+  def "headers are visited once for all styles"() {
+    setup:
+    Config config = Mock(Config) {
+      getPropagationStylesToExtract() >> [DATADOG, B3, XRAY, HAYSTACK]
+    }
+    HttpCodec.Extractor extractor = HttpCodec.createExtractor(config, ["SOME_HEADER": "some-tag"])
+    def headers = [
+      "accept"                  : "*/*",
+      "user-agent"              : "test",
+      (B3HttpCodec.TRACE_ID_KEY): "a",
+      (B3HttpCodec.SPAN_ID_KEY) : "b",
+      "SOME_HEADER"             : "my-interesting-info"
+    ]
+    int visits = 0
+    def visitor = new AgentPropagation.ContextVisitor<Map<String, String>>() {
+        @Override
+        void forEachKey(Map<String, String> carrier, AgentPropagation.KeyClassifier classifier) {
+          visits++
+          ContextVisitors.stringValuesMap().forEachKey(carrier, classifier)
+        }
+      }
+
+    when:
+    final TagContext context = extractor.extract(headers, visitor)
+
+    then: "the first style with a complete context wins"
+    visits == 1
+    context.traceId == DDId.from("10")
+    context.spanId == DDId.from("11")
+    context.tags["some-tag"] == "my-interesting-info"
+
+    when: "interpreters are reset between carriers"
+    final TagContext next = extractor.extract(["accept": "*/*"], visitor)
+
+    then:
+    visits == 2
+    next == null
+  }
 }
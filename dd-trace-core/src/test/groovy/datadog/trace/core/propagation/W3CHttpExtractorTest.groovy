@@ -0,0 +1,116 @@
+package datadog.trace.core.propagation
+
+import datadog.trace.api.DDId
+import datadog.trace.api.sampling.PrioritySampling
+import datadog.trace.bootstrap.instrumentation.api.ContextVisitors
+import datadog.trace.bootstrap.instrumentation.api.TagContext
+import datadog.trace.test.util.DDSpecification
+
+import static datadog.trace.api.config.TracerConfig.PROPAGATION_EXTRACT_LOG_HEADER_NAMES_ENABLED
+import static datadog.trace.core.propagation.W3CHttpCodec.TRACE_PARENT_KEY
+import static datadog.trace.core.propagation.W3CHttpCodec.TRACE_STATE_KEY
+
+class W3CHttpExtractorTest extends DDSpecification {
+
+  HttpCodec.Extractor extractor = W3CHttpCodec.newExtractor(["SOME_HEADER": "some-tag"])
+
+  def setup() {
+    injectSysConfig(PROPAGATION_EXTRACT_LOG_HEADER_NAMES_ENABLED, "true")
+  }
+
+  def "extract traceparent #traceParent"() {
+    setup:
+    def headers = [
+      ""                            : "empty key",
+      (TRACE_PARENT_KEY.toUpperCase()): traceParent,
+      SOME_HEADER                   : "my-interesting-info",
+    ]
+
+    when:
+    final ExtractedContext context = extractor.extract(headers, ContextVisitors.stringValuesMap())
+
+    then:
+    context.traceId == DDId.fromHex(expectedTraceId)
+    context.traceId.toHexStringOrOriginal() == expectedOriginal
+    context.spanId == DDId.fromHex(expectedSpanId)
+    context.samplingPriority == expectedSamplingPriority
+    context.baggage == [:]
+    context.tags == ["some-tag": "my-interesting-info"]
+    context.origin == null
+
+    where:
+    traceParent                                               | expectedTraceId    | expectedOriginal                   | expectedSpanId     | expectedSamplingPriority
+    "00-0000000000000000000000000000000a-000000000000000b-01" | "a"                | "a"                                | "b"                | PrioritySampling.SAMPLER_KEEP
+    "00-0000000000000000000000000000000a-000000000000000b-00" | "a"                | "a"                                | "b"                | PrioritySampling.SAMPLER_DROP
+    "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01" | "a3ce929d0e0e4736" | "4bf92f3577b34da6a3ce929d0e0e4736" | "00f067aa0ba902b7" | PrioritySampling.SAMPLER_KEEP
+    "00-0000000000000000ffffffffffffffff-ffffffffffffffff-03" | "ffffffffffffffff" | "ffffffffffffffff"                 | "ffffffffffffffff" | PrioritySampling.SAMPLER_KEEP
+    "01-0000000000000000000000000000000a-000000000000000b-01-ext" | "a"            | "a"                                | "b"                | PrioritySampling.SAMPLER_KEEP
+  }
+
+  def "extract datadog trace state"() {
+    setup:
+    def headers = [
+      (TRACE_STATE_KEY) : traceState,
+      (TRACE_PARENT_KEY): "00-0000000000000000000000000000000a-000000000000000b-01"
+    ]
+
+    when:
+    final ExtractedContext context = extractor.extract(headers, ContextVisitors.stringValuesMap())
+
+    then:
+    context.traceId == DDId.from(10)
+    context.samplingPriority == expectedSamplingPriority
+    context.origin == expectedOrigin
+
+    where:
+    traceState                            | expectedSamplingPriority      | expectedOrigin
+    "dd=s:2;o:synthetics"                 | PrioritySampling.USER_KEEP    | "synthetics"
+    "rojo=00f067aa0ba902b7, dd=s:-1"      | PrioritySampling.USER_DROP    | null
+    "dd=o:rum,congo=t61rcWkgMzE"          | PrioritySampling.SAMPLER_KEEP | "rum"
+    "congo=t61rcWkgMzE"                   | PrioritySampling.SAMPLER_KEEP | null
+  }
+
+  def "invalid traceparent #traceParent is ignored"() {
+    setup:
+    def headers = [
+      (TRACE_PARENT_KEY): traceParent,
+      SOME_HEADER       : "my-interesting-info",
+    ]
+
+    when:
+    final TagContext context = extractor.extract(headers, ContextVisitors.stringValuesMap())
+
+    then:
+    context == null
+
+    where:
+    traceParent << [
+      "",
+      "00-0000000000000000000000000000000a-000000000000000b",
+      "00-0000000000000000000000000000000a-000000000000000b-01-",
+      "ff-0000000000000000000000000000000a-000000000000000b-01",
+      "00-00000000000000000000000000000000-000000000000000b-01",
+      "00-0000000000000000000000000000000a-0000000000000000-01",
+      "00-000000000000000000000000000000xa-000000000000000b-01",
+      "00-0000000000000000FFFFFFFFFFFFFFFF-000000000000000b-01",
+      "00-0000000000000000000000000000000a-000000000000000B-01",
+      "0A-0000000000000000000000000000000a-000000000000000b-01",
+      "00-0000000000000000000000000000000\u0661-000000000000000b-01",
+      "00_0000000000000000000000000000000a-000000000000000b-01"
+    ]
+  }
+
+  def "extract forwarded headers without traceparent"() {
+    setup:
+    def headers = [
+      (HttpCodec.X_FORWARDED_FOR_KEY): "1.2.3.4",
+    ]
+
+    when:
+    final TagContext context = extractor.extract(headers, ContextVisitors.stringValuesMap())
+
+    then:
+    !(context instanceof ExtractedContext)
+    context.forwardedIp == "1.2.3.4"
+  }
+}
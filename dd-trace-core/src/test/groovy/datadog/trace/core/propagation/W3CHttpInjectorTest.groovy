@@ -0,0 +1,106 @@
+package datadog.trace.core.propagation
+
+import datadog.trace.api.DDId
+import datadog.trace.bootstrap.instrumentation.api.ContextVisitors
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.core.DDSpanContext
+import datadog.trace.core.test.DDCoreSpecification
+
+import static datadog.trace.api.sampling.PrioritySampling.*
+import static datadog.trace.api.sampling.SamplingMechanism.*
+import static datadog.trace.core.CoreTracer.TRACE_ID_MAX
+import static datadog.trace.core.propagation.W3CHttpCodec.TRACE_PARENT_KEY
+import static datadog.trace.core.propagation.W3CHttpCodec.TRACE_STATE_KEY
+
+class W3CHttpInjectorTest extends DDCoreSpecification {
+
+  HttpCodec.Injector injector = W3CHttpCodec.INJECTOR
+
+  def "inject http headers"() {
+    setup:
+    def writer = new ListWriter()
+    def tracer = tracerBuilder().writer(writer).build()
+    final DDSpanContext mockedContext =
+      new DDSpanContext(
+      traceId,
+      spanId,
+      DDId.ZERO,
+      null,
+      "fakeService",
+      "fakeOperation",
+      "fakeResource",
+      samplingPriority,
+      samplingMechanism,
+      origin,
+      ["k1": "v1", "k2": "v2"],
+      false,
+      "fakeType",
+      0,
+      tracer.pendingTraceFactory.create(DDId.ONE),
+      null,
+      false)
+
+    final Map<String, String> carrier = Mock()
+
+    when:
+    injector.inject(mockedContext, carrier, MapSetter.INSTANCE)
+
+    then:
+    1 * carrier.put(TRACE_PARENT_KEY, expectedTraceParent)
+    if (expectedTraceState != null) {
+      1 * carrier.put(TRACE_STATE_KEY, expectedTraceState)
+    }
+    0 * _
+
+    cleanup:
+    tracer.close()
+
+    where:
+    traceId                     | spanId                      | samplingPriority | samplingMechanism | origin       | expectedTraceParent                                       | expectedTraceState
+    DDId.from(1)                | DDId.from(2)                | UNSET            | UNKNOWN           | null         | "00-00000000000000000000000000000001-0000000000000002-00" | null
+    DDId.from(10)               | DDId.from(11)               | SAMPLER_KEEP     | DEFAULT           | null         | "00-0000000000000000000000000000000a-000000000000000b-01" | "dd=s:1"
+    DDId.from(10)               | DDId.from(11)               | USER_DROP        | MANUAL            | "synthetics" | "00-0000000000000000000000000000000a-000000000000000b-00" | "dd=s:-1;o:synthetics"
+    DDId.from("$TRACE_ID_MAX")  | DDId.from("$TRACE_ID_MAX")  | USER_KEEP        | MANUAL            | null         | "00-0000000000000000ffffffffffffffff-ffffffffffffffff-01" | "dd=s:2"
+  }
+
+  def "inject extracted 128 bit trace id unchanged"() {
+    setup:
+    def writer = new ListWriter()
+    def tracer = tracerBuilder().writer(writer).build()
+    def traceParent = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"
+    final ExtractedContext extracted = W3CHttpCodec.newExtractor([:])
+      .extract([(TRACE_PARENT_KEY): traceParent], ContextVisitors.stringValuesMap())
+    final DDSpanContext context =
+      new DDSpanContext(
+      extracted.traceId,
+      DDId.from(2),
+      extracted.spanId,
+      null,
+      "fakeService",
+      "fakeOperation",
+      "fakeResource",
+      extracted.samplingPriority,
+      extracted.samplingMechanism,
+      null,
+      [:],
+      false,
+      "fakeType",
+      0,
+      tracer.pendingTraceFactory.create(DDId.ONE),
+      null,
+      false)
+
+    final Map<String, String> carrier = Mock()
+
+    when:
+    injector.inject(context, carrier, MapSetter.INSTANCE)
+
+    then:
+    1 * carrier.put(TRACE_PARENT_KEY, "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000002-01")
+    1 * carrier.put(TRACE_STATE_KEY, "dd=s:1")
+    0 * _
+
+    cleanup:
+    tracer.close()
+  }
+}
@@ -483,6 +483,55 @@ class ScopeManagerTest extends DDCoreSpecification {
     1 * statsDClient.incrementCounter("scope.close.error")
   }
 
+  def "closing scope on another thread uses that thread's stack"() {
+    when:
+    AgentSpan span = tracer.buildSpan("foo").start()
+    AgentScope scope = tracer.activateSpan(span)
+    def closer = new Thread({ scope.close() })
+    closer.start()
+    closer.join()
+
+    then:
+    scopeManager.active() == scope
+    1 * statsDClient.incrementCounter("scope.close.error")
+
+    when:
+    scope.close()
+    span.finish()
+
+    then:
+    scopeManager.active() == null
+    0 * statsDClient.incrementCounter(_)
+  }
+
+  def "scope stack only allocates storage for previous scopes when nesting"() {
+    when:
+    AgentSpan firstSpan = tracer.buildSpan("foo").start()
+    AgentScope firstScope = tracer.activateSpan(firstSpan)
+
+    then:
+    scopeManager.scopeStack().depth() == 1
+    scopeManager.scopeStack().stack == null
+
+    when:
+    AgentSpan secondSpan = tracer.buildSpan("bar").start()
+    AgentScope secondScope = tracer.activateSpan(secondSpan)
+
+    then:
+    scopeManager.scopeStack().depth() == 2
+    scopeManager.scopeStack().stack != null
+
+    when:
+    secondScope.close()
+    secondSpan.finish()
+    firstScope.close()
+    firstSpan.finish()
+
+    then:
+    scopeManager.scopeStack().depth() == 0
+    scopeManager.active() == null
+  }
+
   def "closing scope out of order - complex"() {
     // Events are checked twice in each case to ensure a call to
     // tracer.activeScope() or tracer.activeSpan() doesn't change the count
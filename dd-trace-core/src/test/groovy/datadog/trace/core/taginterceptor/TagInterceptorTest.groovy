@@ -12,6 +12,7 @@ import datadog.trace.common.sampling.AllSampler
 import datadog.trace.common.writer.ListWriter
 import datadog.trace.common.writer.LoggingWriter
 import datadog.trace.core.CoreSpan
+import datadog.trace.core.DDSpanContext
 import datadog.trace.core.test.DDCoreSpecification
 
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SERVICE_NAME
@@ -575,4 +576,26 @@ class TagInterceptorTest extends DDCoreSpecification {
     cleanup:
     tracer.close()
   }
+
+  def "split-by tags do not take over tags of disabled rules"() {
+    setup:
+    injectSysConfig("dd.trace.ServiceNameTagInterceptor.enabled", "false")
+    def interceptor = new TagInterceptor(true, "my-service",
+      ["service", "sn.custom"] as Set, new RuleFlags())
+    def context = Mock(DDSpanContext)
+
+    when:
+    def intercepted = interceptor.interceptTag(context, tag, "new-service")
+
+    then:
+    intercepted == expected
+    (expected ? 1 : 0) * context.setServiceName("new-service")
+
+    where:
+    tag                 | expected
+    "service"           | false
+    DDTags.SERVICE_NAME | false
+    "sn.custom"         | true
+    Tags.HTTP_METHOD    | false
+  }
 }
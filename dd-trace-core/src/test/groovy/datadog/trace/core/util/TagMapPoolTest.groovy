@@ -0,0 +1,70 @@
+package datadog.trace.core.util
+
+import datadog.trace.test.util.DDSpecification
+
+class TagMapPoolTest extends DDSpecification {
+
+  def "released maps are cleared and reused"() {
+    setup:
+    def pool = new TagMapPool(true, 4)
+    def tags = pool.acquireMap(4)
+    tags.put("a", 1)
+
+    when:
+    pool.releaseMap(tags)
+
+    then:
+    tags.isEmpty()
+
+    when:
+    def reused = pool.acquireMap(4)
+    reused.put("b", 2)
+
+    then:
+    reused.is(tags)
+    reused == [b: 2]
+  }
+
+  def "writes to a released map are ignored"() {
+    setup:
+    def pool = new TagMapPool(true, 4)
+    def tags = pool.acquireMap(4)
+    pool.releaseMap(tags)
+
+    when:
+    tags.put("late", "value")
+    tags.remove("late")
+
+    then:
+    tags.isEmpty()
+  }
+
+  def "large maps are not pooled"() {
+    setup:
+    def pool = new TagMapPool(true, 4)
+    def tags = pool.acquireMap(4)
+    for (int i = 0; i < 100; i++) {
+      tags.put("key" + i, i)
+    }
+
+    when:
+    pool.releaseMap(tags)
+
+    then:
+    !pool.acquireMap(4).is(tags)
+  }
+
+  def "disabled pool always creates new maps"() {
+    setup:
+    def pool = new TagMapPool(false, 4)
+    def tags = pool.acquireMap(4)
+    tags.put("a", 1)
+
+    when:
+    pool.releaseMap(tags)
+
+    then:
+    tags == [a: 1]
+    !pool.acquireMap(4).is(tags)
+  }
+}
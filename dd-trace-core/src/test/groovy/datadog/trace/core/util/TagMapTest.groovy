@@ -0,0 +1,251 @@
+package datadog.trace.core.util
+
+import datadog.trace.test.util.DDSpecification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class TagMapTest extends DDSpecification {
+
+  def "put, get and remove behave like a map"() {
+    setup:
+    def tags = new TagMap()
+
+    when:
+    tags.put("a", 1)
+    tags.put("b", "two")
+
+    then:
+    tags.size() == 2
+    tags.get("a") == 1
+    tags.get("b") == "two"
+    tags.get("c") == null
+    tags == [a: 1, b: "two"]
+
+    when:
+    def previous = tags.put("a", 3)
+
+    then:
+    previous == 1
+    tags.size() == 2
+    tags.get("a") == 3
+
+    when:
+    previous = tags.remove("a")
+
+    then:
+    previous == 3
+    tags.size() == 1
+    !tags.containsKey("a")
+    tags == [b: "two"]
+
+    when:
+    tags.put("a", 4)
+
+    then:
+    tags.size() == 2
+    tags == [a: 4, b: "two"]
+  }
+
+  def "putting a null value removes the key"() {
+    setup:
+    def tags = new TagMap()
+    tags.put("a", 1)
+
+    when:
+    tags.put("a", null)
+
+    then:
+    tags.isEmpty()
+    tags.get("a") == null
+  }
+
+  def "grows and drops removed entries when rebuilding"() {
+    setup:
+    def tags = new TagMap(2)
+    def expected = [:]
+
+    when:
+    for (int i = 0; i < 1000; i++) {
+      tags.put("key" + i, i)
+      expected.put("key" + i, i)
+      if (i % 3 == 0) {
+        tags.remove("key" + i)
+        expected.remove("key" + i)
+      }
+    }
+
+    then:
+    tags.size() == expected.size()
+    tags == expected
+    new HashMap<>(tags) == expected
+  }
+
+  def "clear removes all entries"() {
+    setup:
+    def tags = new TagMap()
+    tags.put("a", 1)
+    tags.put("b", 2)
+
+    when:
+    tags.clear()
+
+    then:
+    tags.isEmpty()
+    tags.entrySet().isEmpty()
+    tags.get("a") == null
+  }
+
+  def "concurrent writers do not lose tags"() {
+    setup:
+    def tags = new TagMap()
+    def threads = 8
+    def tagsPerThread = 500
+    def executor = Executors.newFixedThreadPool(threads)
+    def start = new CountDownLatch(1)
+
+    when:
+    for (int t = 0; t < threads; t++) {
+      def thread = t
+      executor.submit {
+        start.await()
+        for (int i = 0; i < tagsPerThread; i++) {
+          tags.put("t" + thread + "-" + i, i)
+        }
+      }
+    }
+    start.countDown()
+    executor.shutdown()
+
+    then:
+    executor.awaitTermination(10, TimeUnit.SECONDS)
+    tags.size() == threads * tagsPerThread
+    tags.entrySet().size() == threads * tagsPerThread
+    tags.get("t3-42") == 42
+  }
+
+  def "writers wait for locked writes and the lock holder cannot write"() {
+    setup:
+    def tags = new TagMap()
+    def written = new CountDownLatch(1)
+
+    when:
+    tags.lockWrites()
+    def writer = Thread.start {
+      tags.put("late", "value")
+      written.countDown()
+    }
+
+    then:
+    !written.await(200, TimeUnit.MILLISECONDS)
+
+    when:
+    tags.put("own", "value")
+
+    then:
+    thrown IllegalStateException
+
+    when:
+    tags.unlockWrites()
+    writer.join(1000)
+
+    then:
+    written.count == 0
+    tags == [late: "value"]
+  }
+
+  def "primitive metrics are stored unboxed and counted as numbers"() {
+    setup:
+    def tags = new TagMap()
+
+    when:
+    tags.putLong("count", 42L)
+    tags.putDouble("rate", 0.5d)
+    tags.put("boxed", 7)
+    tags.put("name", "value")
+
+    then:
+    tags.size() == 4
+    tags.numericSize() == 3
+    tags.get("count") == 42L
+    tags.get("count") instanceof Long
+    tags.get("rate") == 0.5d
+    tags.get("rate") instanceof Double
+    tags == [count: 42L, rate: 0.5d, boxed: 7, name: "value"]
+
+    when:
+    def entries = tags.entrySet().collectEntries { [(it.key): it] }
+
+    then:
+    entries.count.isNumber()
+    entries.count.isLong()
+    entries.count.longValue() == 42L
+    entries.rate.isDouble()
+    entries.rate.doubleValue() == 0.5d
+    entries.boxed.isNumber()
+    !entries.boxed.isLong()
+    !entries.name.isNumber()
+  }
+
+  def "numeric size follows overwrites and removals"() {
+    setup:
+    def tags = new TagMap()
+    tags.putLong("a", 1L)
+
+    when: "a primitive is replaced by a string"
+    def previous = tags.put("a", "one")
+
+    then:
+    previous == 1L
+    tags.size() == 1
+    tags.numericSize() == 0
+    tags.get("a") == "one"
+
+    when: "a string is replaced by a primitive"
+    tags.putDouble("a", 2.5d)
+
+    then:
+    tags.size() == 1
+    tags.numericSize() == 1
+    tags.get("a") == 2.5d
+
+    when: "a primitive changes kind"
+    tags.putLong("a", 3L)
+
+    then:
+    tags.size() == 1
+    tags.numericSize() == 1
+    tags.get("a") == 3L
+
+    when:
+    tags.remove("a")
+
+    then:
+    tags.isEmpty()
+    tags.numericSize() == 0
+
+    when: "a removed primitive is set again"
+    tags.putLong("a", 4L)
+
+    then:
+    tags.size() == 1
+    tags.numericSize() == 1
+    tags.get("a") == 4L
+  }
+
+  def "primitive metrics survive rebuilds"() {
+    setup:
+    def tags = new TagMap()
+
+    when:
+    100.times {
+      tags.putLong("metric" + it, it)
+    }
+
+    then:
+    tags.size() == 100
+    tags.numericSize() == 100
+    (0..<100).every { tags.get("metric" + it) == (long) it }
+  }
+}
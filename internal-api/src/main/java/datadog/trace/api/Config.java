@@ -25,6 +25,7 @@ import static datadog.trace.api.ConfigDefaults.DEFAULT_JMX_FETCH_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_JMX_FETCH_MULTIPLE_RUNTIME_SERVICES_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_JMX_FETCH_MULTIPLE_RUNTIME_SERVICES_LIMIT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_LOGS_INJECTION_ENABLED;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_PARTIAL_FLUSH_MAX_BYTES;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PARTIAL_FLUSH_MIN_SPANS;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PERF_METRICS_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_PRIORITY_SAMPLING_ENABLED;
@@ -39,6 +40,7 @@ import static datadog.trace.api.ConfigDefaults.DEFAULT_SERIALVERSIONUID_FIELD_IN
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SERVICE_NAME;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SERVLET_ROOT_CONTEXT_SERVICE_NAME;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_SITE;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_AGENT_COMPRESSION;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_AGENT_PORT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_AGENT_V05_ENABLED;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_ANALYTICS_ENABLED;
@@ -49,6 +51,8 @@ import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_METHODS;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_RATE_LIMIT;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_REPORT_HOSTNAME;
 import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_RESOLVER_ENABLED;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SERIALIZATION_SHARDS;
+import static datadog.trace.api.ConfigDefaults.DEFAULT_TRACE_SPILL_MAX_SIZE;
 import static datadog.trace.api.DDTags.HOST_TAG;
 import static datadog.trace.api.DDTags.INTERNAL_HOST_NAME;
 import static datadog.trace.api.DDTags.LANGUAGE_TAG_KEY;
@@ -93,6 +97,9 @@ import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_ENABLED;
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_IGNORED_RESOURCES;
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_MAX_AGGREGATES;
 import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_MAX_PENDING;
+import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_NAME_CACHE_SIZE;
+import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_SKETCH_MEMORY_BUDGET;
+import static datadog.trace.api.config.GeneralConfig.TRACER_METRICS_SKETCH_RELATIVE_ACCURACY;
 import static datadog.trace.api.config.GeneralConfig.VERSION;
 import static datadog.trace.api.config.JmxFetchConfig.JMX_FETCH_CHECK_PERIOD;
 import static datadog.trace.api.config.JmxFetchConfig.JMX_FETCH_CONFIG;
@@ -198,6 +205,7 @@ import static datadog.trace.api.config.TracerConfig.HEADER_TAGS;
 import static datadog.trace.api.config.TracerConfig.HTTP_CLIENT_ERROR_STATUSES;
 import static datadog.trace.api.config.TracerConfig.HTTP_SERVER_ERROR_STATUSES;
 import static datadog.trace.api.config.TracerConfig.ID_GENERATION_STRATEGY;
+import static datadog.trace.api.config.TracerConfig.PARTIAL_FLUSH_MAX_BYTES;
 import static datadog.trace.api.config.TracerConfig.PARTIAL_FLUSH_MIN_SPANS;
 import static datadog.trace.api.config.TracerConfig.PRIORITY_SAMPLING;
 import static datadog.trace.api.config.TracerConfig.PRIORITY_SAMPLING_FORCE;
@@ -214,7 +222,9 @@ import static datadog.trace.api.config.TracerConfig.SCOPE_STRICT_MODE;
 import static datadog.trace.api.config.TracerConfig.SERVICE_MAPPING;
 import static datadog.trace.api.config.TracerConfig.SPAN_TAGS;
 import static datadog.trace.api.config.TracerConfig.SPLIT_BY_TAGS;
+import static datadog.trace.api.config.TracerConfig.TRACE_ADAPTIVE_BATCHING_ENABLED;
 import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_ARGS;
+import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_COMPRESSION;
 import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_PATH;
 import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_PORT;
 import static datadog.trace.api.config.TracerConfig.TRACE_AGENT_URL;
@@ -226,6 +236,10 @@ import static datadog.trace.api.config.TracerConfig.TRACE_RESOLVER_ENABLED;
 import static datadog.trace.api.config.TracerConfig.TRACE_SAMPLE_RATE;
 import static datadog.trace.api.config.TracerConfig.TRACE_SAMPLING_OPERATION_RULES;
 import static datadog.trace.api.config.TracerConfig.TRACE_SAMPLING_SERVICE_RULES;
+import static datadog.trace.api.config.TracerConfig.TRACE_SERIALIZATION_SHARDS;
+import static datadog.trace.api.config.TracerConfig.TRACE_SPAN_RECYCLING_ENABLED;
+import static datadog.trace.api.config.TracerConfig.TRACE_SPILL_DIRECTORY;
+import static datadog.trace.api.config.TracerConfig.TRACE_SPILL_MAX_SIZE;
 import static datadog.trace.api.config.TracerConfig.TRACE_STRICT_WRITES_ENABLED;
 import static datadog.trace.api.config.TracerConfig.WRITER_TYPE;
 import static datadog.trace.util.CollectionUtils.tryMakeImmutableList;
@@ -341,6 +355,7 @@ public class Config {
   private final boolean scopeInheritAsyncPropagation;
   private final int scopeIterationKeepAlive;
   private final int partialFlushMinSpans;
+  private final long partialFlushMaxBytes;
   private final boolean traceStrictWritesEnabled;
   private final boolean runtimeContextFieldInjection;
   private final boolean serialVersionUIDFieldInjection;
@@ -373,6 +388,9 @@ public class Config {
   private final boolean tracerMetricsBufferingEnabled;
   private final int tracerMetricsMaxAggregates;
   private final int tracerMetricsMaxPending;
+  private final int tracerMetricsNameCacheSize;
+  private final double tracerMetricsSketchRelativeAccuracy;
+  private final long tracerMetricsSketchMemoryBudget;
 
   private final boolean logsInjectionEnabled;
   private final boolean logsMDCTagsInjectionEnabled;
@@ -457,6 +475,12 @@ public class Config {
   private final boolean tempJarsCleanOnBoot;
 
   private final boolean traceAgentV05Enabled;
+  private final int traceSerializationShards;
+  private final boolean traceSpanRecyclingEnabled;
+  private final String traceSpillDirectory;
+  private final int traceSpillMaxSize;
+  private final String traceAgentCompression;
+  private final boolean traceAdaptiveBatchingEnabled;
 
   private final boolean debugEnabled;
   private final String configFileStatus;
@@ -710,6 +734,9 @@ public class Config {
     partialFlushMinSpans =
         configProvider.getInteger(PARTIAL_FLUSH_MIN_SPANS, DEFAULT_PARTIAL_FLUSH_MIN_SPANS);
 
+    partialFlushMaxBytes =
+        configProvider.getLong(PARTIAL_FLUSH_MAX_BYTES, DEFAULT_PARTIAL_FLUSH_MAX_BYTES);
+
     traceStrictWritesEnabled = configProvider.getBoolean(TRACE_STRICT_WRITES_ENABLED, false);
 
     runtimeContextFieldInjection =
@@ -785,6 +812,11 @@ public class Config {
         configProvider.getBoolean(TRACER_METRICS_BUFFERING_ENABLED, false);
     tracerMetricsMaxAggregates = configProvider.getInteger(TRACER_METRICS_MAX_AGGREGATES, 2048);
     tracerMetricsMaxPending = configProvider.getInteger(TRACER_METRICS_MAX_PENDING, 2048);
+    tracerMetricsNameCacheSize = configProvider.getInteger(TRACER_METRICS_NAME_CACHE_SIZE, 256);
+    tracerMetricsSketchRelativeAccuracy =
+        configProvider.getDouble(TRACER_METRICS_SKETCH_RELATIVE_ACCURACY, 1.0 / 128.0);
+    tracerMetricsSketchMemoryBudget =
+        configProvider.getLong(TRACER_METRICS_SKETCH_MEMORY_BUDGET, 32L << 20);
 
     logsInjectionEnabled =
         configProvider.getBoolean(LOGS_INJECTION_ENABLED, DEFAULT_LOGS_INJECTION_ENABLED);
@@ -795,6 +827,22 @@ public class Config {
     traceAgentV05Enabled =
         configProvider.getBoolean(ENABLE_TRACE_AGENT_V05, DEFAULT_TRACE_AGENT_V05_ENABLED);
 
+    traceSerializationShards =
+        configProvider.getInteger(TRACE_SERIALIZATION_SHARDS, DEFAULT_TRACE_SERIALIZATION_SHARDS);
+
+    traceSpanRecyclingEnabled = configProvider.getBoolean(TRACE_SPAN_RECYCLING_ENABLED, false);
+
+    traceSpillDirectory = configProvider.getString(TRACE_SPILL_DIRECTORY);
+
+    traceSpillMaxSize =
+        configProvider.getInteger(TRACE_SPILL_MAX_SIZE, DEFAULT_TRACE_SPILL_MAX_SIZE);
+
+    traceAgentCompression =
+        configProvider.getString(TRACE_AGENT_COMPRESSION, DEFAULT_TRACE_AGENT_COMPRESSION);
+
+    traceAdaptiveBatchingEnabled =
+        configProvider.getBoolean(TRACE_ADAPTIVE_BATCHING_ENABLED, false);
+
     traceAnnotations = configProvider.getString(TRACE_ANNOTATIONS, DEFAULT_TRACE_ANNOTATIONS);
 
     traceMethods = configProvider.getString(TRACE_METHODS, DEFAULT_TRACE_METHODS);
@@ -1171,6 +1219,10 @@ public class Config {
     return partialFlushMinSpans;
   }
 
+  public long getPartialFlushMaxBytes() {
+    return partialFlushMaxBytes;
+  }
+
   public boolean isTraceStrictWritesEnabled() {
     return traceStrictWritesEnabled;
   }
@@ -1279,6 +1331,18 @@ public class Config {
     return tracerMetricsMaxPending;
   }
 
+  public int getTracerMetricsNameCacheSize() {
+    return tracerMetricsNameCacheSize;
+  }
+
+  public double getTracerMetricsSketchRelativeAccuracy() {
+    return tracerMetricsSketchRelativeAccuracy;
+  }
+
+  public long getTracerMetricsSketchMemoryBudget() {
+    return tracerMetricsSketchMemoryBudget;
+  }
+
   public boolean isLogsInjectionEnabled() {
     return logsInjectionEnabled;
   }
@@ -1515,6 +1579,30 @@ public class Config {
     return traceAgentV05Enabled;
   }
 
+  public int getTraceSerializationShards() {
+    return traceSerializationShards;
+  }
+
+  public boolean isTraceSpanRecyclingEnabled() {
+    return traceSpanRecyclingEnabled;
+  }
+
+  public String getTraceSpillDirectory() {
+    return traceSpillDirectory;
+  }
+
+  public int getTraceSpillMaxSize() {
+    return traceSpillMaxSize;
+  }
+
+  public String getTraceAgentCompression() {
+    return traceAgentCompression;
+  }
+
+  public boolean isTraceAdaptiveBatchingEnabled() {
+    return traceAdaptiveBatchingEnabled;
+  }
+
   public boolean isDebugEnabled() {
     return debugEnabled;
   }
@@ -2226,6 +2314,8 @@ public class Config {
         + scopeIterationKeepAlive
         + ", partialFlushMinSpans="
         + partialFlushMinSpans
+        + ", partialFlushMaxBytes="
+        + partialFlushMaxBytes
         + ", traceStrictWritesEnabled="
         + traceStrictWritesEnabled
         + ", runtimeContextFieldInjection="
@@ -2275,6 +2365,12 @@ public class Config {
         + tracerMetricsMaxAggregates
         + ", tracerMetricsMaxPending="
         + tracerMetricsMaxPending
+        + ", tracerMetricsNameCacheSize="
+        + tracerMetricsNameCacheSize
+        + ", tracerMetricsSketchRelativeAccuracy="
+        + tracerMetricsSketchRelativeAccuracy
+        + ", tracerMetricsSketchMemoryBudget="
+        + tracerMetricsSketchMemoryBudget
         + ", logsInjectionEnabled="
         + logsInjectionEnabled
         + ", logsMDCTagsInjectionEnabled="
@@ -2382,6 +2478,18 @@ public class Config {
         + tempJarsCleanOnBoot
         + ", traceAgentV05Enabled="
         + traceAgentV05Enabled
+        + ", traceSerializationShards="
+        + traceSerializationShards
+        + ", traceSpanRecyclingEnabled="
+        + traceSpanRecyclingEnabled
+        + ", traceSpillDirectory="
+        + traceSpillDirectory
+        + ", traceSpillMaxSize="
+        + traceSpillMaxSize
+        + ", traceAgentCompression="
+        + traceAgentCompression
+        + ", traceAdaptiveBatchingEnabled="
+        + traceAdaptiveBatchingEnabled
         + ", debugEnabled="
         + debugEnabled
         + ", configFile='"
@@ -54,6 +54,7 @@ public class StoredByteBody implements StoredBodySupplier {
     }
 
     storedCharBody.maybeNotifyStart();
+    storedCharBody.notifyIfLimitReached();
   }
 
   /**
@@ -68,6 +69,7 @@ public class StoredByteBody implements StoredBodySupplier {
   public synchronized void appendData(ByteBufferWriteCallback cb, int len) {
     for (int i = 0; i < len; ) {
       if (storedCharBody.isLimitReached()) {
+        storedCharBody.notifyIfLimitReached();
         return;
       }
       if (!undecodedData.hasRemaining()) {
@@ -86,6 +88,7 @@ public class StoredByteBody implements StoredBodySupplier {
     undecodedData.limit(undecodedData.capacity());
 
     storedCharBody.maybeNotifyStart();
+    storedCharBody.notifyIfLimitReached();
   }
 
   public synchronized void appendData(int byteValue) {
@@ -102,6 +105,7 @@ public class StoredByteBody implements StoredBodySupplier {
     undecodedData.put((byte) byteValue);
 
     storedCharBody.maybeNotifyStart();
+    storedCharBody.notifyIfLimitReached();
   }
 
   public synchronized void setCharset(Charset charset) {
@@ -19,6 +19,8 @@ public class StoredCharBody implements StoredBodySupplier {
   private final StoredBodySupplier supplierInNotifications;
 
   private boolean listenerNotified;
+  // result of an early notification, handed to the next caller of maybeNotify
+  private Flow<Void> listenerFlow;
 
   private char[] storedBody;
   private int storedBodyLen;
@@ -64,6 +66,7 @@ public class StoredCharBody implements StoredBodySupplier {
 
     this.storedBodyLen += lenToCopy;
     maybeNotifyStart();
+    maybeNotifyLimitReached();
   }
 
   public synchronized void appendData(CharBuffer buffer) {
@@ -79,6 +82,7 @@ public class StoredCharBody implements StoredBodySupplier {
     buffer.get(this.storedBody, this.storedBodyLen, lenToCopy);
     this.storedBodyLen += lenToCopy;
     maybeNotifyStart();
+    maybeNotifyLimitReached();
   }
 
   private boolean maybeExtendStorage(int newDataLen) {
@@ -109,6 +113,7 @@ public class StoredCharBody implements StoredBodySupplier {
     this.storedBodyLen += lenToCopy;
 
     maybeNotifyStart();
+    maybeNotifyLimitReached();
   }
 
   private int capacityLeft() {
@@ -127,6 +132,7 @@ public class StoredCharBody implements StoredBodySupplier {
     this.storedBodyLen += 1;
 
     maybeNotifyStart();
+    maybeNotifyLimitReached();
   }
 
   void maybeNotifyStart() {
@@ -136,6 +142,29 @@ public class StoredCharBody implements StoredBodySupplier {
     }
   }
 
+  /**
+   * Nothing else is stored once the limit is reached, so the end listener can see the final stored
+   * body right away, instead of after the application has read what can be a much larger body.
+   * {@link StoredByteBody} does this itself, once it has finished decoding.
+   */
+  private void maybeNotifyLimitReached() {
+    if (supplierInNotifications == this) {
+      notifyIfLimitReached();
+    }
+  }
+
+  synchronized void notifyIfLimitReached() {
+    if (!listenerNotified && isLimitReached()) {
+      this.listenerFlow = maybeNotify();
+    }
+  }
+
+  /**
+   * Notifies the end listener, unless it was already notified.
+   *
+   * @return the flow returned by the end listener, also when it was notified early because the
+   *     storage limit was reached
+   */
   public synchronized Flow<Void> maybeNotify() {
     if (!listenerNotified) {
       listenerNotified = true;
@@ -144,6 +173,11 @@ public class StoredCharBody implements StoredBodySupplier {
       }
       return this.endCb.apply(httpContext, supplierInNotifications);
     }
+    Flow<Void> listenerFlow = this.listenerFlow;
+    if (listenerFlow != null) {
+      this.listenerFlow = null;
+      return listenerFlow;
+    }
     return Flow.ResultFlow.empty();
   }
 
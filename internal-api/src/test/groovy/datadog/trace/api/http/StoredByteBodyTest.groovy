@@ -56,6 +56,29 @@ class StoredByteBodyTest extends Specification {
     storedByteBody.get() as String == 'a' * (128 * 1024)
   }
 
+  void 'notifies the end listener once decoded data reaches the store limit'() {
+    storedByteBody = new StoredByteBody(requestContext, startCb, endCb, null, 0)
+    Flow mockFlow = Mock()
+
+    when:
+    storedByteBody.appendData([(int)'a']* 128 * 1024 as byte[], 0, 128 * 1024)
+
+    then:
+    1 * startCb.apply(requestContext, storedByteBody)
+    0 * endCb._
+
+    when:
+    storedByteBody.appendData((int) 'a') // decodes the buffered data
+    def flow = storedByteBody.maybeNotify()
+
+    then:
+    1 * endCb.apply(requestContext, storedByteBody) >> {
+      assert storedByteBody.get() as String == 'a' * (128 * 1024)
+      mockFlow
+    }
+    flow.is(mockFlow)
+  }
+
   void 'ignores invalid integers given to appendData'() {
     storedByteBody = new StoredByteBody(requestContext, startCb, endCb, null, 0)
 
@@ -46,6 +46,35 @@ class StoredCharBodyTest extends Specification {
     1 * startCb.apply(requestContext, storedCharBody)
   }
 
+  void 'notifies the end listener as soon as the cutoff is reached'() {
+    Flow flow = Mock()
+
+    when:
+    storedCharBody.appendData('a' * (128 * 1024 - 1))
+
+    then:
+    1 * startCb.apply(requestContext, storedCharBody)
+    0 * endCb._
+
+    when:
+    storedCharBody.appendData('aa') // last ignored
+
+    then:
+    1 * endCb.apply(requestContext, storedCharBody) >> {
+      assert storedCharBody.get().length() == 128 * 1024
+      flow
+    }
+
+    when:
+    storedCharBody.appendData('a') // ignored
+    def resFlow = storedCharBody.maybeNotify()
+
+    then:
+    0 * endCb._
+    resFlow.is(flow)
+    storedCharBody.maybeNotify().is(Flow.ResultFlow.empty())
+  }
+
   void 'insert invalid data'() {
     when:
     storedCharBody.appendData(-1)
@@ -7,17 +7,42 @@ import java.nio.ByteBuffer;
 
 public final class DDSketchHistogram implements Histogram, HistogramFactory {
 
+  static final double DEFAULT_RELATIVE_ACCURACY = 1.0 / 128.0;
+  static final int DEFAULT_MAX_BINS = 1024;
+
   private final DDSketch sketch;
+  private final ByteBuffer emptyEncoding;
 
   public DDSketchHistogram() {
-    this(
-        new DDSketch(
-            new BitwiseLinearlyInterpolatedMapping(1.0 / 128.0),
-            () -> new CollapsingLowestDenseStore(1024)));
+    this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+  }
+
+  /**
+   * @param relativeAccuracy the relative accuracy guaranteed for quantiles
+   * @param maxBins the number of bins after which the lowest bins are collapsed, which bounds the
+   *     memory used by the sketch at the expense of accuracy for the lowest values
+   */
+  public DDSketchHistogram(double relativeAccuracy, int maxBins) {
+    this(newSketch(relativeAccuracy, maxBins), null);
   }
 
   public DDSketchHistogram(DDSketch sketch) {
+    this(sketch, null);
+  }
+
+  /**
+   * @param emptyEncoding the serialized form of an empty sketch with the same mapping, which is
+   *     shared instead of serializing again while the sketch is empty
+   */
+  DDSketchHistogram(DDSketch sketch, ByteBuffer emptyEncoding) {
     this.sketch = sketch;
+    this.emptyEncoding = emptyEncoding;
+  }
+
+  static DDSketch newSketch(double relativeAccuracy, final int maxBins) {
+    return new DDSketch(
+        new BitwiseLinearlyInterpolatedMapping(relativeAccuracy),
+        () -> new CollapsingLowestDenseStore(maxBins));
   }
 
   @Override
@@ -48,6 +73,9 @@ public final class DDSketchHistogram implements Histogram, HistogramFactory {
 
   @Override
   public ByteBuffer serialize() {
+    if (null != emptyEncoding && sketch.isEmpty()) {
+      return emptyEncoding.duplicate();
+    }
     return sketch.serialize();
   }
 
@@ -1,8 +1,31 @@
 package datadog.trace.core.histogram;
 
+import java.nio.ByteBuffer;
+
 public class DDSketchHistogramFactory implements HistogramFactory {
+
+  private final double relativeAccuracy;
+  private final int maxBins;
+  private final ByteBuffer emptyEncoding;
+
+  public DDSketchHistogramFactory() {
+    this(DDSketchHistogram.DEFAULT_RELATIVE_ACCURACY, DDSketchHistogram.DEFAULT_MAX_BINS);
+  }
+
+  /**
+   * @param relativeAccuracy the relative accuracy guaranteed for quantiles
+   * @param maxBins the maximum number of bins in each sketch, each bin takes 8 bytes
+   */
+  public DDSketchHistogramFactory(double relativeAccuracy, int maxBins) {
+    this.relativeAccuracy = relativeAccuracy;
+    this.maxBins = maxBins;
+    // all empty sketches created by this factory serialize to the same bytes
+    this.emptyEncoding = DDSketchHistogram.newSketch(relativeAccuracy, maxBins).serialize();
+  }
+
   @Override
   public Histogram newHistogram() {
-    return new DDSketchHistogram();
+    return new DDSketchHistogram(
+        DDSketchHistogram.newSketch(relativeAccuracy, maxBins), emptyEncoding);
   }
 }
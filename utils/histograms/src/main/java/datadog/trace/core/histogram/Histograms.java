@@ -27,6 +27,17 @@ public final class Histograms {
     return load("datadog.trace.core.histogram.DDSketchHistogramFactory");
   }
 
+  HistogramFactory newFactory(double relativeAccuracy, int maxBins) {
+    if (loadStub) {
+      return load("datadog.trace.core.histogram.StubHistogram");
+    }
+    return load(
+        "datadog.trace.core.histogram.DDSketchHistogramFactory",
+        new Class<?>[] {double.class, int.class},
+        relativeAccuracy,
+        maxBins);
+  }
+
   /**
    * Load reflectively to ensure that DDSketch is never loaded on JDK7
    *
@@ -36,9 +47,25 @@ public final class Histograms {
     return INSTANCE.newFactory();
   }
 
+  /**
+   * Load reflectively to ensure that DDSketch is never loaded on JDK7
+   *
+   * @param relativeAccuracy the relative accuracy guaranteed for quantiles
+   * @param maxBins the maximum number of bins in each histogram, bounding its memory usage
+   * @return a histogram factory
+   */
+  public static HistogramFactory newHistogramFactory(double relativeAccuracy, int maxBins) {
+    return INSTANCE.newFactory(relativeAccuracy, maxBins);
+  }
+
   private static HistogramFactory load(String name) {
+    return load(name, new Class<?>[0]);
+  }
+
+  private static HistogramFactory load(String name, Class<?>[] parameterTypes, Object... args) {
     try {
-      return (HistogramFactory) Class.forName(name).getConstructor().newInstance();
+      return (HistogramFactory)
+          Class.forName(name).getConstructor(parameterTypes).newInstance(args);
     } catch (InstantiationException
         | InvocationTargetException
         | NoSuchMethodException
@@ -26,6 +26,44 @@ class HistogramsTest extends DDSpecification {
     null != proto
   }
 
+  def "configured histogram factory creates DDSketch"() {
+    setup:
+    Histogram histogram = Histograms.newHistogramFactory(0.02, 64).newHistogram()
+    when:
+    for (int i = 1; i <= 10000; ++i) {
+      histogram.accept(i)
+    }
+    then:
+    histogram instanceof DDSketchHistogram
+    Math.abs(histogram.valueAtQuantile(0.99) - 9900) < 9900 * 0.02
+  }
+
+  def "empty histograms share their serialized form"() {
+    setup:
+    HistogramFactory factory = Histograms.newHistogramFactory(1.0 / 128.0, 1024)
+    Histogram first = factory.newHistogram()
+    Histogram second = factory.newHistogram()
+    when:
+    ByteBuffer firstEmpty = first.serialize()
+    ByteBuffer secondEmpty = second.serialize()
+    then:
+    firstEmpty == secondEmpty
+    firstEmpty == new DDSketchHistogram().serialize()
+    DDSketch.parseFrom(firstEmpty) != null
+    when: "the shared form was consumed"
+    first.serialize().position(firstEmpty.limit())
+    then:
+    second.serialize().remaining() == secondEmpty.remaining()
+    when:
+    first.accept(42)
+    then:
+    first.serialize() != secondEmpty
+    when:
+    first.clear()
+    then:
+    first.serialize() == secondEmpty
+  }
+
   def "stub histogram creates empty bytes"() {
     setup:
     HistogramFactory histogramFactory = new StubHistogram()